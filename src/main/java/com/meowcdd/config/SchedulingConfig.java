@@ -0,0 +1,10 @@
+package com.meowcdd.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Bật @Scheduled cho các tác vụ nền (flush bộ đếm lượt xem sách, ...)
+}
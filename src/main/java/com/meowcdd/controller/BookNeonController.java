@@ -1,22 +1,37 @@
 package com.meowcdd.controller;
 
+import com.meowcdd.dto.BookBulkOperationDto;
+import com.meowcdd.dto.BookBulkResultDto;
 import com.meowcdd.dto.BookDto;
+import com.meowcdd.dto.BookRecommendationDto;
+import com.meowcdd.dto.CursorPageResponseDto;
 import com.meowcdd.dto.PageResponseDto;
+import com.meowcdd.repository.neon.BookContentNeonRepository.ContentInfo;
+import com.meowcdd.repository.neon.BookNeonRepository.BookVersionInfo;
+import com.meowcdd.repository.neon.BookNeonRepository.CatalogVersion;
 import com.meowcdd.service.BookNeonService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Controller cho entity Book
@@ -91,7 +106,6 @@ public class BookNeonController {
                     .isActive(isActive != null ? isActive : Boolean.TRUE)
                     .supportedFormatId(supportedFormatId)
                     .developmentalDomainIds(domainIds.stream().collect(java.util.stream.Collectors.toSet()))
-                    .contentFile(file.getBytes())
                     .contentFileName(file.getOriginalFilename())
                     .contentFileType(getFileExtension(file.getOriginalFilename()))
                     .contentFileSize(file.getSize())
@@ -103,7 +117,8 @@ public class BookNeonController {
                     .fileSize(file.getSize())
                     .build();
             
-            BookDto createdBook = bookService.createBookWithFile(bookDto);
+            // Stream nội dung file thẳng xuống storage, không đọc toàn bộ file vào bộ nhớ
+            BookDto createdBook = bookService.createBookWithFile(bookDto, file);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdBook);
             
         } catch (IOException e) {
@@ -126,10 +141,21 @@ public class BookNeonController {
      * Lấy sách theo ID
      */
     @GetMapping("/{id}")
-    public ResponseEntity<BookDto> getBookById(@PathVariable Long id) {
+    public ResponseEntity<BookDto> getBookById(@PathVariable Long id,
+                                               @RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting book with id: {}", id);
+        
+        // Weak ETag theo updatedAt: mỗi lần flush lượt xem (write-behind) cập nhật updatedAt nên totalViews
+        // trong bản đã cache cũ tối đa một chu kỳ flush; lượt xem chưa flush không làm đổi phiên bản
+        BookVersionInfo version = bookService.getBookVersionInfo(id);
+        long lastModified = toEpochMillis(version.getUpdatedAt());
+        String eTag = "W/\"book-" + id + "-" + lastModified + "\"";
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return notModified(eTag, lastModified);
+        }
+        
         BookDto book = bookService.getBookById(id);
-        return ResponseEntity.ok(book);
+        return withValidators(ResponseEntity.ok(), eTag, lastModified).body(book);
     }
     
     /**
@@ -140,11 +166,27 @@ public class BookNeonController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestHeader HttpHeaders requestHeaders) {
         
         log.info("Getting all books with page: {}, size: {}, sortBy: {}, sortDir: {}", page, size, sortBy, sortDir);
-        PageResponseDto<BookDto> books = bookService.getAllBooks(page, size, sortBy, sortDir);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getAllBooks(page, size, sortBy, sortDir));
+    }
+    
+    /**
+     * Lấy sách theo cursor (dùng cho infinite scroll, không dùng OFFSET)
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageResponseDto<BookDto>> getBooksByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean includeTotal,
+            @RequestHeader HttpHeaders requestHeaders) {
+        
+        log.info("Getting books by cursor: {}, size: {}, sortBy: {}, sortDir: {}", cursor, size, sortBy, sortDir);
+        return catalogResponse(requestHeaders, () -> bookService.getBooksByCursor(cursor, size, sortBy, sortDir, includeTotal));
     }
     
     /**
@@ -166,11 +208,25 @@ public class BookNeonController {
     public ResponseEntity<PageResponseDto<BookDto>> searchBooksByKeyword(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestHeader HttpHeaders requestHeaders) {
         
         log.info("Searching books by keyword: {}", keyword);
-        PageResponseDto<BookDto> books = bookService.searchBooksByKeyword(keyword, page, size);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.searchBooksByKeyword(keyword, page, size));
+    }
+    
+    /**
+     * Tìm kiếm toàn văn sách (xếp hạng theo mức độ liên quan, không phân biệt dấu)
+     */
+    @GetMapping("/search/full-text")
+    public ResponseEntity<PageResponseDto<BookDto>> searchBooksFullText(
+            @RequestParam String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestHeader HttpHeaders requestHeaders) {
+        
+        log.info("Full-text searching books by keyword: {}", keyword);
+        return catalogResponse(requestHeaders, () -> bookService.searchBooksFullText(keyword, page, size));
     }
     
     /**
@@ -185,96 +241,86 @@ public class BookNeonController {
             @RequestParam(required = false) Boolean isActive,
             @RequestParam(required = false) Boolean isFeatured,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestHeader HttpHeaders requestHeaders) {
         
         log.info("Finding books by filters: title={}, author={}, language={}, ageGroup={}, isActive={}, isFeatured={}", 
                 title, author, language, ageGroup, isActive, isFeatured);
-        PageResponseDto<BookDto> books = bookService.findBooksByFilters(title, author, language, ageGroup, isActive, isFeatured, page, size);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.findBooksByFilters(title, author, language, ageGroup, isActive, isFeatured, page, size));
     }
     
     /**
      * Lấy sách theo định dạng file
      */
     @GetMapping("/format/{formatId}")
-    public ResponseEntity<List<BookDto>> getBooksByFormat(@PathVariable Long formatId) {
+    public ResponseEntity<List<BookDto>> getBooksByFormat(@PathVariable Long formatId,
+                                                          @RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting books by format id: {}", formatId);
-        List<BookDto> books = bookService.getBooksByFormat(formatId);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getBooksByFormat(formatId));
     }
     
     /**
      * Lấy sách theo lĩnh vực phát triển
      */
     @GetMapping("/domain/{domainId}")
-    public ResponseEntity<List<BookDto>> getBooksByDevelopmentalDomain(@PathVariable UUID domainId) {
+    public ResponseEntity<List<BookDto>> getBooksByDevelopmentalDomain(@PathVariable UUID domainId,
+                                                                       @RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting books by developmental domain id: {}", domainId);
-        List<BookDto> books = bookService.getBooksByDevelopmentalDomain(domainId);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getBooksByDevelopmentalDomain(domainId));
     }
     
     /**
      * Lấy sách nổi bật
      */
     @GetMapping("/featured")
-    public ResponseEntity<List<BookDto>> getFeaturedBooks() {
+    public ResponseEntity<List<BookDto>> getFeaturedBooks(@RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting featured books");
-        List<BookDto> books = bookService.getFeaturedBooks();
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getFeaturedBooks());
+    }
+    
+    /**
+     * Gợi ý sách cho trẻ theo độ tuổi hiện tại, có thể lọc theo lĩnh vực phát triển
+     */
+    @GetMapping("/recommendations/child/{childId}")
+    public ResponseEntity<List<BookRecommendationDto>> getRecommendationsForChild(
+            @PathVariable Long childId,
+            @RequestParam(required = false) UUID domainId,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.info("Getting book recommendations for child: {}", childId);
+        List<BookRecommendationDto> recommendations = bookService.getRecommendationsForChild(childId, domainId, limit);
+        return ResponseEntity.ok(recommendations);
     }
     
     // === FILE OPERATIONS ===
     
     /**
      * Download file nội dung sách
+     * Hỗ trợ Range / If-Range (206 Partial Content, multipart/byteranges) để client tải tiếp hoặc đọc từng phần
      */
     @GetMapping("/{id}/content-file")
-    public ResponseEntity<ByteArrayResource> downloadContentFile(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> downloadContentFile(@PathVariable Long id,
+                                                                     @RequestHeader HttpHeaders requestHeaders) {
         log.info("Downloading content file for book id: {}", id);
-        
-        BookDto book = bookService.getBookById(id);
-        if (book.getContentFile() == null || book.getContentFile().length == 0) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        ByteArrayResource resource = new ByteArrayResource(book.getContentFile());
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + book.getContentFileName() + "\"")
-                .contentType(MediaType.parseMediaType(book.getContentMimeType()))
-                .contentLength(book.getContentFile().length)
-                .body(resource);
+        return streamContentFile(id, requestHeaders);
     }
     
     /**
      * Download file nội dung sách với tên gốc
      */
     @GetMapping("/{id}/content-file/original")
-    public ResponseEntity<ByteArrayResource> downloadContentFileOriginal(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> downloadContentFileOriginal(@PathVariable Long id,
+                                                                             @RequestHeader HttpHeaders requestHeaders) {
         log.info("Downloading content file with original name for book id: {}", id);
-        
-        BookDto book = bookService.getBookById(id);
-        if (book.getContentFile() == null || book.getContentFile().length == 0) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        ByteArrayResource resource = new ByteArrayResource(book.getContentFile());
-        
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + book.getContentFileName() + "\"")
-                .contentType(MediaType.parseMediaType(book.getContentMimeType()))
-                .contentLength(book.getContentFile().length)
-                .body(resource);
+        return streamContentFile(id, requestHeaders);
     }
     
     /**
      * Lấy sách có file nội dung
      */
     @GetMapping("/with-content-files")
-    public ResponseEntity<List<BookDto>> getBooksWithContentFiles() {
+    public ResponseEntity<List<BookDto>> getBooksWithContentFiles(@RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting books with content files");
-        List<BookDto> books = bookService.getBooksWithContentFiles();
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getBooksWithContentFiles());
     }
     
     /**
@@ -291,20 +337,20 @@ public class BookNeonController {
      * Tìm sách theo loại file
      */
     @GetMapping("/content-file-type/{fileType}")
-    public ResponseEntity<List<BookDto>> getBooksByContentFileType(@PathVariable String fileType) {
+    public ResponseEntity<List<BookDto>> getBooksByContentFileType(@PathVariable String fileType,
+                                                                   @RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting books by content file type: {}", fileType);
-        List<BookDto> books = bookService.getBooksByContentFileType(fileType);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getBooksByContentFileType(fileType));
     }
     
     /**
      * Tìm sách theo người upload
      */
     @GetMapping("/uploader/{uploader}")
-    public ResponseEntity<List<BookDto>> getBooksByUploader(@PathVariable String uploader) {
+    public ResponseEntity<List<BookDto>> getBooksByUploader(@PathVariable String uploader,
+                                                            @RequestHeader HttpHeaders requestHeaders) {
         log.info("Getting books by uploader: {}", uploader);
-        List<BookDto> books = bookService.getBooksByUploader(uploader);
-        return ResponseEntity.ok(books);
+        return catalogResponse(requestHeaders, () -> bookService.getBooksByUploader(uploader));
     }
     
     // === STATISTICS ===
@@ -353,21 +399,257 @@ public class BookNeonController {
         return ResponseEntity.ok(updatedBook);
     }
     
+    // === BULK OPERATIONS ===
+    
+    /**
+     * Cập nhật trạng thái hoạt động hàng loạt theo danh sách id và/hoặc bộ lọc
+     */
+    @PatchMapping("/bulk/status")
+    public ResponseEntity<BookBulkResultDto> bulkUpdateBookStatus(@RequestBody BookBulkOperationDto request) {
+        log.info("Bulk updating book status, isActive: {}", request.getIsActive());
+        BookBulkResultDto result = bookService.bulkUpdateStatus(request);
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Cập nhật trạng thái nổi bật hàng loạt theo danh sách id và/hoặc bộ lọc
+     */
+    @PatchMapping("/bulk/featured")
+    public ResponseEntity<BookBulkResultDto> bulkUpdateBookFeatured(@RequestBody BookBulkOperationDto request) {
+        log.info("Bulk updating book featured status, isFeatured: {}", request.getIsFeatured());
+        BookBulkResultDto result = bookService.bulkUpdateFeatured(request);
+        return ResponseEntity.ok(result);
+    }
+    
+    /**
+     * Xóa sách hàng loạt theo danh sách id và/hoặc bộ lọc
+     */
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<BookBulkResultDto> bulkDeleteBooks(@RequestBody BookBulkOperationDto request) {
+        log.info("Bulk deleting books");
+        BookBulkResultDto result = bookService.bulkDeleteBooks(request);
+        return ResponseEntity.ok(result);
+    }
+    
     /**
      * Tăng lượt xem
      */
     @PatchMapping("/{id}/view")
     public ResponseEntity<BookDto> incrementBookViews(@PathVariable Long id) {
         log.info("Incrementing book views with id: {}", id);
-        BookDto currentBook = bookService.getBookById(id);
-        Long currentViews = currentBook.getTotalViews() != null ? currentBook.getTotalViews() : 0L;
-        BookDto bookDto = BookDto.builder().totalViews(currentViews + 1).build();
-        BookDto updatedBook = bookService.updateBook(id, bookDto);
-        return ResponseEntity.ok(updatedBook);
+        BookDto book = bookService.recordBookView(id);
+        return ResponseEntity.ok(book);
     }
     
     // === HELPER METHODS ===
     
+    private ResponseEntity<StreamingResponseBody> streamContentFile(Long id, HttpHeaders requestHeaders) {
+        // Chỉ đọc metadata (không tải entity hay nội dung) để trả 304 sớm nhất có thể
+        BookVersionInfo book = bookService.getBookVersionInfo(id);
+        ContentInfo content = book.getContentSha256() != null ? bookService.getContentInfo(book.getContentSha256()).orElse(null) : null;
+        long contentLength = content != null ? content.getSize() : 0L;
+        if (contentLength == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        MediaType mediaType = book.getContentMimeType() != null
+                ? MediaType.parseMediaType(book.getContentMimeType())
+                : MediaType.APPLICATION_OCTET_STREAM;
+        long lastModified = toEpochMillis(book.getContentUploadedAt() != null ? book.getContentUploadedAt() : book.getUpdatedAt());
+        
+        // Strong ETag theo SHA-256 của nội dung; bản nén gửi nguyên (Content-Encoding) là một representation khác nên có ETag riêng
+        String rangeHeader = requestHeaders.getFirst(HttpHeaders.RANGE);
+        String storedEncoding = content.getEffectiveCodec().getContentEncoding();
+        boolean sendEncoded = storedEncoding != null && rangeHeader == null && acceptsEncoding(requestHeaders, storedEncoding);
+        String identityETag = "\"" + content.getSha256() + "\"";
+        String eTag = sendEncoded ? "\"" + content.getSha256() + "-" + storedEncoding + "\"" : identityETag;
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return notModified(eTag, lastModified);
+        }
+        
+        // Xác định các đoạn cần trả về; If-Range không khớp thì trả về toàn bộ file
+        List<HttpRange> ranges = List.of();
+        if (rangeHeader != null && isIfRangeSatisfied(requestHeaders, identityETag, lastModified)) {
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+                for (HttpRange range : ranges) {
+                    // HttpRange không kiểm tra đoạn bắt đầu sau cuối file (vd. bytes=50- với file 20 byte)
+                    if (range.getRangeStart(contentLength) >= contentLength) {
+                        throw new IllegalArgumentException("Range starts beyond the end of the content");
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Unsatisfiable range '{}' for book id: {}", rangeHeader, id);
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + contentLength)
+                        .build();
+            }
+        }
+        
+        // Có đoạn hợp lệ thì trả 206 để client/proxy không coi phần nội dung là toàn bộ file
+        ResponseEntity.BodyBuilder status = ranges.isEmpty() ? ResponseEntity.ok() : ResponseEntity.status(HttpStatus.PARTIAL_CONTENT);
+        ResponseEntity.BodyBuilder response = withValidators(status, eTag, lastModified)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + book.getContentFileName() + "\"");
+        
+        // Nội dung lưu nén: client chấp nhận cùng encoding nhận thẳng bản nén, client khác nhận bản giải nén
+        if (storedEncoding != null) {
+            response.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        
+        if (ranges.isEmpty()) {
+            if (sendEncoded) {
+                return response
+                        .header(HttpHeaders.CONTENT_ENCODING, storedEncoding)
+                        .contentType(mediaType)
+                        .contentLength(content.getEffectiveStoredSize())
+                        .body(out -> bookService.copyStoredContent(content, Channels.newChannel(out)));
+            }
+            return response
+                    .contentType(mediaType)
+                    .contentLength(contentLength)
+                    .body(out -> bookService.copyContentRange(content, 0, contentLength, Channels.newChannel(out)));
+        }
+        
+        if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(contentLength);
+            long end = ranges.get(0).getRangeEnd(contentLength);
+            return response
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + contentLength)
+                    .contentType(mediaType)
+                    .contentLength(end - start + 1)
+                    .body(out -> bookService.copyContentRange(content, start, end - start + 1, Channels.newChannel(out)));
+        }
+        
+        // Nhiều đoạn: trả về multipart/byteranges
+        List<HttpRange> requestedRanges = ranges;
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        return response
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .body(out -> {
+                    WritableByteChannel channel = Channels.newChannel(out);
+                    for (HttpRange range : requestedRanges) {
+                        long start = range.getRangeStart(contentLength);
+                        long end = range.getRangeEnd(contentLength);
+                        writeAscii(channel, "\r\n--" + boundary + "\r\n"
+                                + HttpHeaders.CONTENT_TYPE + ": " + mediaType + "\r\n"
+                                + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + contentLength + "\r\n\r\n");
+                        bookService.copyContentRange(content, start, end - start + 1, channel);
+                    }
+                    writeAscii(channel, "\r\n--" + boundary + "--\r\n");
+                });
+    }
+    
+    private boolean isIfRangeSatisfied(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        // If-Range dạng ETag phải khớp tuyệt đối (strong comparison), weak ETag không bao giờ khớp
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            long ifRangeDate = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return lastModified >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Trả về danh sách sách kèm weak ETag theo phiên bản danh mục; nội dung chỉ được truy vấn khi client chưa có bản mới nhất.
+     * Flush lượt xem cũng cập nhật updated_at (xem BookViewCounterService) nên totalViews trong danh sách không bị 304 giữ mãi
+     */
+    private <T> ResponseEntity<T> catalogResponse(HttpHeaders requestHeaders, Supplier<T> body) {
+        CatalogVersion version = bookService.getCatalogVersion();
+        long lastModified = toEpochMillis(version.getLastUpdatedAt());
+        String eTag = "W/\"catalog-" + version.getBookCount() + "-" + lastModified + "\"";
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return notModified(eTag, lastModified);
+        }
+        return withValidators(ResponseEntity.ok(), eTag, lastModified).body(body.get());
+    }
+    
+    /**
+     * Đánh giá If-None-Match (so sánh weak) hoặc If-Modified-Since nếu không có If-None-Match
+     */
+    private boolean isNotModified(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            String opaqueTag = stripWeakPrefix(eTag);
+            return ifNoneMatch.stream()
+                    .anyMatch(candidate -> candidate.equals("*") || stripWeakPrefix(candidate).equals(opaqueTag));
+        }
+        if (lastModified >= 0) {
+            try {
+                long ifModifiedSince = requestHeaders.getIfModifiedSince();
+                return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+    
+    private <T> ResponseEntity<T> notModified(String eTag, long lastModified) {
+        return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), eTag, lastModified).build();
+    }
+    
+    private ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, String eTag, long lastModified) {
+        builder.eTag(eTag);
+        if (lastModified >= 0) {
+            builder.lastModified(lastModified);
+        }
+        return builder;
+    }
+    
+    private String stripWeakPrefix(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+    
+    private long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+    
+    /**
+     * Kiểm tra Accept-Encoding có chấp nhận encoding cho trước; giá trị khai báo rõ được ưu tiên hơn "*", q=0 là từ chối
+     */
+    private boolean acceptsEncoding(HttpHeaders requestHeaders, String encoding) {
+        Boolean explicit = null;
+        boolean wildcard = false;
+        for (String header : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String token : header.split(",")) {
+                String[] parts = token.trim().split(";");
+                String coding = parts[0].trim();
+                boolean accepted = true;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            accepted = Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            accepted = false;
+                        }
+                    }
+                }
+                if (coding.equalsIgnoreCase(encoding)) {
+                    explicit = accepted;
+                } else if (coding.equals("*")) {
+                    wildcard = accepted;
+                }
+            }
+        }
+        return explicit != null ? explicit : wildcard;
+    }
+    
+    private void writeAscii(WritableByteChannel channel, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
     private String getFileExtension(String fileName) {
         if (fileName == null || fileName.lastIndexOf(".") == -1) {
             return "UNKNOWN";
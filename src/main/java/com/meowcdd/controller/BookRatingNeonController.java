@@ -176,9 +176,11 @@ public class BookRatingNeonController {
      * Đánh dấu đánh giá hữu ích/không hữu ích
      */
     @PatchMapping("/{id}/helpful")
-    public ResponseEntity<Void> markRatingHelpful(@PathVariable Long id, @RequestParam Boolean isHelpful) {
+    public ResponseEntity<Void> markRatingHelpful(@PathVariable Long id,
+                                                  @RequestParam Boolean isHelpful,
+                                                  @RequestParam(required = false) String parentId) {
         log.info("Marking rating {} as {}", id, isHelpful ? "helpful" : "not helpful");
-        bookRatingService.markRatingHelpful(id, isHelpful);
+        bookRatingService.markRatingHelpful(id, parentId, isHelpful);
         return ResponseEntity.ok().build();
     }
     
@@ -1,13 +1,16 @@
 package com.meowcdd.controller;
 
 import com.meowcdd.entity.neon.CDDTestNeon;
+import com.meowcdd.repository.neon.CDDTestNeonRepository.CDDTestSummary;
 import com.meowcdd.service.CDDTestNeonService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,12 +25,12 @@ public class CDDTestNeonController {
     private final CDDTestNeonService cddTestNeonService;
 
     @GetMapping("/paginated")
-    public ResponseEntity<Page<CDDTestNeon>> getAllCDDTestsWithPagination(
+    public ResponseEntity<Page<CDDTestSummary>> getAllCDDTestsWithPagination(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         log.info("Getting all CDD tests with pagination (page: {}, size: {})", page, size);
         Pageable pageable = PageRequest.of(page, size);
-        Page<CDDTestNeon> tests = cddTestNeonService.getAllCDDTestsWithPagination(pageable);
+        Page<CDDTestSummary> tests = cddTestNeonService.getAllCDDTestsWithPagination(pageable);
         return ResponseEntity.ok(tests);
     }
 
@@ -46,6 +49,18 @@ public class CDDTestNeonController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{id}/definition")
+    public ResponseEntity<byte[]> getCDDTestDefinition(@PathVariable Long id,
+                                                       @RequestParam(required = false) String lang) {
+        log.info("Getting CDD test definition for ID: {} (language: {})", id, lang);
+        return cddTestNeonService.getLocalizedDefinition(id, lang)
+                .map(definition -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_LANGUAGE, definition.getLanguage())
+                        .body(definition.getBody()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/code/{assessmentCode}")
     public ResponseEntity<CDDTestNeon> getCDDTestByAssessmentCode(@PathVariable String assessmentCode) {
         log.info("Getting CDD test by assessment code: {}", assessmentCode);
@@ -69,19 +84,19 @@ public class CDDTestNeonController {
     }
 
     @GetMapping("/category/{category}/paginated")
-    public ResponseEntity<Page<CDDTestNeon>> getCDDTestsByCategoryWithPagination(
+    public ResponseEntity<Page<CDDTestSummary>> getCDDTestsByCategoryWithPagination(
             @PathVariable String category,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         log.info("Getting CDD tests by category: {} with pagination (page: {}, size: {})", 
                 category, page, size);
         Pageable pageable = PageRequest.of(page, size);
-        Page<CDDTestNeon> tests = cddTestNeonService.getCDDTestsByCategoryWithPagination(category, pageable);
+        Page<CDDTestSummary> tests = cddTestNeonService.getCDDTestsByCategoryWithPagination(category, pageable);
         return ResponseEntity.ok(tests);
     }
 
     @GetMapping("/category/{category}/status/{status}/paginated")
-    public ResponseEntity<Page<CDDTestNeon>> getCDDTestsByCategoryAndStatusWithPagination(
+    public ResponseEntity<Page<CDDTestSummary>> getCDDTestsByCategoryAndStatusWithPagination(
             @PathVariable String category,
             @PathVariable CDDTestNeon.Status status,
             @RequestParam(defaultValue = "0") int page,
@@ -89,7 +104,7 @@ public class CDDTestNeonController {
         log.info("Getting CDD tests by category: {}, status: {} with pagination (page: {}, size: {})", 
                 category, status, page, size);
         Pageable pageable = PageRequest.of(page, size);
-        Page<CDDTestNeon> tests = cddTestNeonService.getCDDTestsByCategoryAndStatusWithPagination(category, status, pageable);
+        Page<CDDTestSummary> tests = cddTestNeonService.getCDDTestsByCategoryAndStatusWithPagination(category, status, pageable);
         return ResponseEntity.ok(tests);
     }
 
@@ -101,7 +116,7 @@ public class CDDTestNeonController {
     }
 
     @GetMapping("/age/{ageMonths}/status/{status}/paginated")
-    public ResponseEntity<Page<CDDTestNeon>> getCDDTestsForAgeAndStatusWithPagination(
+    public ResponseEntity<Page<CDDTestSummary>> getCDDTestsForAgeAndStatusWithPagination(
             @PathVariable Integer ageMonths,
             @PathVariable CDDTestNeon.Status status,
             @RequestParam(defaultValue = "0") int page,
@@ -109,12 +124,12 @@ public class CDDTestNeonController {
         log.info("Getting CDD tests for age: {} months, status: {} with pagination (page: {}, size: {})", 
                 ageMonths, status, page, size);
         Pageable pageable = PageRequest.of(page, size);
-        Page<CDDTestNeon> tests = cddTestNeonService.getCDDTestsForAgeAndStatusWithPagination(ageMonths, status, pageable);
+        Page<CDDTestSummary> tests = cddTestNeonService.getCDDTestsForAgeAndStatusWithPagination(ageMonths, status, pageable);
         return ResponseEntity.ok(tests);
     }
 
     @GetMapping("/age/{ageMonths}/category/{category}/status/{status}/paginated")
-    public ResponseEntity<Page<CDDTestNeon>> getCDDTestsForAgeCategoryAndStatusWithPagination(
+    public ResponseEntity<Page<CDDTestSummary>> getCDDTestsForAgeCategoryAndStatusWithPagination(
             @PathVariable Integer ageMonths,
             @PathVariable String category,
             @PathVariable CDDTestNeon.Status status,
@@ -123,7 +138,7 @@ public class CDDTestNeonController {
         log.info("Getting CDD tests for age: {} months, category: {}, status: {} with pagination (page: {}, size: {})", 
                 ageMonths, category, status, page, size);
         Pageable pageable = PageRequest.of(page, size);
-        Page<CDDTestNeon> tests = cddTestNeonService.getCDDTestsForAgeCategoryAndStatusWithPagination(ageMonths, category, status, pageable);
+        Page<CDDTestSummary> tests = cddTestNeonService.getCDDTestsForAgeCategoryAndStatusWithPagination(ageMonths, category, status, pageable);
         return ResponseEntity.ok(tests);
     }
 
@@ -152,13 +167,13 @@ public class CDDTestNeonController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<Page<CDDTestNeon>> searchCDDTests(
+    public ResponseEntity<Page<CDDTestSummary>> searchCDDTests(
             @RequestParam String keyword,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         log.info("Searching CDD tests with keyword: {}", keyword);
         Pageable pageable = PageRequest.of(page, size);
-        Page<CDDTestNeon> tests = cddTestNeonService.searchCDDTests(keyword, pageable);
+        Page<CDDTestSummary> tests = cddTestNeonService.searchCDDTests(keyword, pageable);
         return ResponseEntity.ok(tests);
     }
 
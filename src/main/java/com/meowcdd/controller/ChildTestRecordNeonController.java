@@ -1,18 +1,29 @@
 package com.meowcdd.controller;
 
+import com.meowcdd.dto.ChildTestRecordBulkResultDto;
 import com.meowcdd.dto.ChildTestRecordWithCategoryDto;
+import com.meowcdd.entity.neon.ChildTestAnswer;
 import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import com.meowcdd.entity.neon.ChildTestRescoringJob;
+import com.meowcdd.repository.neon.ChildTestAnswerNeonRepository.QuestionAnswerStats;
+import com.meowcdd.service.ChildTestRecordExportNeonService.ExportFilter;
+import com.meowcdd.service.ChildTestRecordExportNeonService.Format;
 import com.meowcdd.service.ChildTestRecordNeonService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -32,6 +43,18 @@ public class ChildTestRecordNeonController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdRecord);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ChildTestRecordBulkResultDto> bulkCreateChildTestRecords(InputStream body) {
+        log.info("Bulk creating child test records (Neon) from JSON array");
+        return ResponseEntity.ok(childTestRecordNeonService.bulkCreateChildTestRecords(body));
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ChildTestRecordBulkResultDto> bulkCreateChildTestRecordsFromNdjson(InputStream body) {
+        log.info("Bulk creating child test records (Neon) from NDJSON stream");
+        return ResponseEntity.ok(childTestRecordNeonService.bulkCreateChildTestRecordsFromNdjson(body));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ChildTestRecordNeon> getChildTestRecordById(@PathVariable Long id) {
         log.info("Getting child test record by ID (Neon): {}", id);
@@ -178,6 +201,35 @@ public class ChildTestRecordNeonController {
         return ResponseEntity.ok(records);
     }
 
+    /**
+     * Xuất bản ghi dạng NDJSON (mặc định) hoặc CSV, stream trực tiếp ra response thay vì trả về cả danh sách
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportChildTestRecords(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String childId,
+            @RequestParam(required = false) String testId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) Double minScore,
+            @RequestParam(required = false) Double maxScore,
+            @RequestParam(defaultValue = "false") boolean includeAnswers) {
+        log.info("Exporting child test records (Neon) as {}", format);
+        Format exportFormat = Format.valueOf(format.toUpperCase());
+        // Kiểm tra tham số trước khi bắt đầu stream để lỗi vẫn trả về 400
+        ExportFilter filter = childTestRecordNeonService.createExportFilter(
+                childId, testId, status, startDate, endDate, minScore, maxScore, includeAnswers);
+        MediaType mediaType = exportFormat == Format.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+        String fileName = "child-test-records." + (exportFormat == Format.CSV ? "csv" : "ndjson");
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(out -> childTestRecordNeonService.exportChildTestRecords(filter, exportFormat, out));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<ChildTestRecordNeon> updateChildTestRecord(
             @PathVariable Long id, @Valid @RequestBody ChildTestRecordNeon childTestRecord) {
@@ -194,6 +246,63 @@ public class ChildTestRecordNeonController {
         return deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
     }
 
+    @GetMapping("/{id}/answers")
+    public ResponseEntity<List<ChildTestAnswer>> getAnswersByRecordId(@PathVariable Long id) {
+        log.info("Getting normalized answers for child test record ID (Neon): {}", id);
+        List<ChildTestAnswer> answers = childTestRecordNeonService.getAnswersByRecordId(id);
+        return ResponseEntity.ok(answers);
+    }
+
+    @GetMapping("/test/{testId}/question-stats")
+    public ResponseEntity<List<QuestionAnswerStats>> getQuestionStatsByTestId(@PathVariable String testId) {
+        log.info("Getting per-question answer statistics for test ID (Neon): {}", testId);
+        List<QuestionAnswerStats> stats = childTestRecordNeonService.getQuestionStatsByTestId(testId);
+        return ResponseEntity.ok(stats);
+    }
+
+    @PostMapping("/answers/backfill")
+    public ResponseEntity<List<ChildTestRescoringJob>> backfillAnswers() {
+        log.info("Starting answer backfill (Neon)");
+        List<ChildTestRescoringJob> jobs = childTestRecordNeonService.backfillAnswers();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobs);
+    }
+
+    @PostMapping("/rescoring-jobs")
+    public ResponseEntity<ChildTestRescoringJob> startRescoringJob(@RequestParam Long testId) {
+        log.info("Starting rescoring job (Neon) for CDD test ID: {}", testId);
+        ChildTestRescoringJob job = childTestRecordNeonService.startRescoringJob(testId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/rescoring-jobs")
+    public ResponseEntity<List<ChildTestRescoringJob>> getRescoringJobsByTestId(@RequestParam Long testId) {
+        log.info("Getting rescoring jobs (Neon) for CDD test ID: {}", testId);
+        List<ChildTestRescoringJob> jobs = childTestRecordNeonService.getRescoringJobsByTestId(testId);
+        return ResponseEntity.ok(jobs);
+    }
+
+    @GetMapping("/rescoring-jobs/{jobId}")
+    public ResponseEntity<ChildTestRescoringJob> getRescoringJob(@PathVariable Long jobId) {
+        log.info("Getting rescoring job (Neon) by ID: {}", jobId);
+        return childTestRecordNeonService.getRescoringJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/rescoring-jobs/{jobId}/resume")
+    public ResponseEntity<ChildTestRescoringJob> resumeRescoringJob(@PathVariable Long jobId) {
+        log.info("Resuming rescoring job (Neon) with ID: {}", jobId);
+        ChildTestRescoringJob job = childTestRecordNeonService.resumeRescoringJob(jobId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @PostMapping("/rescoring-jobs/{jobId}/cancel")
+    public ResponseEntity<ChildTestRescoringJob> cancelRescoringJob(@PathVariable Long jobId) {
+        log.info("Cancelling rescoring job (Neon) with ID: {}", jobId);
+        ChildTestRescoringJob job = childTestRecordNeonService.cancelRescoringJob(jobId);
+        return ResponseEntity.ok(job);
+    }
+
     @GetMapping("/child/{childId}/count")
     public ResponseEntity<Long> getChildTestRecordCountByChildId(@PathVariable String childId) {
         log.info("Getting child test record count by child ID (Neon): {}", childId);
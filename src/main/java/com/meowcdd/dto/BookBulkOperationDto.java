@@ -0,0 +1,41 @@
+package com.meowcdd.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Yêu cầu thao tác hàng loạt trên sách
+ * Sách được chọn theo danh sách ids và/hoặc bộ lọc (các điều kiện kết hợp bằng AND); phải có ít nhất một điều kiện
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookBulkOperationDto {
+    
+    private List<Long> ids;
+    private Filter filter;
+    
+    // Giá trị mới (dùng cho cập nhật trạng thái / nổi bật)
+    private Boolean isActive;
+    private Boolean isFeatured;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Filter {
+        private Long supportedFormatId;
+        private UUID developmentalDomainId;
+        private Boolean isActive;
+        private Boolean isFeatured;
+        private String language;
+        private String ageGroup;
+        private String contentUploadedBy;
+    }
+}
@@ -0,0 +1,18 @@
+package com.meowcdd.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+/**
+ * Kết quả thao tác hàng loạt trên sách
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookBulkResultDto {
+    private String operation;
+    private int affectedCount; // Số sách thực sự bị thay đổi / xóa
+}
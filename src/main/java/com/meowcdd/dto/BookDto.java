@@ -1,8 +1,10 @@
 package com.meowcdd.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -47,6 +49,7 @@ public class BookDto {
     // === THÔNG TIN ĐÁNH GIÁ ===
     private Double averageRating;
     private Integer totalRatings;
+    private Map<Integer, Integer> ratingHistogram; // Số lượt đánh giá theo từng mức điểm 1-5 (chỉ đọc)
     private Long totalViews;
     
     // === THÔNG TIN TRẠNG THÁI ===
@@ -62,8 +65,10 @@ public class BookDto {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     
-    // === FILE NỘI DUNG SÁCH (LƯU TRỰC TIẾP TRONG DB) ===
-    private byte[] contentFile; // File nội dung sách (PDF, EPUB, etc.) lưu dưới dạng binary
+    // === FILE NỘI DUNG SÁCH ===
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private byte[] contentFile; // Chỉ dùng khi ghi: nội dung được lưu vào book_contents, không trả về trong response
+    private String contentSha256; // SHA-256 của nội dung file (chỉ đọc)
     private String contentFileName; // Tên file gốc
     private String contentFileType; // Loại file: "PDF", "EPUB", "DOCX", "TXT", etc.
     private Long contentFileSize; // Kích thước file (bytes)
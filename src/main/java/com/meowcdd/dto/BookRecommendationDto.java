@@ -0,0 +1,30 @@
+package com.meowcdd.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sách được gợi ý cho một trẻ, lấy trực tiếp từ chỉ mục gợi ý trong bộ nhớ
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookRecommendationDto {
+    private Long bookId;
+    private String title;
+    private String author;
+    private String ageGroup;
+    private Integer minAge; // tháng
+    private Integer maxAge; // tháng
+    private Double averageRating;
+    private Integer totalRatings;
+    private Long totalViews;
+    private Set<UUID> developmentalDomainIds;
+    private double score; // Điểm xếp hạng (0-1) theo đánh giá và lượt xem
+}
@@ -0,0 +1,38 @@
+package com.meowcdd.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Kết quả nộp hàng loạt bản ghi kết quả test, kèm trạng thái của từng dòng
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChildTestRecordBulkResultDto {
+    private int received; // Số dòng đã đọc từ request
+    private int created;
+    private int failed;
+    private String error; // Lỗi khiến request bị dừng giữa chừng (JSON hỏng, vượt giới hạn số dòng), các dòng trước đó vẫn có kết quả
+    private List<RowResult> results; // Theo đúng thứ tự các dòng gửi lên
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowResult {
+        private int index; // Vị trí dòng trong request, bắt đầu từ 0
+        private RowStatus status;
+        private Long id; // ID bản ghi đã tạo (chỉ có khi CREATED)
+        private String error;
+    }
+
+    public enum RowStatus {
+        CREATED, INVALID, FAILED
+    }
+}
@@ -0,0 +1,24 @@
+package com.meowcdd.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Kết quả phân trang theo cursor (keyset)
+ * nextCursor là chuỗi mờ (opaque) để lấy trang tiếp theo; totalElements chỉ có khi client yêu cầu
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageResponseDto<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+    private Long totalElements;
+}
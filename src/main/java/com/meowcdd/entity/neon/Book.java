@@ -10,6 +10,7 @@ import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import java.math.BigDecimal;
 import java.util.Set;
 
@@ -52,6 +53,7 @@ public class Book extends BaseEntity {
     private SupportedFormat supportedFormat; // Định dạng file
     
     @ManyToMany(fetch = FetchType.LAZY)
+    @BatchSize(size = 100) // Nạp lĩnh vực phát triển cho cả trang sách trong một truy vấn
     @JoinTable(
         name = "book_developmental_domains",
         joinColumns = @JoinColumn(name = "book_id"),
@@ -87,13 +89,35 @@ public class Book extends BaseEntity {
     private Integer pageCount; // Số trang (nếu là sách)
     
     // === THÔNG TIN ĐÁNH GIÁ (TÍNH TOÁN TỪ BOOK_RATINGS) ===
-    @Column(name = "average_rating")
+    // Chỉ được ghi bởi BookNeonRepository.applyRatingDelta (UPDATE nguyên tử); entity không ghi đè
+    // để lần lưu sách với giá trị đã tải không làm mất các thay đổi đánh giá xảy ra đồng thời
+    @Column(name = "average_rating", insertable = false, updatable = false)
     private Double averageRating; // Điểm đánh giá trung bình (1-5)
     
-    @Column(name = "total_ratings")
+    @Column(name = "total_ratings", insertable = false, updatable = false)
     private Integer totalRatings; // Tổng số lượt đánh giá
     
-    @Column(name = "total_views")
+    @Column(name = "rating_sum", insertable = false, updatable = false)
+    private Long ratingSum; // Tổng điểm của tất cả đánh giá (dùng để tính trung bình tăng dần)
+    
+    // Phân bố số lượt đánh giá theo từng mức điểm 1-5
+    @Column(name = "rating_count_1", insertable = false, updatable = false)
+    private Integer ratingCount1;
+    
+    @Column(name = "rating_count_2", insertable = false, updatable = false)
+    private Integer ratingCount2;
+    
+    @Column(name = "rating_count_3", insertable = false, updatable = false)
+    private Integer ratingCount3;
+    
+    @Column(name = "rating_count_4", insertable = false, updatable = false)
+    private Integer ratingCount4;
+    
+    @Column(name = "rating_count_5", insertable = false, updatable = false)
+    private Integer ratingCount5;
+    
+    // Chỉ được ghi bởi lần flush lượt xem của BookViewCounterService; lưu sách không ghi đè số đã flush
+    @Column(name = "total_views", insertable = false, updatable = false)
     private Long totalViews; // Tổng lượt xem
     
     // === THÔNG TIN TRẠNG THÁI ===
@@ -115,9 +139,9 @@ public class Book extends BaseEntity {
     @Column(name = "metadata", columnDefinition = "TEXT")
     private String metadata; // Metadata bổ sung (JSON)
     
-    // === FILE NỘI DUNG SÁCH (LƯU TRỰC TIẾP TRONG DB) ===
-    @Column(name = "content_file", columnDefinition = "BYTEA")
-    private byte[] contentFile; // File nội dung sách (PDF, EPUB, etc.) lưu dưới dạng binary
+    // === THÔNG TIN FILE NỘI DUNG (DỮ LIỆU BINARY LƯU Ở BẢNG book_contents) ===
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256; // SHA-256 của nội dung, khóa tới bảng book_contents (dùng chung giữa các sách trùng file)
     
     @Column(name = "content_file_name")
     private String contentFileName; // Tên file gốc
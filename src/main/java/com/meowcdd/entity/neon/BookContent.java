@@ -0,0 +1,64 @@
+package com.meowcdd.entity.neon;
+
+import com.meowcdd.entity.base.BaseEntity;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import jakarta.persistence.*;
+
+/**
+ * Entity lưu trữ nội dung file của sách, tách riêng khỏi bảng books
+ * Nội dung được định danh theo SHA-256: các sách có cùng file dùng chung một bản ghi,
+ * refCount cho biết số sách đang tham chiếu tới nội dung này.
+ * Dữ liệu có thể được nén (codec): size luôn là kích thước gốc, storedSize là kích thước thực lưu
+ */
+@Entity
+@Table(name = "book_contents")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(callSuper = true)
+public class BookContent extends BaseEntity {
+
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256; // Mã băm SHA-256 của nội dung (hex)
+
+    @Column(name = "data", columnDefinition = "BYTEA", nullable = false)
+    @ToString.Exclude
+    private byte[] data; // Nội dung file (PDF, EPUB, etc.) dưới dạng binary
+
+    @Column(name = "size", nullable = false)
+    private Long size; // Kích thước nội dung gốc (bytes)
+    
+    @Column(name = "stored_size")
+    private Long storedSize; // Kích thước dữ liệu thực lưu sau khi nén (bytes)
+    
+    @Column(name = "codec", length = 20)
+    @Enumerated(EnumType.STRING)
+    private Codec codec; // Cách mã hóa dữ liệu lưu trữ, null với dữ liệu cũ (coi như IDENTITY)
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount; // Số sách đang tham chiếu tới nội dung
+    
+    // === ENUM ===
+    public enum Codec {
+        IDENTITY(null),  // Lưu nguyên bản
+        GZIP("gzip");    // Nén gzip, có thể trả thẳng cho client gửi Accept-Encoding: gzip
+        
+        private final String contentEncoding;
+        
+        Codec(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+        
+        public String getContentEncoding() {
+            return contentEncoding; // Giá trị header Content-Encoding tương ứng
+        }
+    }
+}
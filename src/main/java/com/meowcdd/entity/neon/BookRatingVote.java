@@ -0,0 +1,42 @@
+package com.meowcdd.entity.neon;
+
+import com.meowcdd.entity.base.BaseEntity;
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Entity ghi nhận phiếu bình chọn hữu ích/không hữu ích của từng phụ huynh cho một đánh giá
+ * Khóa chính (rating_id, parent_id) đảm bảo mỗi phụ huynh chỉ có một phiếu cho mỗi đánh giá
+ */
+@Entity
+@Table(name = "book_rating_votes")
+@IdClass(BookRatingVote.VoteId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(callSuper = true)
+public class BookRatingVote extends BaseEntity {
+    
+    @Id
+    @Column(name = "rating_id")
+    private Long ratingId; // ID đánh giá được bình chọn
+    
+    @Id
+    @Column(name = "parent_id")
+    private String parentId; // ID phụ huynh bình chọn
+    
+    @Column(name = "is_helpful", nullable = false)
+    private Boolean isHelpful; // true = hữu ích, false = không hữu ích
+    
+    // === KHÓA CHÍNH ===
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VoteId implements Serializable {
+        private Long ratingId;
+        private String parentId;
+    }
+}
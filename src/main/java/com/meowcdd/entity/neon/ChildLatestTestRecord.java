@@ -0,0 +1,45 @@
+package com.meowcdd.entity.neon;
+
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Bảng chiếu (projection) bản ghi bài test mới nhất của mỗi trẻ cho từng bài test
+ * Được cập nhật trong cùng transaction với thao tác ghi child_test_records (xem ChildLatestTestRecordNeonService),
+ * nên dashboard phụ huynh chỉ cần tra theo khóa chính thay vì quét toàn bộ lịch sử của trẻ
+ */
+@Entity
+@Table(name = "child_latest_test_record")
+@IdClass(ChildLatestTestRecord.LatestId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChildLatestTestRecord {
+    
+    @Id
+    @Column(name = "child_id")
+    private Long childId; // ID của trẻ
+    
+    @Id
+    @Column(name = "test_id")
+    private String testId; // ID của bài test
+    
+    @Column(name = "record_id", nullable = false)
+    private Long recordId; // ID bản ghi mới nhất trong child_test_records
+    
+    @Column(name = "test_date", nullable = false)
+    private LocalDateTime testDate; // Ngày làm bài của bản ghi mới nhất
+    
+    // === KHÓA CHÍNH ===
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LatestId implements Serializable {
+        private Long childId;
+        private String testId;
+    }
+}
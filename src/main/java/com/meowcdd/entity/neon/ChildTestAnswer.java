@@ -0,0 +1,52 @@
+package com.meowcdd.entity.neon;
+
+import lombok.*;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Câu trả lời đã chuẩn hóa của từng câu hỏi trong một bản ghi bài test CDD
+ * Tách từ questionAnswers (JSON) khi ghi bản ghi hoặc khi chấm điểm lại, để thống kê theo câu hỏi
+ * là truy vấn tổng hợp có index thay vì đọc và parse JSON của mọi bản ghi
+ */
+@Entity
+@Table(name = "child_test_answers", indexes = {
+    @Index(name = "idx_child_test_answers_test_id_question_id", columnList = "test_id, question_id")
+})
+@IdClass(ChildTestAnswer.AnswerId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChildTestAnswer {
+    
+    @Id
+    @Column(name = "record_id")
+    private Long recordId; // ID bản ghi trong child_test_records
+    
+    @Id
+    @Column(name = "question_id", length = 100)
+    private String questionId; // ID câu hỏi theo định nghĩa bài test (hoặc số thứ tự nếu câu hỏi không có ID)
+    
+    @Column(name = "test_id", nullable = false)
+    private Long testId; // ID bài test CDD (lặp lại từ bản ghi để thống kê theo bài test không cần join)
+    
+    @Column(name = "question_number")
+    private Integer questionNumber; // Số thứ tự câu hỏi
+    
+    @Column(name = "answer", nullable = false)
+    private Boolean answer; // true = có, false = không
+    
+    @Column(name = "score", nullable = false)
+    private Double score; // Số điểm câu trả lời đạt được theo tiêu chí hiện tại
+    
+    // === KHÓA CHÍNH ===
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AnswerId implements Serializable {
+        private Long recordId;
+        private String questionId;
+    }
+}
@@ -1,5 +1,7 @@
 package com.meowcdd.entity.neon;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.meowcdd.entity.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.Data;
@@ -11,7 +13,11 @@ import lombok.EqualsAndHashCode;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "child_test_records")
+@Table(name = "child_test_records", indexes = {
+    @Index(name = "idx_child_test_records_child_id_test_date", columnList = "child_id, test_date"),
+    @Index(name = "idx_child_test_records_test_id_test_date", columnList = "test_id, test_date"),
+    @Index(name = "idx_child_test_records_cdd_test_id_test_date", columnList = "cdd_test_id, test_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,16 +25,27 @@ import java.time.LocalDateTime;
 @EqualsAndHashCode(callSuper = true)
 public class ChildTestRecordNeon extends BaseEntity {
     
+    // ID lấy từ sequence theo khối 50 (pooled optimizer) để Hibernate gộp được INSERT thành batch;
+    // INCREMENT BY của sequence phải bằng allocationSize (xem migration alter_child_test_records_id_sequence.sql)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "child_test_records_id_gen")
+    @SequenceGenerator(name = "child_test_records_id_gen", sequenceName = "child_test_records_id_seq", allocationSize = 50)
     private Long id;
     
+    // Khóa ngoại bigint tới children(id) (xem migration convert_child_test_records_foreign_keys.sql);
+    // JSON vẫn trả về dạng chuỗi như trước để không ảnh hưởng client cũ
     @Column(name = "child_id", nullable = false)
-    private String childId; // ID của trẻ thực hiện bài test
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long childId; // ID của trẻ thực hiện bài test
     
     @Column(name = "test_id", nullable = false)
     private String testId; // ID của bài test (CDDTest hoặc AssessmentTest)
     
+    // Khóa ngoại tới cdd_tests(id), chỉ có giá trị khi testType = CDD_TEST (CHECK trong DB); suy ra từ testId
+    @Column(name = "cdd_test_id")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long cddTestId;
+    
     @Column(name = "test_type", nullable = false)
     @Enumerated(EnumType.STRING)
     private TestType testType; // Loại bài test
@@ -86,6 +103,35 @@ public class ChildTestRecordNeon extends BaseEntity {
     @Column(name = "parent_present")
     private Boolean parentPresent; // Có phụ huynh tham gia không
     
+    @PrePersist
+    protected void onCreate() {
+        super.onCreate();
+        resolveCddTestId();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        super.onUpdate();
+        resolveCddTestId();
+    }
+    
+    /**
+     * Đồng bộ cddTestId theo testId/testType: bài test CDD phải có testId là ID số của cdd_tests,
+     * các loại bài test khác giữ nguyên testId dạng chuỗi và không có cddTestId
+     */
+    public void resolveCddTestId() {
+        if (testType != TestType.CDD_TEST) {
+            cddTestId = null;
+            return;
+        }
+        if (testId == null || !testId.trim().matches("[0-9]{1,18}")) {
+            throw new IllegalArgumentException("testId of a CDD_TEST record must be a numeric CDD test ID: " + testId);
+        }
+        cddTestId = Long.valueOf(testId.trim());
+        // Cùng dạng với cdd_test_id (CHECK trong DB): bỏ khoảng trắng và số 0 ở đầu
+        testId = cddTestId.toString();
+    }
+    
     public enum Status {
         SCHEDULED, IN_PROGRESS, COMPLETED, CANCELLED, RESCHEDULED
     }
@@ -0,0 +1,68 @@
+package com.meowcdd.entity.neon;
+
+import com.meowcdd.entity.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity theo dõi tiến độ chấm điểm lại các bản ghi bài test của trẻ khi tiêu chí chấm điểm thay đổi
+ * lastRecordId là id bản ghi lớn nhất đã được chấm và ghi xong (các bản ghi được duyệt theo id tăng dần),
+ * dùng để tiếp tục job sau khi bị dừng hoặc lỗi
+ */
+@Entity
+@Table(name = "child_test_rescoring_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(callSuper = true)
+public class ChildTestRescoringJob extends BaseEntity {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "test_id", nullable = false)
+    private Long testId; // ID bài test CDD có tiêu chí thay đổi
+    
+    @Column(name = "test_version")
+    private String testVersion; // Phiên bản bài test dùng để chấm điểm
+    
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+    
+    @Column(name = "total_records")
+    private Long totalRecords; // Số bản ghi cần chấm lúc bắt đầu job
+    
+    @Column(name = "processed_records")
+    private Long processedRecords; // Số bản ghi đã chấm
+    
+    @Column(name = "updated_records")
+    private Long updatedRecords; // Số bản ghi có kết quả thay đổi
+    
+    @Column(name = "failed_records")
+    private Long failedRecords; // Số bản ghi không chấm được (câu trả lời không hợp lệ)
+    
+    @Column(name = "last_record_id")
+    private Long lastRecordId;
+    
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+    
+    public enum Status {
+        RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+}
@@ -2,6 +2,7 @@ package com.meowcdd.entity.neon;
 
 import com.meowcdd.entity.base.BaseEntity;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -20,6 +21,7 @@ import lombok.EqualsAndHashCode;
 @AllArgsConstructor
 @Builder
 @EqualsAndHashCode(callSuper = true)
+@BatchSize(size = 100) // Nạp định dạng cho nhiều sách cùng lúc khi truy vấn không fetch join được (native query)
 public class SupportedFormat extends BaseEntity {
     
     @Id
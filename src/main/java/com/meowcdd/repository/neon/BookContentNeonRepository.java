@@ -0,0 +1,59 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.BookContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository cho entity BookContent
+ * Chỉ dùng cho các thao tác đọc/ghi nội dung file, không dùng cho truy vấn danh mục
+ */
+@Repository
+public interface BookContentNeonRepository extends JpaRepository<BookContent, String> {
+
+    // === ĐỌC NỘI DUNG ===
+    // Thông tin lưu trữ (kích thước gốc, kích thước sau nén, codec) mà không tải dữ liệu
+    @Query("SELECT c.sha256 AS sha256, c.size AS size, c.storedSize AS storedSize, c.codec AS codec " +
+           "FROM BookContent c WHERE c.sha256 = :sha256")
+    Optional<ContentInfo> findInfoBySha256(@Param("sha256") String sha256);
+    
+    // Đọc một đoạn nội dung ngay trên database (offset tính từ 1 theo substring của PostgreSQL)
+    @Query(value = "SELECT substring(c.data FROM :offset FOR :length) FROM book_contents c WHERE c.sha256 = :sha256", nativeQuery = true)
+    byte[] findDataRange(@Param("sha256") String sha256, @Param("offset") int offset, @Param("length") int length);
+
+    // === ĐẾM THAM CHIẾU ===
+    @Modifying
+    @Query("UPDATE BookContent c SET c.refCount = c.refCount + 1 WHERE c.sha256 = :sha256")
+    int incrementRefCount(@Param("sha256") String sha256);
+    
+    @Modifying
+    @Query("UPDATE BookContent c SET c.refCount = c.refCount - :references WHERE c.sha256 = :sha256")
+    int decrementRefCountBy(@Param("sha256") String sha256, @Param("references") int references);
+
+    // === XÓA NỘI DUNG ===
+    @Modifying
+    @Query("DELETE FROM BookContent c WHERE c.sha256 = :sha256 AND c.refCount <= 0")
+    int deleteUnreferenced(@Param("sha256") String sha256);
+    
+    // === PROJECTION ===
+    interface ContentInfo {
+        String getSha256();
+        Long getSize();
+        Long getStoredSize();
+        BookContent.Codec getCodec();
+        
+        // Dữ liệu cũ chưa có codec/storedSize được coi là lưu nguyên bản
+        default BookContent.Codec getEffectiveCodec() {
+            return getCodec() != null ? getCodec() : BookContent.Codec.IDENTITY;
+        }
+        
+        default long getEffectiveStoredSize() {
+            return getStoredSize() != null ? getStoredSize() : getSize();
+        }
+    }
+}
@@ -3,11 +3,16 @@ package com.meowcdd.repository.neon;
 import com.meowcdd.entity.neon.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -18,7 +23,14 @@ import java.util.UUID;
  * Cung cấp các method truy vấn cơ bản và tùy chỉnh
  */
 @Repository
-public interface BookNeonRepository extends JpaRepository<Book, Long> {
+public interface BookNeonRepository extends JpaRepository<Book, Long>, BookNeonRepositoryCustom {
+    
+    // === DANH SÁCH CÓ PHÂN TRANG ===
+    // Các truy vấn phân trang chỉ fetch join quan hệ many-to-one (supportedFormat) để LIMIT/OFFSET vẫn chạy trên database;
+    // developmentalDomains của cả trang được nạp bằng một truy vấn theo lô (@BatchSize trên Book)
+    @Override
+    @EntityGraph(attributePaths = "supportedFormat")
+    Page<Book> findAll(Pageable pageable);
     
     // === TÌM KIẾM THEO TIÊU ĐỀ ===
     Optional<Book> findByTitle(String title);
@@ -37,10 +49,12 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
     boolean existsByIsbn(String isbn);
     
     // === TÌM KIẾM THEO ĐỊNH DẠNG FILE ===
+    @EntityGraph(attributePaths = {"supportedFormat", "developmentalDomains"})
     List<Book> findBySupportedFormatId(Long supportedFormatId);
     Page<Book> findBySupportedFormatId(Long supportedFormatId, Pageable pageable);
     
     // === TÌM KIẾM THEO LĨNH VỰC PHÁT TRIỂN ===
+    @EntityGraph(attributePaths = {"supportedFormat", "developmentalDomains"})
     @Query("SELECT b FROM Book b JOIN b.developmentalDomains dd WHERE dd.id = :domainId")
     List<Book> findByDevelopmentalDomainId(@Param("domainId") UUID domainId);
     
@@ -57,6 +71,7 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
     // === TÌM KIẾM THEO TRẠNG THÁI ===
     List<Book> findByIsActiveTrue();
     List<Book> findByIsFeaturedTrue();
+    @EntityGraph(attributePaths = {"supportedFormat", "developmentalDomains"})
     List<Book> findByIsActiveTrueAndIsFeaturedTrue();
     
     // === TÌM KIẾM THEO ĐÁNH GIÁ ===
@@ -75,6 +90,7 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
            "(:ageGroup IS NULL OR b.ageGroup = :ageGroup) AND " +
            "(:isActive IS NULL OR b.isActive = :isActive) AND " +
            "(:isFeatured IS NULL OR b.isFeatured = :isFeatured)")
+    @EntityGraph(attributePaths = "supportedFormat")
     Page<Book> findByFilters(
         @Param("title") String title,
         @Param("author") String author,
@@ -85,6 +101,89 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
         Pageable pageable
     );
     
+    // === CẬP NHẬT THỐNG KÊ ĐÁNH GIÁ ===
+    // Áp dụng thay đổi đánh giá bằng một câu UPDATE duy nhất: tổng điểm, số lượt, phân bố 1-5 và điểm trung bình
+    // (addedRating / removedRating = 0 nghĩa là không có đánh giá được thêm / bỏ);
+    // updated_at lấy thời điểm phía ứng dụng như BaseEntity, không dùng đồng hồ của database
+    @Modifying
+    @Query(value = "UPDATE books SET " +
+           "rating_sum = COALESCE(rating_sum, 0) + :addedRating - :removedRating, " +
+           "total_ratings = COALESCE(total_ratings, 0) + :countDelta, " +
+           "rating_count_1 = COALESCE(rating_count_1, 0) + (CASE WHEN :addedRating = 1 THEN 1 ELSE 0 END) - (CASE WHEN :removedRating = 1 THEN 1 ELSE 0 END), " +
+           "rating_count_2 = COALESCE(rating_count_2, 0) + (CASE WHEN :addedRating = 2 THEN 1 ELSE 0 END) - (CASE WHEN :removedRating = 2 THEN 1 ELSE 0 END), " +
+           "rating_count_3 = COALESCE(rating_count_3, 0) + (CASE WHEN :addedRating = 3 THEN 1 ELSE 0 END) - (CASE WHEN :removedRating = 3 THEN 1 ELSE 0 END), " +
+           "rating_count_4 = COALESCE(rating_count_4, 0) + (CASE WHEN :addedRating = 4 THEN 1 ELSE 0 END) - (CASE WHEN :removedRating = 4 THEN 1 ELSE 0 END), " +
+           "rating_count_5 = COALESCE(rating_count_5, 0) + (CASE WHEN :addedRating = 5 THEN 1 ELSE 0 END) - (CASE WHEN :removedRating = 5 THEN 1 ELSE 0 END), " +
+           "average_rating = CASE WHEN COALESCE(total_ratings, 0) + :countDelta > 0 " +
+           "THEN CAST(COALESCE(rating_sum, 0) + :addedRating - :removedRating AS DOUBLE PRECISION) / (COALESCE(total_ratings, 0) + :countDelta) " +
+           "ELSE NULL END, " +
+           "updated_at = :now " +
+           "WHERE id = :bookId", nativeQuery = true)
+    int applyRatingDelta(@Param("bookId") Long bookId,
+                         @Param("addedRating") int addedRating,
+                         @Param("removedRating") int removedRating,
+                         @Param("countDelta") int countDelta,
+                         @Param("now") LocalDateTime now);
+    
+    // === VALIDATOR CHO CONDITIONAL GET ===
+    // Chỉ đọc các cột cần để tạo ETag / Last-Modified, không tải entity
+    @Query("SELECT b.id AS id, b.updatedAt AS updatedAt, b.contentSha256 AS contentSha256, " +
+           "b.contentFileName AS contentFileName, b.contentMimeType AS contentMimeType, b.contentUploadedAt AS contentUploadedAt " +
+           "FROM Book b WHERE b.id = :id")
+    Optional<BookVersionInfo> findVersionInfoById(@Param("id") Long id);
+    
+    // Phiên bản danh mục: mọi thêm/sửa/xóa sách (kể cả flush lượt xem) đều làm thay đổi số lượng hoặc thời điểm cập nhật mới nhất
+    @Query("SELECT COUNT(b) AS bookCount, MAX(b.updatedAt) AS lastUpdatedAt FROM Book b")
+    CatalogVersion findCatalogVersion();
+    
+    // === XÓA HÀNG LOẠT ===
+    @Modifying
+    @Query(value = "DELETE FROM book_developmental_domains WHERE book_id IN (:bookIds)", nativeQuery = true)
+    int deleteDevelopmentalDomainLinks(@Param("bookIds") List<Long> bookIds);
+    
+    @Modifying
+    @Query("DELETE FROM Book b WHERE b.id IN :bookIds")
+    int deleteByIds(@Param("bookIds") List<Long> bookIds);
+    
+    // === CHỈ MỤC GỢI Ý SÁCH ===
+    // Chỉ đọc các cột cần cho chỉ mục gợi ý: id, title, author, ageGroup, minAge, maxAge, averageRating, totalRatings, ratingSum, totalViews
+    @Query("SELECT b.id, b.title, b.author, b.ageGroup, b.minAge, b.maxAge, b.averageRating, b.totalRatings, b.ratingSum, b.totalViews " +
+           "FROM Book b WHERE b.isActive = true")
+    List<Object[]> findRecommendationRows();
+    
+    @Query("SELECT b.id, b.title, b.author, b.ageGroup, b.minAge, b.maxAge, b.averageRating, b.totalRatings, b.ratingSum, b.totalViews " +
+           "FROM Book b WHERE b.isActive = true AND b.id IN :bookIds")
+    List<Object[]> findRecommendationRowsByIds(@Param("bookIds") Collection<Long> bookIds);
+    
+    // (bookId, developmentalDomainId) của các sách đang hoạt động
+    @Query("SELECT b.id, d.id FROM Book b JOIN b.developmentalDomains d WHERE b.isActive = true")
+    List<Object[]> findRecommendationDomainLinks();
+    
+    @Query("SELECT b.id, d.id FROM Book b JOIN b.developmentalDomains d WHERE b.isActive = true AND b.id IN :bookIds")
+    List<Object[]> findRecommendationDomainLinksByIds(@Param("bookIds") Collection<Long> bookIds);
+    
+    // === XÁC MINH NỘI DUNG ===
+    @Query("SELECT b.id AS id, b.contentSha256 AS contentSha256, b.contentMimeType AS contentMimeType, " +
+           "b.contentFileName AS contentFileName, f.mimeType AS formatMimeType, f.fileExtension AS formatFileExtension " +
+           "FROM Book b JOIN b.supportedFormat f WHERE b.id = :id")
+    Optional<VerificationTarget> findVerificationTargetById(@Param("id") Long id);
+    
+    // Sách có nội dung nhưng chưa từng được xác minh (contentVerificationDate null)
+    @Query("SELECT b.id FROM Book b WHERE b.contentSha256 IS NOT NULL AND b.contentVerificationDate IS NULL ORDER BY b.id")
+    List<Long> findIdsPendingVerification(Pageable pageable);
+    
+    // Chỉ ghi kết quả nếu nội dung chưa bị thay trong lúc xác minh; pageCount null thì giữ giá trị cũ
+    @Modifying
+    @Transactional
+    @Query("UPDATE Book b SET b.contentIsVerified = :verified, b.contentVerificationDate = :verifiedAt, " +
+           "b.pageCount = COALESCE(:pageCount, b.pageCount), b.updatedAt = :verifiedAt " +
+           "WHERE b.id = :id AND b.contentSha256 = :contentSha256")
+    int applyVerificationResult(@Param("id") Long id,
+                                @Param("contentSha256") String contentSha256,
+                                @Param("verified") boolean verified,
+                                @Param("pageCount") Integer pageCount,
+                                @Param("verifiedAt") LocalDateTime verifiedAt);
+    
     // === THỐNG KÊ ===
     @Query("SELECT COUNT(b) FROM Book b WHERE b.isActive = true")
     long countActiveBooks();
@@ -101,8 +200,19 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
            "LOWER(b.author) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(b.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
            "LOWER(b.keywords) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    @EntityGraph(attributePaths = "supportedFormat")
     Page<Book> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
     
+    // === TÌM KIẾM TOÀN VĂN (FULL-TEXT) ===
+    // Dùng cột search_vector (tsvector, GIN index) với trọng số: tiêu đề (A) > tác giả, từ khóa, tags (B) > mô tả, tóm tắt (C)
+    // Tham số query là tsquery đã được chuẩn hóa (bỏ dấu tiếng Việt) ở tầng service
+    @Query(value = "SELECT b.* FROM books b " +
+           "WHERE b.search_vector @@ to_tsquery('simple', :query) " +
+           "ORDER BY ts_rank_cd(b.search_vector, to_tsquery('simple', :query)) DESC, b.id",
+           countQuery = "SELECT COUNT(*) FROM books b WHERE b.search_vector @@ to_tsquery('simple', :query)",
+           nativeQuery = true)
+    Page<Book> searchByFullText(@Param("query") String query, Pageable pageable);
+    
     // === TÌM KIẾM THEO FILE NỘI DUNG ===
     @Query("SELECT b FROM Book b WHERE " +
            "LOWER(b.contentFileName) LIKE LOWER(CONCAT('%', :fileNameKeyword, '%'))")
@@ -113,6 +223,7 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
     Page<Book> findByContentFileNameContainingIgnoreCase(@Param("fileNameKeyword") String fileNameKeyword, Pageable pageable);
     
     // === TÌM KIẾM THEO LOẠI FILE ===
+    @EntityGraph(attributePaths = {"supportedFormat", "developmentalDomains"})
     List<Book> findByContentFileType(String contentFileType);
     List<Book> findByContentFileTypeAndIsActiveTrue(String contentFileType);
     
@@ -121,6 +232,7 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
     List<Book> findByContentMimeTypeAndIsActiveTrue(String contentMimeType);
     
     // === TÌM KIẾM THEO NGƯỜI UPLOAD ===
+    @EntityGraph(attributePaths = {"supportedFormat", "developmentalDomains"})
     List<Book> findByContentUploadedBy(String contentUploadedBy);
     List<Book> findByContentUploadedByAndIsActiveTrue(String contentUploadedBy);
     
@@ -148,14 +260,15 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
     Page<Book> searchByKeywordExtended(@Param("keyword") String keyword, Pageable pageable);
     
     // === TÌM KIẾM SÁCH CÓ FILE NỘI DUNG ===
-    @Query("SELECT b FROM Book b WHERE b.contentFile IS NOT NULL AND b.contentFileSize > 0")
+    @Query("SELECT b FROM Book b WHERE b.contentFileSize IS NOT NULL AND b.contentFileSize > 0")
+    @EntityGraph(attributePaths = {"supportedFormat", "developmentalDomains"})
     List<Book> findBooksWithContentFile();
     
-    @Query("SELECT b FROM Book b WHERE b.contentFile IS NOT NULL AND b.contentFileSize > 0 AND b.isActive = true")
+    @Query("SELECT b FROM Book b WHERE b.contentFileSize IS NOT NULL AND b.contentFileSize > 0 AND b.isActive = true")
     Page<Book> findActiveBooksWithContentFile(Pageable pageable);
     
     // === THỐNG KÊ FILE NỘI DUNG ===
-    @Query("SELECT COUNT(b) FROM Book b WHERE b.contentFile IS NOT NULL AND b.contentFileSize > 0")
+    @Query("SELECT COUNT(b) FROM Book b WHERE b.contentFileSize IS NOT NULL AND b.contentFileSize > 0")
     long countBooksWithContentFile();
     
     @Query("SELECT b.contentFileType, COUNT(b) FROM Book b WHERE b.contentFileType IS NOT NULL GROUP BY b.contentFileType")
@@ -175,4 +288,28 @@ public interface BookNeonRepository extends JpaRepository<Book, Long> {
     
     @Query("SELECT AVG(b.contentFileSize) FROM Book b WHERE b.contentFileSize IS NOT NULL")
     Double getAverageContentFileSize();
+    
+    // === PROJECTION ===
+    interface BookVersionInfo {
+        Long getId();
+        LocalDateTime getUpdatedAt();
+        String getContentSha256();
+        String getContentFileName();
+        String getContentMimeType();
+        LocalDateTime getContentUploadedAt();
+    }
+    
+    interface VerificationTarget {
+        Long getId();
+        String getContentSha256();
+        String getContentMimeType();
+        String getContentFileName();
+        String getFormatMimeType();
+        String getFormatFileExtension();
+    }
+    
+    interface CatalogVersion {
+        long getBookCount();
+        LocalDateTime getLastUpdatedAt();
+    }
 }
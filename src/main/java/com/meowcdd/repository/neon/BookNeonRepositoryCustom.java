@@ -0,0 +1,132 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.Book;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Các truy vấn tùy chỉnh cho Book không biểu diễn được bằng query method
+ */
+public interface BookNeonRepositoryCustom {
+    
+    /**
+     * Lấy một trang sách theo keyset (cursor): các sách đứng sau (lastSortValue, lastId) theo thứ tự (sortField, id)
+     * Không dùng OFFSET nên thời gian truy vấn không tăng theo độ sâu của trang.
+     * lastId = null nghĩa là lấy trang đầu tiên.
+     */
+    List<Book> findKeysetPage(KeysetSortField sortField, boolean descending,
+                              Comparable<?> lastSortValue, Long lastId, int limit);
+    
+    /**
+     * Cập nhật hàng loạt một cờ trạng thái bằng một câu UPDATE duy nhất
+     * Chỉ các sách có giá trị khác giá trị mới mới bị cập nhật (và đổi updatedAt); trả về số sách bị thay đổi
+     */
+    int bulkUpdateFlag(BulkSelection selection, BulkFlag flag, boolean value, LocalDateTime updatedAt);
+    
+    /**
+     * Lấy (id, contentSha256) của các sách thỏa điều kiện chọn hàng loạt
+     */
+    List<Object[]> findBulkTargets(BulkSelection selection);
+    
+    /**
+     * Điều kiện chọn sách cho thao tác hàng loạt; các trường null bị bỏ qua, các điều kiện kết hợp bằng AND
+     */
+    @Data
+    @Builder
+    class BulkSelection {
+        private List<Long> ids;
+        private Long supportedFormatId;
+        private UUID developmentalDomainId;
+        private Boolean isActive;
+        private Boolean isFeatured;
+        private String language;
+        private String ageGroup;
+        private String contentUploadedBy;
+        
+        public boolean isEmpty() {
+            return (ids == null || ids.isEmpty()) && supportedFormatId == null && developmentalDomainId == null
+                && isActive == null && isFeatured == null && language == null && ageGroup == null && contentUploadedBy == null;
+        }
+    }
+    
+    /**
+     * Các cờ được phép cập nhật hàng loạt
+     */
+    enum BulkFlag {
+        ACTIVE("isActive"),
+        FEATURED("isFeatured");
+        
+        private final String property;
+        
+        BulkFlag(String property) {
+            this.property = property;
+        }
+        
+        public String getProperty() {
+            return property;
+        }
+    }
+    
+    /**
+     * Các trường được phép dùng để sắp xếp khi phân trang keyset
+     * Trường có thể null được so sánh qua COALESCE với nullValue để thứ tự luôn xác định;
+     * mỗi trường cần một index (COALESCE(cột, nullValue), id) khớp đúng kiểu literal (xem add_books_keyset_indexes.sql)
+     */
+    enum KeysetSortField {
+        ID("id", null, Book::getId, Long::valueOf),
+        TITLE("title", null, Book::getTitle, value -> value),
+        AUTHOR("author", "", Book::getAuthor, value -> value),
+        PUBLICATION_YEAR("publicationYear", 0, Book::getPublicationYear, Integer::valueOf),
+        AVERAGE_RATING("averageRating", 0.0, Book::getAverageRating, Double::valueOf),
+        TOTAL_RATINGS("totalRatings", 0, Book::getTotalRatings, Integer::valueOf),
+        TOTAL_VIEWS("totalViews", 0L, Book::getTotalViews, Long::valueOf),
+        CREATED_AT("createdAt", LocalDateTime.of(1970, 1, 1, 0, 0), Book::getCreatedAt, LocalDateTime::parse),
+        UPDATED_AT("updatedAt", LocalDateTime.of(1970, 1, 1, 0, 0), Book::getUpdatedAt, LocalDateTime::parse);
+        
+        private final String property;
+        private final Comparable<?> nullValue;
+        private final Function<Book, Comparable<?>> getter;
+        private final Function<String, Comparable<?>> parser;
+        
+        KeysetSortField(String property, Comparable<?> nullValue,
+                        Function<Book, Comparable<?>> getter, Function<String, Comparable<?>> parser) {
+            this.property = property;
+            this.nullValue = nullValue;
+            this.getter = getter;
+            this.parser = parser;
+        }
+        
+        public String getProperty() {
+            return property;
+        }
+        
+        public Comparable<?> getNullValue() {
+            return nullValue;
+        }
+        
+        /**
+         * Giá trị khóa sắp xếp của sách (đã thay null bằng nullValue)
+         */
+        public Comparable<?> valueOf(Book book) {
+            Comparable<?> value = getter.apply(book);
+            return value != null ? value : nullValue;
+        }
+        
+        public Comparable<?> parse(String value) {
+            return parser.apply(value);
+        }
+        
+        public static Optional<KeysetSortField> fromProperty(String property) {
+            return Arrays.stream(values())
+                .filter(field -> field.property.equals(property))
+                .findFirst();
+        }
+    }
+}
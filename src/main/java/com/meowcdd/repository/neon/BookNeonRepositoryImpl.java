@@ -0,0 +1,134 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.Book;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CommonAbstractCriteria;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cài đặt các truy vấn tùy chỉnh của BookNeonRepository bằng Criteria API
+ */
+public class BookNeonRepositoryImpl implements BookNeonRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Book> findKeysetPage(KeysetSortField sortField, boolean descending,
+                                     Comparable<?> lastSortValue, Long lastId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = cb.createQuery(Book.class);
+        Root<Book> book = query.from(Book.class);
+        book.fetch("supportedFormat", JoinType.LEFT);
+        
+        Expression<Long> id = book.get("id");
+        // nullValue phải là literal trong SQL (không phải tham số ?) để biểu thức COALESCE trùng với
+        // expression index trong migration add_books_keyset_indexes.sql
+        Expression sortKey = sortField.getNullValue() != null
+            ? cb.coalesce(book.get(sortField.getProperty()), cb.literal((Comparable) sortField.getNullValue()))
+            : book.get(sortField.getProperty());
+        
+        // Điều kiện "đứng sau cursor": (sortKey, id) > (lastSortValue, lastId) theo chiều sắp xếp
+        // Điều kiện sortKey >= lastSortValue được tách riêng để database dùng được index (sortKey, id)
+        if (lastId != null) {
+            Predicate afterId = descending ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId);
+            if (sortField == KeysetSortField.ID) {
+                query.where(afterId);
+            } else {
+                Comparable lastValue = (Comparable) lastSortValue;
+                Predicate notBeforeKey = descending ? cb.lessThanOrEqualTo(sortKey, lastValue) : cb.greaterThanOrEqualTo(sortKey, lastValue);
+                Predicate afterKey = descending ? cb.lessThan(sortKey, lastValue) : cb.greaterThan(sortKey, lastValue);
+                query.where(cb.and(notBeforeKey, cb.or(afterKey, afterId)));
+            }
+        }
+        
+        if (sortField == KeysetSortField.ID) {
+            query.orderBy(descending ? cb.desc(id) : cb.asc(id));
+        } else {
+            query.orderBy(descending ? cb.desc(sortKey) : cb.asc(sortKey),
+                          descending ? cb.desc(id) : cb.asc(id));
+        }
+        
+        return entityManager.createQuery(query)
+            .setMaxResults(limit)
+            .getResultList();
+    }
+    
+    @Override
+    public int bulkUpdateFlag(BulkSelection selection, BulkFlag flag, boolean value, LocalDateTime updatedAt) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Book> update = cb.createCriteriaUpdate(Book.class);
+        Root<Book> book = update.from(Book.class);
+        
+        Expression<Boolean> flagValue = book.get(flag.getProperty());
+        List<Predicate> predicates = buildBulkPredicates(cb, update, book, selection);
+        predicates.add(cb.or(cb.isNull(flagValue), cb.notEqual(flagValue, value)));
+        
+        update.set(book.<Boolean>get(flag.getProperty()), value)
+              .set(book.<LocalDateTime>get("updatedAt"), updatedAt)
+              .where(predicates.toArray(new Predicate[0]));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+    
+    @Override
+    public List<Object[]> findBulkTargets(BulkSelection selection) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Book> book = query.from(Book.class);
+        
+        query.multiselect(book.get("id"), book.get("contentSha256"))
+             .where(buildBulkPredicates(cb, query, book, selection).toArray(new Predicate[0]))
+             .orderBy(cb.asc(book.get("id")));
+        return entityManager.createQuery(query).getResultList();
+    }
+    
+    // === HELPER METHODS ===
+    
+    private List<Predicate> buildBulkPredicates(CriteriaBuilder cb, CommonAbstractCriteria criteria,
+                                                Root<Book> book, BulkSelection selection) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (selection.getIds() != null && !selection.getIds().isEmpty()) {
+            predicates.add(book.get("id").in(selection.getIds()));
+        }
+        if (selection.getSupportedFormatId() != null) {
+            predicates.add(cb.equal(book.get("supportedFormat").get("id"), selection.getSupportedFormatId()));
+        }
+        if (selection.getDevelopmentalDomainId() != null) {
+            // UPDATE không join được nên lọc theo lĩnh vực qua subquery trên bảng liên kết
+            Subquery<Long> domainBooks = criteria.subquery(Long.class);
+            Root<Book> linked = domainBooks.from(Book.class);
+            domainBooks.select(linked.get("id"))
+                       .where(cb.equal(linked.join("developmentalDomains").get("id"), selection.getDevelopmentalDomainId()));
+            predicates.add(book.get("id").in(domainBooks));
+        }
+        if (selection.getIsActive() != null) {
+            predicates.add(cb.equal(book.get("isActive"), selection.getIsActive()));
+        }
+        if (selection.getIsFeatured() != null) {
+            predicates.add(cb.equal(book.get("isFeatured"), selection.getIsFeatured()));
+        }
+        if (selection.getLanguage() != null) {
+            predicates.add(cb.equal(book.get("language"), selection.getLanguage()));
+        }
+        if (selection.getAgeGroup() != null) {
+            predicates.add(cb.equal(book.get("ageGroup"), selection.getAgeGroup()));
+        }
+        if (selection.getContentUploadedBy() != null) {
+            predicates.add(cb.equal(book.get("contentUploadedBy"), selection.getContentUploadedBy()));
+        }
+        return predicates;
+    }
+}
@@ -4,6 +4,7 @@ import com.meowcdd.entity.neon.BookRating;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -79,6 +80,20 @@ public interface BookRatingNeonRepository extends JpaRepository<BookRating, Long
            "LOWER(br.reviewTitle) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     Page<BookRating> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
     
+    // === BÌNH CHỌN KHÔNG ĐỊNH DANH ===
+    @Modifying
+    @Query("UPDATE BookRating br SET br.helpfulCount = COALESCE(br.helpfulCount, 0) + 1 WHERE br.id = :ratingId")
+    int incrementHelpfulCount(@Param("ratingId") Long ratingId);
+    
+    @Modifying
+    @Query("UPDATE BookRating br SET br.notHelpfulCount = COALESCE(br.notHelpfulCount, 0) + 1 WHERE br.id = :ratingId")
+    int incrementNotHelpfulCount(@Param("ratingId") Long ratingId);
+    
+    // === XÓA HÀNG LOẠT ===
+    @Modifying
+    @Query("DELETE FROM BookRating br WHERE br.book.id IN :bookIds")
+    int deleteByBookIds(@Param("bookIds") List<Long> bookIds);
+    
     // === TÌM KIẾM ĐÁNH GIÁ HỮU ÍCH ===
     List<BookRating> findByHelpfulCountGreaterThan(Integer minHelpfulCount);
     List<BookRating> findByHelpfulCountGreaterThanOrderByHelpfulCountDesc(Integer minHelpfulCount);
@@ -0,0 +1,47 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.BookRatingVote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository cho entity BookRatingVote
+ * Ghi phiếu bình chọn và cập nhật bộ đếm của đánh giá trong cùng một câu lệnh
+ */
+@Repository
+public interface BookRatingVoteNeonRepository extends JpaRepository<BookRatingVote, BookRatingVote.VoteId> {
+    
+    // === BÌNH CHỌN ===
+    // Upsert phiếu của phụ huynh rồi cập nhật bộ đếm của đánh giá trong một câu lệnh:
+    // - phiếu mới (xmax = 0): tăng bộ đếm tương ứng
+    // - đổi phiếu: chuyển một lượt từ bộ đếm cũ sang bộ đếm mới
+    // - phiếu lặp lại: ON CONFLICT ... WHERE không trả về dòng nào nên bộ đếm giữ nguyên
+    @Modifying
+    @Query(value = "WITH vote AS (" +
+           "INSERT INTO book_rating_votes (rating_id, parent_id, is_helpful, created_at, updated_at) " +
+           "VALUES (:ratingId, :parentId, :isHelpful, now(), now()) " +
+           "ON CONFLICT (rating_id, parent_id) DO UPDATE SET is_helpful = EXCLUDED.is_helpful, updated_at = now() " +
+           "WHERE book_rating_votes.is_helpful <> EXCLUDED.is_helpful " +
+           "RETURNING (xmax = 0) AS inserted) " +
+           "UPDATE book_ratings r SET " +
+           "is_helpful = COALESCE(r.is_helpful, 0) + CASE WHEN :isHelpful THEN 1 WHEN vote.inserted THEN 0 ELSE -1 END, " +
+           "is_not_helpful = COALESCE(r.is_not_helpful, 0) + CASE WHEN NOT :isHelpful THEN 1 WHEN vote.inserted THEN 0 ELSE -1 END " +
+           "FROM vote WHERE r.id = :ratingId", nativeQuery = true)
+    int castVote(@Param("ratingId") Long ratingId,
+                 @Param("parentId") String parentId,
+                 @Param("isHelpful") boolean isHelpful);
+    
+    // === XÓA PHIẾU ===
+    @Modifying
+    @Query("DELETE FROM BookRatingVote v WHERE v.ratingId = :ratingId")
+    int deleteByRatingId(@Param("ratingId") Long ratingId);
+    
+    @Modifying
+    @Query(value = "DELETE FROM book_rating_votes WHERE rating_id IN (SELECT id FROM book_ratings WHERE book_id IN (:bookIds))", nativeQuery = true)
+    int deleteByBookIds(@Param("bookIds") List<Long> bookIds);
+}
@@ -8,12 +8,18 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CDDTestNeonRepository extends JpaRepository<CDDTestNeon, Long> {
     
+    String SUMMARY_COLUMNS = "c.id AS id, c.assessmentCode AS assessmentCode, c.category AS category, c.version AS version, " +
+        "c.status AS status, c.administrationType AS administrationType, c.requiredQualifications AS requiredQualifications, " +
+        "c.minAgeMonths AS minAgeMonths, c.maxAgeMonths AS maxAgeMonths, c.estimatedDuration AS estimatedDuration, " +
+        "c.namesJson AS namesJson, c.createdAt AS createdAt, c.updatedAt AS updatedAt";
+    
     Optional<CDDTestNeon> findByAssessmentCode(String assessmentCode);
     
     List<CDDTestNeon> findByStatus(CDDTestNeon.Status status);
@@ -26,12 +32,6 @@ public interface CDDTestNeonRepository extends JpaRepository<CDDTestNeon, Long>
     @Query("SELECT c FROM CDDTestNeon c WHERE c.minAgeMonths <= :ageMonths AND c.maxAgeMonths >= :ageMonths")
     List<CDDTestNeon> findTestsForAge(@Param("ageMonths") Integer ageMonths);
     
-    @Query("SELECT c FROM CDDTestNeon c WHERE c.minAgeMonths <= :ageMonths AND c.maxAgeMonths >= :ageMonths AND c.status = :status")
-    Page<CDDTestNeon> findTestsForAgeAndStatusWithPagination(@Param("ageMonths") Integer ageMonths, @Param("status") CDDTestNeon.Status status, Pageable pageable);
-    
-    @Query("SELECT c FROM CDDTestNeon c WHERE c.minAgeMonths <= :ageMonths AND c.maxAgeMonths >= :ageMonths AND c.category = :category AND c.status = :status")
-    Page<CDDTestNeon> findTestsForAgeCategoryAndStatusWithPagination(@Param("ageMonths") Integer ageMonths, @Param("category") String category, @Param("status") CDDTestNeon.Status status, Pageable pageable);
-    
     @Query("SELECT c FROM CDDTestNeon c WHERE c.status = :status AND c.category = :category")
     List<CDDTestNeon> findByStatusAndCategory(@Param("status") CDDTestNeon.Status status, 
                                              @Param("category") String category);
@@ -45,17 +45,27 @@ public interface CDDTestNeonRepository extends JpaRepository<CDDTestNeon, Long>
     @Query("SELECT c FROM CDDTestNeon c WHERE c.estimatedDuration <= :maxDuration")
     List<CDDTestNeon> findByMaxDuration(@Param("maxDuration") Integer maxDuration);
     
-    @Query("SELECT c FROM CDDTestNeon c WHERE c.status = :status")
-    Page<CDDTestNeon> findByStatusWithPagination(@Param("status") CDDTestNeon.Status status, Pageable pageable);
+    // === DANH SÁCH RÚT GỌN (không tải các cột JSON lớn: câu hỏi, tiêu chí chấm điểm, hướng dẫn...) ===
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c")
+    Page<CDDTestSummary> findAllSummaries(Pageable pageable);
+    
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c WHERE c.minAgeMonths <= :ageMonths AND c.maxAgeMonths >= :ageMonths AND c.status = :status")
+    Page<CDDTestSummary> findSummariesForAgeAndStatus(@Param("ageMonths") Integer ageMonths, @Param("status") CDDTestNeon.Status status, Pageable pageable);
     
-    @Query("SELECT c FROM CDDTestNeon c WHERE c.category = :category")
-    Page<CDDTestNeon> findByCategoryWithPagination(@Param("category") String category, Pageable pageable);
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c WHERE c.minAgeMonths <= :ageMonths AND c.maxAgeMonths >= :ageMonths AND c.category = :category AND c.status = :status")
+    Page<CDDTestSummary> findSummariesForAgeCategoryAndStatus(@Param("ageMonths") Integer ageMonths, @Param("category") String category, @Param("status") CDDTestNeon.Status status, Pageable pageable);
     
-    @Query("SELECT c FROM CDDTestNeon c WHERE c.category = :category AND c.status = :status")
-    Page<CDDTestNeon> findByCategoryAndStatusWithPagination(@Param("category") String category, @Param("status") CDDTestNeon.Status status, Pageable pageable);
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c WHERE c.status = :status")
+    Page<CDDTestSummary> findSummariesByStatus(@Param("status") CDDTestNeon.Status status, Pageable pageable);
     
-    @Query("SELECT c FROM CDDTestNeon c WHERE c.assessmentCode LIKE %:keyword% OR c.category LIKE %:keyword%")
-    Page<CDDTestNeon> searchByKeyword(@Param("keyword") String keyword, Pageable pageable);
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c WHERE c.category = :category")
+    Page<CDDTestSummary> findSummariesByCategory(@Param("category") String category, Pageable pageable);
+    
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c WHERE c.category = :category AND c.status = :status")
+    Page<CDDTestSummary> findSummariesByCategoryAndStatus(@Param("category") String category, @Param("status") CDDTestNeon.Status status, Pageable pageable);
+    
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM CDDTestNeon c WHERE c.assessmentCode LIKE %:keyword% OR c.category LIKE %:keyword%")
+    Page<CDDTestSummary> searchSummariesByKeyword(@Param("keyword") String keyword, Pageable pageable);
     
     boolean existsByAssessmentCode(String assessmentCode);
     
@@ -68,5 +78,23 @@ public interface CDDTestNeonRepository extends JpaRepository<CDDTestNeon, Long>
     // Test method to get raw data
     @Query(value = "SELECT c.id, c.assessment_code, c.questions_json FROM cdd_tests c WHERE c.id = :id", nativeQuery = true)
     Object[] getRawTestData(@Param("id") Long id);
+    
+    // === PROJECTION ===
+    // Thông tin hiển thị trong danh sách; nội dung đầy đủ (câu hỏi, tiêu chí chấm điểm...) lấy qua findById
+    interface CDDTestSummary {
+        Long getId();
+        String getAssessmentCode();
+        String getCategory();
+        String getVersion();
+        CDDTestNeon.Status getStatus();
+        CDDTestNeon.AdministrationType getAdministrationType();
+        CDDTestNeon.RequiredQualifications getRequiredQualifications();
+        Integer getMinAgeMonths();
+        Integer getMaxAgeMonths();
+        Integer getEstimatedDuration();
+        String getNamesJson();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getUpdatedAt();
+    }
 }
 
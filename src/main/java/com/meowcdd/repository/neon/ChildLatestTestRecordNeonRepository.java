@@ -0,0 +1,62 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.ChildLatestTestRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository cho bảng chiếu child_latest_test_record
+ * Các câu ghi là upsert native chạy trong transaction của thao tác ghi child_test_records
+ */
+@Repository
+public interface ChildLatestTestRecordNeonRepository extends JpaRepository<ChildLatestTestRecord, ChildLatestTestRecord.LatestId> {
+    
+    // === GHI ===
+    // Chỉ thay bản ghi đang lưu khi bản ghi mới có (test_date, id) lớn hơn hoặc chính là nó;
+    // khóa dòng của ON CONFLICT giữ kết quả đúng khi nhiều transaction cùng ghi một cặp (trẻ, bài test)
+    @Modifying
+    @Query(value = "INSERT INTO child_latest_test_record (child_id, test_id, record_id, test_date) " +
+           "SELECT DISTINCT ON (r.child_id, r.test_id) r.child_id, r.test_id, r.id, r.test_date " +
+           "FROM child_test_records r WHERE r.id IN (:recordIds) " +
+           "ORDER BY r.child_id, r.test_id, r.test_date DESC, r.id DESC " +
+           "ON CONFLICT (child_id, test_id) DO UPDATE SET record_id = EXCLUDED.record_id, " +
+           "test_date = EXCLUDED.test_date " +
+           "WHERE child_latest_test_record.record_id = EXCLUDED.record_id " +
+           "OR (EXCLUDED.test_date, EXCLUDED.record_id) > (child_latest_test_record.test_date, child_latest_test_record.record_id)",
+           nativeQuery = true)
+    int upsertIfLatest(@Param("recordIds") Collection<Long> recordIds);
+    
+    // Tính lại từ đầu khi bản ghi mới nhất bị xóa, bị lùi ngày hoặc chuyển sang trẻ/bài test khác
+    @Modifying
+    @Query(value = "INSERT INTO child_latest_test_record (child_id, test_id, record_id, test_date) " +
+           "SELECT r.child_id, r.test_id, r.id, r.test_date FROM child_test_records r " +
+           "WHERE r.child_id = :childId AND r.test_id = :testId ORDER BY r.test_date DESC, r.id DESC LIMIT 1 " +
+           "ON CONFLICT (child_id, test_id) DO UPDATE SET record_id = EXCLUDED.record_id, " +
+           "test_date = EXCLUDED.test_date",
+           nativeQuery = true)
+    int recompute(@Param("childId") Long childId, @Param("testId") String testId);
+    
+    @Modifying
+    @Query(value = "DELETE FROM child_latest_test_record l WHERE l.child_id = :childId AND l.test_id = :testId " +
+           "AND NOT EXISTS (SELECT 1 FROM child_test_records r WHERE r.child_id = :childId AND r.test_id = :testId)",
+           nativeQuery = true)
+    int deleteIfNoRecords(@Param("childId") Long childId, @Param("testId") String testId);
+    
+    // === ĐỌC ===
+    // Tra theo khóa chính (child_id, ...) rồi join theo khóa chính của child_test_records và cdd_tests
+    @Query(value = "SELECT r.id, r.child_id, r.test_id, r.test_type, r.test_date, r.start_time, r.end_time, " +
+           "r.status, r.total_score, r.max_score, r.percentage_score, r.result_level, r.interpretation, " +
+           "r.question_answers, r.correct_answers, r.total_questions, r.skipped_questions, r.notes, " +
+           "r.environment, r.assessor, r.parent_present, r.created_at, r.updated_at, ct.category AS test_category " +
+           "FROM child_latest_test_record l " +
+           "JOIN child_test_records r ON r.id = l.record_id " +
+           "LEFT JOIN cdd_tests ct ON ct.id = r.cdd_test_id " +
+           "WHERE l.child_id = :childId ORDER BY l.test_date DESC", nativeQuery = true)
+    List<Object[]> findLatestRowsByChildId(@Param("childId") Long childId);
+}
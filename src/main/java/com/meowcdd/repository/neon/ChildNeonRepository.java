@@ -19,6 +19,10 @@ public interface ChildNeonRepository extends JpaRepository<ChildNeon, Long> {
     
     List<ChildNeon> findByParentId(String parentId);
     
+    // Chỉ đọc ngày sinh (dùng để tính tuổi theo tháng khi gợi ý sách)
+    @Query("SELECT c.dateOfBirth FROM ChildNeon c WHERE c.id = :id")
+    Optional<LocalDate> findDateOfBirthById(@Param("id") Long id);
+    
     List<ChildNeon> findByStatus(ChildNeon.Status status);
     
     List<ChildNeon> findByGender(ChildNeon.Gender gender);
@@ -0,0 +1,35 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.ChildTestAnswer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository cho bảng child_test_answers
+ * Việc ghi được thực hiện bằng JDBC batch trong ChildTestAnswerNeonService; repository chỉ phục vụ thống kê
+ */
+@Repository
+public interface ChildTestAnswerNeonRepository extends JpaRepository<ChildTestAnswer, ChildTestAnswer.AnswerId> {
+    
+    List<ChildTestAnswer> findByRecordIdOrderByQuestionNumber(Long recordId);
+    
+    // Thống kê theo câu hỏi của một bài test, dùng index (test_id, question_id)
+    @Query("SELECT a.questionId AS questionId, MIN(a.questionNumber) AS questionNumber, COUNT(a) AS answerCount, " +
+           "SUM(CASE WHEN a.answer = true THEN 1 ELSE 0 END) AS yesCount, AVG(a.score) AS averageScore " +
+           "FROM ChildTestAnswer a WHERE a.testId = :testId GROUP BY a.questionId ORDER BY MIN(a.questionNumber)")
+    List<QuestionAnswerStats> findQuestionStatsByTestId(@Param("testId") Long testId);
+    
+    // === PROJECTIONS ===
+    
+    interface QuestionAnswerStats {
+        String getQuestionId();
+        Integer getQuestionNumber();
+        Long getAnswerCount();
+        Long getYesCount();
+        Double getAverageScore();
+    }
+}
@@ -0,0 +1,48 @@
+package com.meowcdd.repository.neon;
+
+import com.meowcdd.entity.neon.ChildTestRescoringJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository cho entity ChildTestRescoringJob
+ * Tiến độ và trạng thái được ghi bằng các câu UPDATE riêng từ luồng chạy job, không qua entity đang được đọc ở nơi khác
+ */
+@Repository
+public interface ChildTestRescoringJobNeonRepository extends JpaRepository<ChildTestRescoringJob, Long> {
+    
+    List<ChildTestRescoringJob> findByTestIdOrderByIdDesc(Long testId);
+    
+    List<ChildTestRescoringJob> findByStatus(ChildTestRescoringJob.Status status);
+    
+    List<ChildTestRescoringJob> findByTestIdAndStatus(Long testId, ChildTestRescoringJob.Status status);
+    
+    // === CẬP NHẬT TIẾN ĐỘ ===
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChildTestRescoringJob j SET j.processedRecords = j.processedRecords + :processed, " +
+           "j.updatedRecords = j.updatedRecords + :updated, j.failedRecords = j.failedRecords + :failed, " +
+           "j.lastRecordId = :lastRecordId, j.updatedAt = :now WHERE j.id = :id")
+    int addProgress(@Param("id") Long id,
+                    @Param("processed") long processed,
+                    @Param("updated") long updated,
+                    @Param("failed") long failed,
+                    @Param("lastRecordId") Long lastRecordId,
+                    @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChildTestRescoringJob j SET j.status = :status, j.errorMessage = :errorMessage, " +
+           "j.finishedAt = :now, j.updatedAt = :now WHERE j.id = :id")
+    int finish(@Param("id") Long id,
+               @Param("status") ChildTestRescoringJob.Status status,
+               @Param("errorMessage") String errorMessage,
+               @Param("now") LocalDateTime now);
+}
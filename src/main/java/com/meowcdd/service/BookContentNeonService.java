@@ -0,0 +1,433 @@
+package com.meowcdd.service;
+
+import com.meowcdd.entity.neon.BookContent.Codec;
+import com.meowcdd.repository.neon.BookContentNeonRepository;
+import com.meowcdd.repository.neon.BookContentNeonRepository.ContentInfo;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service lưu trữ nội dung file sách trong bảng book_contents
+ * Nội dung được định danh theo SHA-256 và đếm tham chiếu: file giống nhau chỉ lưu một lần,
+ * xóa sách chỉ giải phóng tham chiếu của sách đó.
+ * Nội dung dạng văn bản được nén gzip trước khi lưu (chọn theo MIME type) và giải nén khi stream ra.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class BookContentNeonService {
+
+    // Kích thước mỗi đoạn đọc từ database khi stream nội dung
+    private static final int STREAM_CHUNK_SIZE = 256 * 1024;
+    
+    // Nội dung nhỏ hơn ngưỡng này không đáng nén
+    private static final long MIN_COMPRESSIBLE_SIZE = 1024;
+    
+    // Chỉ giữ bản nén khi tiết kiệm được ít nhất 10% dung lượng
+    private static final double MAX_COMPRESSED_RATIO = 0.9;
+    
+    // MIME type có nội dung nhiều văn bản; các định dạng đã nén sẵn (PDF, ảnh, zip...) được lưu nguyên bản.
+    // EPUB/DOCX là zip nhưng thường chứa phần lưu không nén nên vẫn thử nén và chỉ giữ nếu có lợi
+    private static final Set<String> COMPRESSIBLE_MIME_TYPES = Set.of(
+        "application/json",
+        "application/xml",
+        "application/rtf",
+        "application/msword",
+        "application/epub+zip",
+        "application/vnd.openxmlformats-officedocument.wordprocessingml.document"
+    );
+    
+    private static final String INSERT_CONTENT_SQL =
+        "INSERT INTO book_contents (sha256, data, size, stored_size, codec, ref_count, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, 1, now(), now()) " +
+        "ON CONFLICT (sha256) DO UPDATE SET ref_count = book_contents.ref_count + 1, updated_at = now()";
+    
+    private final BookContentNeonRepository bookContentRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Lưu nội dung file và lấy một tham chiếu tới nội dung đó
+     */
+    public StoredContent storeContent(byte[] data, String mimeType) {
+        String sha256 = HexFormat.of().formatHex(newSha256Digest().digest(data));
+        log.info("Storing content, size: {}, sha256: {}", data.length, sha256);
+        
+        if (acquireExisting(sha256)) {
+            return StoredContent.builder().sha256(sha256).size(data.length).deduplicated(true).build();
+        }
+        
+        Codec codec = Codec.IDENTITY;
+        byte[] stored = data;
+        if (isCompressionCandidate(mimeType, data.length)) {
+            byte[] compressed = gzip(data);
+            if (isWorthKeeping(compressed.length, data.length)) {
+                codec = Codec.GZIP;
+                stored = compressed;
+            }
+        }
+        
+        byte[] storedData = stored;
+        Codec storedCodec = codec;
+        jdbcTemplate.update(INSERT_CONTENT_SQL, ps -> {
+            ps.setString(1, sha256);
+            ps.setBytes(2, storedData);
+            ps.setLong(3, data.length);
+            ps.setLong(4, storedData.length);
+            ps.setString(5, storedCodec.name());
+        });
+        log.info("Content stored, size: {}, stored size: {}, codec: {}", data.length, storedData.length, storedCodec);
+        return StoredContent.builder().sha256(sha256).size(data.length).deduplicated(false).build();
+    }
+    
+    /**
+     * Lưu nội dung file từ một nguồn stream và lấy một tham chiếu tới nội dung đó
+     * Lượt đọc đầu tính SHA-256 và kích thước (vượt quá maxSize sẽ bị từ chối), đồng thời nén gzip ra file tạm
+     * nếu MIME type đáng nén; nếu nội dung đã tồn tại thì chỉ tăng refCount. Nội dung mới được stream xuống
+     * database qua JDBC từ file nén tạm, hoặc đọc lượt thứ hai từ nguồn khi lưu nguyên bản.
+     */
+    public StoredContent storeContent(InputStreamSource source, long declaredSize, long maxSize, String mimeType) throws IOException {
+        log.info("Streaming content, declared size: {}, mime type: {}", declaredSize, mimeType);
+        
+        if (declaredSize > maxSize) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of " + maxSize + " bytes");
+        }
+        
+        Path compressedFile = isCompressionCandidate(mimeType, declaredSize) ? Files.createTempFile("book-content-", ".gz") : null;
+        try {
+            // Lượt 1: tính SHA-256 và kích thước thực tế, nén song song nếu cần
+            MessageDigest digest = newSha256Digest();
+            long size;
+            try (SizeLimitedInputStream in = new SizeLimitedInputStream(new DigestInputStream(source.getInputStream(), digest), maxSize);
+                 OutputStream out = compressedFile != null
+                     ? new GZIPOutputStream(Files.newOutputStream(compressedFile), STREAM_CHUNK_SIZE)
+                     : OutputStream.nullOutputStream()) {
+                in.transferTo(out);
+                size = in.getBytesRead();
+            } catch (SizeLimitExceededException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            
+            if (acquireExisting(sha256)) {
+                log.info("Content already stored, sha256: {}", sha256);
+                return StoredContent.builder().sha256(sha256).size(size).deduplicated(true).build();
+            }
+            
+            if (compressedFile != null && isWorthKeeping(Files.size(compressedFile), size)) {
+                // Bản nén được tạo từ chính lượt đọc đã tính mã băm nên không cần kiểm tra lại
+                long storedSize = Files.size(compressedFile);
+                try (InputStream in = Files.newInputStream(compressedFile)) {
+                    insertContent(sha256, in, size, storedSize, Codec.GZIP);
+                }
+                log.info("Content stored, size: {}, stored size: {}, codec: {}", size, storedSize, Codec.GZIP);
+                return StoredContent.builder().sha256(sha256).size(size).deduplicated(false).build();
+            }
+            
+            // Lượt 2: stream nội dung nguyên bản xuống database, kiểm tra lại mã băm để phát hiện nguồn bị thay đổi
+            MessageDigest verifyDigest = newSha256Digest();
+            try (InputStream in = new SizeLimitedInputStream(new DigestInputStream(source.getInputStream(), verifyDigest), size)) {
+                insertContent(sha256, in, size, size, Codec.IDENTITY);
+            }
+            if (!sha256.equals(HexFormat.of().formatHex(verifyDigest.digest()))) {
+                throw new IOException("Uploaded content changed while it was being stored");
+            }
+            
+            log.info("Content stored, size: {}, sha256: {}", size, sha256);
+            return StoredContent.builder().sha256(sha256).size(size).deduplicated(false).build();
+        } finally {
+            if (compressedFile != null) {
+                Files.deleteIfExists(compressedFile);
+            }
+        }
+    }
+
+    /**
+     * Lấy thông tin lưu trữ nội dung file (kích thước gốc, kích thước lưu, codec) mà không tải dữ liệu
+     */
+    @Transactional(readOnly = true)
+    public Optional<ContentInfo> getContentInfo(String sha256) {
+        return bookContentRepository.findInfoBySha256(sha256);
+    }
+    
+    /**
+     * Ghi đoạn nội dung gốc [start, start + length) ra channel đích
+     * Dữ liệu được đọc theo từng đoạn nhỏ bằng substring trên database nên bộ nhớ dùng không phụ thuộc kích thước file.
+     * Với nội dung nén, dữ liệu được giải nén tuần tự từ đầu và bỏ qua phần trước start.
+     * Không giữ transaction trong suốt quá trình ghi để client chậm không chiếm connection của pool.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void copyContentRange(ContentInfo content, long start, long length, WritableByteChannel target) throws IOException {
+        if (content.getEffectiveCodec() == Codec.IDENTITY) {
+            copyStoredRange(content.getSha256(), start, length, target);
+            return;
+        }
+        
+        try (InputStream in = openContentStream(content)) {
+            in.skipNBytes(start);
+            byte[] buffer = new byte[STREAM_CHUNK_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n < 0) {
+                    throw new EOFException("Content " + content.getSha256() + " ended at byte " + (start + length - remaining));
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+                while (chunk.hasRemaining()) {
+                    target.write(chunk);
+                }
+                remaining -= n;
+            }
+        }
+    }
+    
+    /**
+     * Mở stream đọc nội dung gốc (đã giải nén) theo từng đoạn, không tải cả file vào bộ nhớ
+     */
+    public InputStream openContentStream(ContentInfo content) throws IOException {
+        InputStream stored = new StoredContentInputStream(content.getSha256(), content.getEffectiveStoredSize());
+        return content.getEffectiveCodec() == Codec.GZIP ? new GZIPInputStream(stored, STREAM_CHUNK_SIZE) : stored;
+    }
+    
+    /**
+     * Ghi nguyên dữ liệu đang lưu (có thể là bản nén) ra channel đích, không giải nén
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void copyStoredContent(ContentInfo content, WritableByteChannel target) throws IOException {
+        copyStoredRange(content.getSha256(), 0, content.getEffectiveStoredSize(), target);
+    }
+    
+    /**
+     * Giải phóng một tham chiếu tới nội dung; nội dung bị xóa khi không còn sách nào tham chiếu
+     */
+    public void releaseContent(String sha256) {
+        releaseContent(sha256, 1);
+    }
+    
+    /**
+     * Giải phóng nhiều tham chiếu tới cùng một nội dung (xóa hàng loạt các sách dùng chung file)
+     */
+    public void releaseContent(String sha256, int references) {
+        if (sha256 == null || references <= 0) {
+            return;
+        }
+        log.info("Releasing {} reference(s) to content with sha256: {}", references, sha256);
+        
+        bookContentRepository.decrementRefCountBy(sha256, references);
+        if (bookContentRepository.deleteUnreferenced(sha256) > 0) {
+            log.info("Content with sha256: {} is no longer referenced and was deleted", sha256);
+        }
+    }
+    
+    // === HELPER METHODS ===
+    
+    /**
+     * Tăng refCount nếu nội dung đã tồn tại; một câu UPDATE duy nhất, không cần SELECT trước
+     */
+    private boolean acquireExisting(String sha256) {
+        return bookContentRepository.incrementRefCount(sha256) > 0;
+    }
+    
+    private void insertContent(String sha256, InputStream data, long size, long storedSize, Codec codec) {
+        jdbcTemplate.update(INSERT_CONTENT_SQL, ps -> {
+            ps.setString(1, sha256);
+            ps.setBinaryStream(2, data, storedSize);
+            ps.setLong(3, size);
+            ps.setLong(4, storedSize);
+            ps.setString(5, codec.name());
+        });
+    }
+    
+    /**
+     * Ghi đoạn dữ liệu đang lưu [start, start + length) ra channel đích theo từng đoạn substring
+     */
+    private void copyStoredRange(String sha256, long start, long length, WritableByteChannel target) throws IOException {
+        long position = start;
+        long end = start + length;
+        
+        while (position < end) {
+            int chunkSize = (int) Math.min(STREAM_CHUNK_SIZE, end - position);
+            byte[] chunk = bookContentRepository.findDataRange(sha256, (int) position + 1, chunkSize);
+            if (chunk == null || chunk.length == 0) {
+                throw new EOFException("Content " + sha256 + " ended at byte " + position);
+            }
+            
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            position += chunk.length;
+        }
+    }
+    
+    private static boolean isCompressionCandidate(String mimeType, long size) {
+        if (mimeType == null || size < MIN_COMPRESSIBLE_SIZE) {
+            return false;
+        }
+        String baseType = mimeType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        return baseType.startsWith("text/") || baseType.endsWith("+xml") || baseType.endsWith("+json")
+            || COMPRESSIBLE_MIME_TYPES.contains(baseType);
+    }
+    
+    private static boolean isWorthKeeping(long compressedSize, long size) {
+        return compressedSize <= size * MAX_COMPRESSED_RATIO;
+    }
+    
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+    
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    // === INNER CLASSES ===
+    
+    @Data
+    @Builder
+    public static class StoredContent {
+        private String sha256;
+        private long size;
+        private boolean deduplicated; // true nếu nội dung đã có sẵn và chỉ tăng refCount
+    }
+    
+    /**
+     * InputStream đọc dữ liệu đang lưu theo từng đoạn substring, dùng để giải nén mà không tải cả file vào bộ nhớ
+     */
+    private class StoredContentInputStream extends InputStream {
+        
+        private final String sha256;
+        private final long storedSize;
+        private long position;
+        private byte[] chunk = new byte[0];
+        private int chunkOffset;
+        
+        StoredContentInputStream(String sha256, long storedSize) {
+            this.sha256 = sha256;
+            this.storedSize = storedSize;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (chunkOffset >= chunk.length) {
+                if (position >= storedSize) {
+                    return -1;
+                }
+                int chunkSize = (int) Math.min(STREAM_CHUNK_SIZE, storedSize - position);
+                chunk = bookContentRepository.findDataRange(sha256, (int) position + 1, chunkSize);
+                if (chunk == null || chunk.length == 0) {
+                    throw new EOFException("Content " + sha256 + " ended at byte " + position);
+                }
+                position += chunk.length;
+                chunkOffset = 0;
+            }
+            int n = Math.min(length, chunk.length - chunkOffset);
+            System.arraycopy(chunk, chunkOffset, buffer, offset, n);
+            chunkOffset += n;
+            return n;
+        }
+    }
+    
+    /**
+     * InputStream đếm số byte đã đọc và dừng lại ngay khi vượt quá giới hạn cho phép
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        
+        private final long maxSize;
+        private long bytesRead;
+        
+        SizeLimitedInputStream(InputStream in, long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            // Không cho phép bỏ qua dữ liệu vì mọi byte phải đi qua bộ tính SHA-256
+            return 0;
+        }
+        
+        long getBytesRead() {
+            return bytesRead;
+        }
+        
+        private void count(int n) throws IOException {
+            bytesRead += n;
+            if (bytesRead > maxSize) {
+                throw new SizeLimitExceededException("File size exceeds maximum limit of " + maxSize + " bytes");
+            }
+        }
+    }
+    
+    private static class SizeLimitExceededException extends IOException {
+        
+        SizeLimitExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.meowcdd.service;
+
+import com.meowcdd.repository.neon.BookContentNeonRepository.ContentInfo;
+import com.meowcdd.repository.neon.BookNeonRepository;
+import com.meowcdd.repository.neon.BookNeonRepository.VerificationTarget;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Service xác minh nội dung file sách chạy nền sau khi upload
+ * Mỗi sách được kiểm tra: magic bytes khớp với định dạng (SupportedFormat), SHA-256 khớp với nội dung lưu trữ,
+ * và trích số trang (PDF, DOCX) vào Book.pageCount; kết quả được ghi vào contentIsVerified / contentVerificationDate.
+ * Hàng đợi có giới hạn: khi đầy, sách được để lại cho lượt quét định kỳ (sách chưa có contentVerificationDate) xử lý sau.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookContentVerificationService {
+
+    // Số byte đầu file dùng để nhận diện định dạng
+    private static final int HEADER_SIZE = 64;
+
+    // Phần giữ lại giữa hai đoạn khi quét PDF để không bỏ sót khóa nằm vắt qua ranh giới
+    private static final int PDF_SCAN_CHUNK_SIZE = 64 * 1024;
+    private static final int PDF_SCAN_OVERLAP = 512;
+
+    // Giới hạn kích thước docProps/app.xml đọc từ DOCX
+    private static final int MAX_ZIP_METADATA_SIZE = 1024 * 1024;
+
+    private static final Pattern PDF_PAGES_COUNT = Pattern.compile(
+        "/Type\\s*/Pages\\b[^>]{0,512}?/Count\\s+(\\d+)|/Count\\s+(\\d+)[^>]{0,512}?/Type\\s*/Pages\\b");
+    private static final Pattern PDF_PAGE_OBJECT = Pattern.compile("/Type\\s*/Page(?![a-zA-Z])");
+    private static final Pattern DOCX_PAGES = Pattern.compile("<(?:\\w+:)?Pages>(\\d+)</(?:\\w+:)?Pages>");
+
+    private final BookNeonRepository bookRepository;
+    private final BookContentNeonService bookContentService;
+
+    @Value("${book.verification.threads:2}")
+    private int threads;
+
+    @Value("${book.verification.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${book.verification.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${book.verification.retry-delay-ms:5000}")
+    private long retryDelayMillis;
+
+    // Sách đang nằm trong hàng đợi hoặc đang xác minh, tránh xếp hàng trùng
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService retryScheduler;
+
+    @PostConstruct
+    public void start() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), namedThreadFactory("book-verification-"), new ThreadPoolExecutor.AbortPolicy());
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreadFactory("book-verification-retry-"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        log.info("Stopping book content verification, {} books still queued", executor.getQueue().size());
+        retryScheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Xếp sách vào hàng đợi xác minh sau khi transaction hiện tại commit (nội dung mới đã hiển thị cho luồng nền)
+     */
+    public void scheduleVerification(Long bookId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(bookId, 1);
+                }
+            });
+        } else {
+            enqueue(bookId, 1);
+        }
+    }
+
+    /**
+     * Quét định kỳ các sách chưa được xác minh (upload khi hàng đợi đầy, lỗi tạm thời đã hết lượt thử, dữ liệu cũ)
+     * Chỉ lấy đúng số chỗ còn trống trong hàng đợi
+     */
+    @Scheduled(fixedDelayString = "${book.verification.sweep-interval-ms:60000}")
+    public void enqueuePendingVerifications() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+
+        List<Long> pendingIds = bookRepository.findIdsPendingVerification(PageRequest.of(0, capacity));
+        int queued = 0;
+        for (Long bookId : pendingIds) {
+            if (enqueue(bookId, 1)) {
+                queued++;
+            }
+        }
+        if (queued > 0) {
+            log.info("Queued {} books pending content verification", queued);
+        }
+    }
+
+    // === HELPER METHODS ===
+
+    private boolean enqueue(Long bookId, int attempt) {
+        if (attempt == 1 && !inFlight.add(bookId)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> runVerification(bookId, attempt));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Hàng đợi đầy: không chặn luồng gọi, lượt quét định kỳ sẽ xử lý sách này sau
+            inFlight.remove(bookId);
+            log.warn("Verification queue is full, book id: {} will be picked up by the next sweep", bookId);
+            return false;
+        }
+    }
+
+    private void runVerification(Long bookId, int attempt) {
+        try {
+            verify(bookId);
+            inFlight.remove(bookId);
+        } catch (RuntimeException | IOException e) {
+            if (attempt < maxAttempts && !retryScheduler.isShutdown()) {
+                long delay = retryDelayMillis * (1L << (attempt - 1));
+                log.warn("Verification of book id: {} failed (attempt {}/{}), retrying in {} ms: {}",
+                    bookId, attempt, maxAttempts, delay, e.getMessage());
+                try {
+                    retryScheduler.schedule(() -> enqueue(bookId, attempt + 1), delay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException rejected) {
+                    inFlight.remove(bookId);
+                }
+            } else {
+                log.error("Verification of book id: {} failed after {} attempts: {}", bookId, attempt, e.getMessage());
+                inFlight.remove(bookId);
+            }
+        }
+    }
+
+    private void verify(Long bookId) throws IOException {
+        Optional<VerificationTarget> found = bookRepository.findVerificationTargetById(bookId);
+        if (found.isEmpty() || found.get().getContentSha256() == null) {
+            log.debug("Book id: {} no longer has content to verify", bookId);
+            return;
+        }
+        VerificationTarget target = found.get();
+
+        Optional<ContentInfo> content = bookContentService.getContentInfo(target.getContentSha256());
+        if (content.isEmpty()) {
+            log.warn("Content {} of book id: {} is missing from storage", target.getContentSha256(), bookId);
+            saveResult(target, false, null);
+            return;
+        }
+
+        FileSignature expected = FileSignature.forFormat(target.getFormatMimeType(), target.getFormatFileExtension(), target.getContentMimeType());
+        MessageDigest digest = newSha256Digest();
+        boolean signatureMatches;
+        Integer pageCount = null;
+
+        try (DigestInputStream digestStream = new DigestInputStream(bookContentService.openContentStream(content.get()), digest)) {
+            BufferedInputStream in = new BufferedInputStream(digestStream, PDF_SCAN_CHUNK_SIZE);
+            in.mark(HEADER_SIZE);
+            byte[] header = in.readNBytes(HEADER_SIZE);
+            in.reset();
+
+            signatureMatches = expected == null || expected.matches(header);
+            if (signatureMatches && expected == FileSignature.PDF) {
+                pageCount = scanPdfPageCount(in);
+            } else if (signatureMatches && expected == FileSignature.ZIP) {
+                ZipScanResult zip = scanZip(in, target);
+                signatureMatches = zip.isValid();
+                pageCount = zip.getPageCount();
+            }
+            // Đọc nốt phần còn lại để hoàn tất SHA-256
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (ZipException | EOFException e) {
+            // Dữ liệu lưu trữ bị cắt cụt hoặc hỏng: đây là kết quả xác minh, không phải lỗi tạm thời
+            log.warn("Content of book id: {} is corrupt: {}", bookId, e.getMessage());
+            saveResult(target, false, null);
+            return;
+        }
+
+        boolean checksumMatches = HexFormat.of().formatHex(digest.digest()).equals(target.getContentSha256());
+        if (!signatureMatches) {
+            log.warn("Content of book id: {} does not match expected format {}", bookId, expected);
+        }
+        if (!checksumMatches) {
+            log.warn("Checksum mismatch for book id: {}, content {}", bookId, target.getContentSha256());
+        }
+        saveResult(target, signatureMatches && checksumMatches, pageCount);
+    }
+
+    private void saveResult(VerificationTarget target, boolean verified, Integer pageCount) {
+        int updated = bookRepository.applyVerificationResult(target.getId(), target.getContentSha256(), verified, pageCount, LocalDateTime.now());
+        if (updated == 0) {
+            log.info("Content of book id: {} changed during verification, result discarded", target.getId());
+        } else {
+            log.info("Verified book id: {}, verified: {}, page count: {}", target.getId(), verified, pageCount);
+        }
+    }
+
+    /**
+     * Ước lượng số trang PDF mà không cần thư viện: ưu tiên /Count lớn nhất của cây /Pages,
+     * nếu không có (object stream nén) thì đếm số object /Type /Page
+     */
+    private Integer scanPdfPageCount(InputStream in) throws IOException {
+        int maxPagesCount = 0;
+        int pageObjects = 0;
+        String carry = "";
+        byte[] buffer = new byte[PDF_SCAN_CHUNK_SIZE];
+
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            String window = carry + new String(buffer, 0, n, StandardCharsets.ISO_8859_1);
+
+            Matcher pagesMatcher = PDF_PAGES_COUNT.matcher(window);
+            while (pagesMatcher.find()) {
+                String count = pagesMatcher.group(1) != null ? pagesMatcher.group(1) : pagesMatcher.group(2);
+                if (count.length() <= 6) {
+                    maxPagesCount = Math.max(maxPagesCount, Integer.parseInt(count));
+                }
+            }
+            // Chỉ đếm các object kết thúc sau phần giữ lại, object nằm trọn trong phần đó đã được đếm ở đoạn trước
+            Matcher pageMatcher = PDF_PAGE_OBJECT.matcher(window);
+            while (pageMatcher.find()) {
+                if (pageMatcher.end() > carry.length()) {
+                    pageObjects++;
+                }
+            }
+
+            carry = window.substring(Math.max(0, window.length() - PDF_SCAN_OVERLAP));
+        }
+
+        if (maxPagesCount > 0) {
+            return maxPagesCount;
+        }
+        return pageObjects > 0 ? pageObjects : null;
+    }
+
+    /**
+     * Kiểm tra cấu trúc ZIP (EPUB, DOCX): EPUB phải có mục "mimetype" đầu tiên, DOCX lấy số trang từ docProps/app.xml
+     * Không đóng ZipInputStream để stream bên dưới còn được đọc tiếp cho SHA-256
+     */
+    private ZipScanResult scanZip(InputStream in, VerificationTarget target) throws IOException {
+        boolean epub = isEpub(target);
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry = zip.getNextEntry();
+        if (entry == null) {
+            return new ZipScanResult(false, null);
+        }
+        if (epub) {
+            boolean valid = "mimetype".equals(entry.getName())
+                && new String(zip.readNBytes(64), StandardCharsets.US_ASCII).trim().equals("application/epub+zip");
+            return new ZipScanResult(valid, null);
+        }
+
+        do {
+            if ("docProps/app.xml".equals(entry.getName())) {
+                String appXml = new String(zip.readNBytes(MAX_ZIP_METADATA_SIZE), StandardCharsets.UTF_8);
+                Matcher matcher = DOCX_PAGES.matcher(appXml);
+                if (matcher.find() && matcher.group(1).length() <= 6) {
+                    int pages = Integer.parseInt(matcher.group(1));
+                    return new ZipScanResult(true, pages > 0 ? pages : null);
+                }
+                return new ZipScanResult(true, null);
+            }
+        } while ((entry = zip.getNextEntry()) != null);
+        return new ZipScanResult(true, null);
+    }
+
+    private boolean isEpub(VerificationTarget target) {
+        return "application/epub+zip".equalsIgnoreCase(target.getFormatMimeType())
+            || "application/epub+zip".equalsIgnoreCase(target.getContentMimeType())
+            || normalizeExtension(target.getFormatFileExtension()).equals("epub");
+    }
+
+    private static String normalizeExtension(String extension) {
+        if (extension == null) {
+            return "";
+        }
+        String normalized = extension.trim().toLowerCase(Locale.ROOT);
+        return normalized.startsWith(".") ? normalized.substring(1) : normalized;
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // === INNER CLASSES ===
+
+    @Data
+    @AllArgsConstructor
+    private static class ZipScanResult {
+        private boolean valid;
+        private Integer pageCount;
+    }
+
+    /**
+     * Chữ ký (magic bytes) của các định dạng được hỗ trợ; định dạng không có chữ ký (TXT...) không được kiểm tra
+     */
+    private enum FileSignature {
+        PDF(Set.of("application/pdf"), Set.of("pdf")),
+        ZIP(Set.of("application/epub+zip", "application/zip",
+                "application/vnd.openxmlformats-officedocument.wordprocessingml.document"), Set.of("epub", "zip", "docx")),
+        OLE2(Set.of("application/msword"), Set.of("doc")),
+        PNG(Set.of("image/png"), Set.of("png")),
+        JPEG(Set.of("image/jpeg"), Set.of("jpg", "jpeg")),
+        GIF(Set.of("image/gif"), Set.of("gif")),
+        MP3(Set.of("audio/mpeg", "audio/mp3"), Set.of("mp3")),
+        MP4(Set.of("video/mp4", "audio/mp4"), Set.of("mp4", "m4a"));
+
+        private final Set<String> mimeTypes;
+        private final Set<String> extensions;
+
+        FileSignature(Set<String> mimeTypes, Set<String> extensions) {
+            this.mimeTypes = mimeTypes;
+            this.extensions = extensions;
+        }
+
+        static FileSignature forFormat(String formatMimeType, String formatExtension, String contentMimeType) {
+            String extension = normalizeExtension(formatExtension);
+            for (FileSignature signature : values()) {
+                if (formatMimeType != null && signature.mimeTypes.contains(formatMimeType.toLowerCase(Locale.ROOT))) {
+                    return signature;
+                }
+            }
+            for (FileSignature signature : values()) {
+                if (signature.extensions.contains(extension)) {
+                    return signature;
+                }
+            }
+            for (FileSignature signature : values()) {
+                if (contentMimeType != null && signature.mimeTypes.contains(contentMimeType.toLowerCase(Locale.ROOT))) {
+                    return signature;
+                }
+            }
+            return null;
+        }
+
+        boolean matches(byte[] header) {
+            return switch (this) {
+                case PDF -> startsWith(header, 0, "%PDF-".getBytes(StandardCharsets.US_ASCII));
+                case ZIP -> startsWith(header, 0, new byte[]{'P', 'K', 3, 4});
+                case OLE2 -> startsWith(header, 0, new byte[]{(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1});
+                case PNG -> startsWith(header, 0, new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+                case JPEG -> startsWith(header, 0, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF});
+                case GIF -> startsWith(header, 0, "GIF8".getBytes(StandardCharsets.US_ASCII));
+                case MP3 -> startsWith(header, 0, "ID3".getBytes(StandardCharsets.US_ASCII))
+                    || (header.length >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0);
+                case MP4 -> startsWith(header, 4, "ftyp".getBytes(StandardCharsets.US_ASCII));
+            };
+        }
+
+        private static boolean startsWith(byte[] header, int offset, byte[] prefix) {
+            return header.length >= offset + prefix.length
+                && Arrays.equals(header, offset, offset + prefix.length, prefix, 0, prefix.length);
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package com.meowcdd.service;
 
+import com.meowcdd.dto.BookBulkOperationDto;
+import com.meowcdd.dto.BookBulkResultDto;
+import com.meowcdd.dto.BookRecommendationDto;
 import com.meowcdd.dto.BookDto;
+import com.meowcdd.dto.CursorPageResponseDto;
 import com.meowcdd.dto.PageResponseDto;
 import com.meowcdd.entity.neon.Book;
 import com.meowcdd.entity.neon.DevelopmentalDomain;
 import com.meowcdd.entity.neon.SupportedFormat;
+import com.meowcdd.repository.neon.BookContentNeonRepository.ContentInfo;
 import com.meowcdd.repository.neon.BookNeonRepository;
+import com.meowcdd.repository.neon.BookNeonRepository.BookVersionInfo;
+import com.meowcdd.repository.neon.BookNeonRepository.CatalogVersion;
+import com.meowcdd.repository.neon.BookNeonRepositoryCustom.BulkFlag;
+import com.meowcdd.repository.neon.BookNeonRepositoryCustom.BulkSelection;
+import com.meowcdd.repository.neon.BookNeonRepositoryCustom.KeysetSortField;
+import com.meowcdd.repository.neon.BookRatingNeonRepository;
+import com.meowcdd.repository.neon.BookRatingVoteNeonRepository;
 import com.meowcdd.repository.neon.DevelopmentalDomainNeonRepository;
 import com.meowcdd.repository.neon.SupportedFormatNeonRepository;
+import com.meowcdd.service.BookContentNeonService.StoredContent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import lombok.Data;
@@ -16,12 +29,25 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -40,6 +66,20 @@ public class BookNeonService {
     private final BookNeonRepository bookRepository;
     private final SupportedFormatNeonRepository supportedFormatRepository;
     private final DevelopmentalDomainNeonRepository developmentalDomainRepository;
+    private final BookContentNeonService bookContentService;
+    private final BookViewCounterService bookViewCounterService;
+    private final BookStatisticsNeonService bookStatisticsService;
+    private final BookContentVerificationService bookContentVerificationService;
+    private final BookRatingNeonRepository bookRatingRepository;
+    private final BookRatingVoteNeonRepository bookRatingVoteRepository;
+    private final BookRecommendationNeonService bookRecommendationService;
+    
+    // Kích thước tối đa của file nội dung sách (20MB)
+    private static final long MAX_CONTENT_FILE_SIZE = 20971520L;
+    
+    // Giới hạn số id trong một yêu cầu hàng loạt và kích thước lô id cho mỗi câu DELETE
+    private static final int MAX_BULK_IDS = 10000;
+    private static final int BULK_BATCH_SIZE = 1000;
     
     // === CRUD OPERATIONS ===
     
@@ -53,6 +93,11 @@ public class BookNeonService {
         SupportedFormat supportedFormat = supportedFormatRepository.findById(bookDto.getSupportedFormatId())
             .orElseThrow(() -> new EntityNotFoundException("Supported format not found with id: " + bookDto.getSupportedFormatId()));
         
+        // Validate file size (cùng giới hạn với upload multipart)
+        if (bookDto.getContentFile() != null) {
+            validateContentFileSize(bookDto.getContentFile().length, supportedFormat);
+        }
+        
         // Validate developmental domains
         Set<DevelopmentalDomain> developmentalDomains = new HashSet<>();
         if (bookDto.getDevelopmentalDomainIds() != null && !bookDto.getDevelopmentalDomainIds().isEmpty()) {
@@ -73,7 +118,19 @@ public class BookNeonService {
         book.setSupportedFormat(supportedFormat);
         book.setDevelopmentalDomains(developmentalDomains);
         
+        if (bookDto.getContentFile() != null) {
+            StoredContent storedContent = bookContentService.storeContent(bookDto.getContentFile(), bookDto.getContentMimeType());
+            book.setContentSha256(storedContent.getSha256());
+            book.setContentFileSize(storedContent.getSize());
+            markContentUnverified(book);
+        }
+        
         Book savedBook = bookRepository.save(book);
+        bookStatisticsService.invalidate();
+        bookRecommendationService.refreshBooks(List.of(savedBook.getId()));
+        if (savedBook.getContentSha256() != null) {
+            bookContentVerificationService.scheduleVerification(savedBook.getId());
+        }
         log.info("Book created successfully with id: {}", savedBook.getId());
         
         return convertToDto(savedBook);
@@ -81,19 +138,23 @@ public class BookNeonService {
     
     /**
      * Tạo sách mới với file nội dung
+     * Nội dung được stream thẳng từ multipart xuống book_contents, không đi qua BookDto;
+     * nếu file đã tồn tại (cùng SHA-256) thì chỉ thêm tham chiếu mà không ghi lại dữ liệu
      */
-    public BookDto createBookWithFile(BookDto bookDto) {
+    public BookDto createBookWithFile(BookDto bookDto, InputStreamSource contentSource) throws IOException {
         log.info("Creating new book with file: {}", bookDto.getContentFileName());
         
-        // Validate file size (max 20MB)
-        if (bookDto.getContentFileSize() != null && bookDto.getContentFileSize() > 20971520) {
-            throw new IllegalArgumentException("File size exceeds maximum limit of 20MB");
-        }
-        
         // Validate supported format
         SupportedFormat supportedFormat = supportedFormatRepository.findById(bookDto.getSupportedFormatId())
             .orElseThrow(() -> new EntityNotFoundException("Supported format not found with id: " + bookDto.getSupportedFormatId()));
         
+        // Validate file size (max 20MB hoặc giới hạn riêng của định dạng nếu nhỏ hơn)
+        long maxFileSize = maxContentFileSize(supportedFormat);
+        if (bookDto.getContentFileSize() == null) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of " + maxFileSize + " bytes");
+        }
+        validateContentFileSize(bookDto.getContentFileSize(), supportedFormat);
+        
         // Validate developmental domains
         Set<DevelopmentalDomain> developmentalDomains = new HashSet<>();
         if (bookDto.getDevelopmentalDomainIds() != null && !bookDto.getDevelopmentalDomainIds().isEmpty()) {
@@ -115,7 +176,6 @@ public class BookNeonService {
         book.setDevelopmentalDomains(developmentalDomains);
         
         // Set file-related fields
-        book.setContentFile(bookDto.getContentFile());
         book.setContentFileName(bookDto.getContentFileName());
         book.setContentFileType(bookDto.getContentFileType());
         book.setContentFileSize(bookDto.getContentFileSize());
@@ -124,12 +184,40 @@ public class BookNeonService {
         book.setContentUploadedBy(bookDto.getContentUploadedBy());
         book.setContentIsVerified(bookDto.getContentIsVerified());
         
+        // Stream nội dung file vào book_contents, tách khỏi bảng books
+        StoredContent storedContent = bookContentService.storeContent(contentSource, bookDto.getContentFileSize(), maxFileSize, bookDto.getContentMimeType());
+        book.setContentSha256(storedContent.getSha256());
+        book.setContentFileSize(storedContent.getSize());
+        markContentUnverified(book);
+        
         Book savedBook = bookRepository.save(book);
+        bookStatisticsService.invalidate();
+        bookRecommendationService.refreshBooks(List.of(savedBook.getId()));
+        // Xác minh file chạy nền sau commit, request upload trả về ngay
+        bookContentVerificationService.scheduleVerification(savedBook.getId());
         log.info("Book with file created successfully with id: {}", savedBook.getId());
         
         return convertToDto(savedBook);
     }
     
+    /**
+     * Giới hạn kích thước file nội dung: max 20MB hoặc giới hạn riêng của định dạng nếu nhỏ hơn
+     */
+    private static long maxContentFileSize(SupportedFormat supportedFormat) {
+        long maxFileSize = MAX_CONTENT_FILE_SIZE;
+        if (supportedFormat.getMaxFileSize() != null) {
+            maxFileSize = Math.min(maxFileSize, supportedFormat.getMaxFileSize());
+        }
+        return maxFileSize;
+    }
+    
+    private static void validateContentFileSize(long size, SupportedFormat supportedFormat) {
+        long maxFileSize = maxContentFileSize(supportedFormat);
+        if (size > maxFileSize) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of " + maxFileSize + " bytes");
+        }
+    }
+    
     /**
      * Cập nhật sách
      */
@@ -146,6 +234,11 @@ public class BookNeonService {
             existingBook.setSupportedFormat(supportedFormat);
         }
         
+        // Validate file size (cùng giới hạn với upload multipart)
+        if (bookDto.getContentFile() != null) {
+            validateContentFileSize(bookDto.getContentFile().length, existingBook.getSupportedFormat());
+        }
+        
         // Validate developmental domains if changed
         if (bookDto.getDevelopmentalDomainIds() != null) {
             Set<DevelopmentalDomain> developmentalDomains = bookDto.getDevelopmentalDomainIds().stream()
@@ -166,7 +259,22 @@ public class BookNeonService {
         // Update fields
         updateBookFields(existingBook, bookDto);
         
+        // Thay nội dung file: lấy tham chiếu tới nội dung mới rồi giải phóng nội dung cũ
+        if (bookDto.getContentFile() != null) {
+            String previousSha256 = existingBook.getContentSha256();
+            StoredContent storedContent = bookContentService.storeContent(bookDto.getContentFile(), existingBook.getContentMimeType());
+            existingBook.setContentSha256(storedContent.getSha256());
+            existingBook.setContentFileSize(storedContent.getSize());
+            markContentUnverified(existingBook);
+            bookContentService.releaseContent(previousSha256);
+        }
+        
         Book updatedBook = bookRepository.save(existingBook);
+        bookStatisticsService.invalidate();
+        bookRecommendationService.refreshBooks(List.of(updatedBook.getId()));
+        if (bookDto.getContentFile() != null) {
+            bookContentVerificationService.scheduleVerification(updatedBook.getId());
+        }
         log.info("Book updated successfully with id: {}", updatedBook.getId());
         
         return convertToDto(updatedBook);
@@ -185,6 +293,42 @@ public class BookNeonService {
         return convertToDto(book);
     }
     
+    /**
+     * Lấy thông tin phiên bản sách (updatedAt, SHA-256 nội dung...) để kiểm tra conditional GET mà không tải entity
+     */
+    @Transactional(readOnly = true)
+    public BookVersionInfo getBookVersionInfo(Long id) {
+        return bookRepository.findVersionInfoById(id)
+            .orElseThrow(() -> new EntityNotFoundException("Book not found with id: " + id));
+    }
+    
+    /**
+     * Lấy phiên bản danh mục sách (số lượng và thời điểm cập nhật mới nhất) dùng làm validator cho các danh sách
+     */
+    @Transactional(readOnly = true)
+    public CatalogVersion getCatalogVersion() {
+        return bookRepository.findCatalogVersion();
+    }
+    
+    /**
+     * Ghi nhận một lượt xem sách
+     * Lượt xem được cộng dồn trong bộ nhớ và ghi xuống database theo batch (write-behind),
+     * totalViews trả về đã bao gồm các lượt xem chưa được ghi
+     */
+    @Transactional(readOnly = true)
+    public BookDto recordBookView(Long id) {
+        log.info("Recording view for book id: {}", id);
+        
+        Book book = bookRepository.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException("Book not found with id: " + id));
+        bookViewCounterService.recordView(id);
+        
+        BookDto bookDto = convertToDto(book);
+        long persistedViews = book.getTotalViews() != null ? book.getTotalViews() : 0L;
+        bookDto.setTotalViews(persistedViews + bookViewCounterService.getPendingViews(id));
+        return bookDto;
+    }
+    
     /**
      * Lấy tất cả sách với phân trang
      */
@@ -211,20 +355,113 @@ public class BookNeonService {
             .build();
     }
     
+    /**
+     * Lấy sách theo cursor (phân trang keyset, không dùng OFFSET)
+     * Trang đầu dùng sortBy/sortDir; các trang sau lấy thứ tự từ cursor. Chỉ đếm tổng khi includeTotal = true.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponseDto<BookDto> getBooksByCursor(String cursor, int size, String sortBy, String sortDir,
+                                                          boolean includeTotal) {
+        log.info("Getting books by cursor: {}, size: {}, sortBy: {}, sortDir: {}", cursor, size, sortBy, sortDir);
+        
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        
+        KeysetSortField sortField;
+        boolean descending;
+        Comparable<?> lastSortValue = null;
+        Long lastId = null;
+        
+        if (cursor != null && !cursor.isEmpty()) {
+            // Định dạng cursor: v1|<SORT_FIELD>|<A|D>|<lastId>|<lastSortValue>
+            String[] parts;
+            try {
+                parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 5);
+                sortField = KeysetSortField.valueOf(parts[1]);
+                descending = "D".equals(parts[2]);
+                lastId = Long.valueOf(parts[3]);
+                lastSortValue = sortField.parse(parts[4]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            if (!"v1".equals(parts[0])) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        } else {
+            sortField = KeysetSortField.fromProperty(sortBy)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported sort field for cursor pagination: " + sortBy));
+            descending = sortDir.equalsIgnoreCase("desc");
+        }
+        
+        // Lấy dư một phần tử để biết còn trang tiếp theo hay không
+        List<Book> books = bookRepository.findKeysetPage(sortField, descending, lastSortValue, lastId, size + 1);
+        boolean hasNext = books.size() > size;
+        if (hasNext) {
+            books = books.subList(0, size);
+        }
+        
+        String nextCursor = null;
+        if (hasNext) {
+            Book last = books.get(books.size() - 1);
+            String rawCursor = "v1|" + sortField.name() + "|" + (descending ? "D" : "A") + "|" + last.getId() + "|" + sortField.valueOf(last);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(rawCursor.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        List<BookDto> bookDtos = books.stream()
+            .map(this::convertToDto)
+            .collect(Collectors.toList());
+        
+        return CursorPageResponseDto.<BookDto>builder()
+            .content(bookDtos)
+            .size(bookDtos.size())
+            .hasNext(hasNext)
+            .nextCursor(nextCursor)
+            .totalElements(includeTotal ? bookRepository.count() : null)
+            .build();
+    }
+    
     /**
      * Xóa sách
      */
     public void deleteBook(Long id) {
         log.info("Deleting book with id: {}", id);
         
-        if (!bookRepository.existsById(id)) {
-            throw new EntityNotFoundException("Book not found with id: " + id);
-        }
+        Book book = bookRepository.findById(id)
+            .orElseThrow(() -> new EntityNotFoundException("Book not found with id: " + id));
         
-        bookRepository.deleteById(id);
+        // Chỉ giải phóng tham chiếu; nội dung còn được sách khác dùng sẽ được giữ lại
+        bookContentService.releaseContent(book.getContentSha256());
+        bookRepository.delete(book);
+        bookStatisticsService.invalidate();
+        bookRecommendationService.refreshBooks(List.of(id));
         log.info("Book deleted successfully with id: {}", id);
     }
     
+    /**
+     * Lấy thông tin lưu trữ file nội dung theo SHA-256 (kích thước, codec; không tải dữ liệu)
+     */
+    @Transactional(readOnly = true)
+    public Optional<ContentInfo> getContentInfo(String contentSha256) {
+        return bookContentService.getContentInfo(contentSha256);
+    }
+    
+    /**
+     * Stream một đoạn file nội dung (đã giải nén) ra channel đích
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void copyContentRange(ContentInfo content, long start, long length, WritableByteChannel target) throws IOException {
+        bookContentService.copyContentRange(content, start, length, target);
+    }
+    
+    /**
+     * Stream nguyên dữ liệu đang lưu (bản nén) ra channel đích cho client nhận được Content-Encoding tương ứng
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void copyStoredContent(ContentInfo content, WritableByteChannel target) throws IOException {
+        bookContentService.copyStoredContent(content, target);
+    }
+    
     // === SEARCH OPERATIONS ===
     
     /**
@@ -251,6 +488,36 @@ public class BookNeonService {
             .build();
     }
     
+    /**
+     * Tìm kiếm toàn văn sách, xếp hạng theo mức độ liên quan
+     * Không phân biệt dấu tiếng Việt; mỗi từ được so khớp theo tiền tố nên hỗ trợ gõ dở từ
+     */
+    @Transactional(readOnly = true)
+    public PageResponseDto<BookDto> searchBooksFullText(String keyword, int page, int size) {
+        log.info("Full-text searching books by keyword: {}", keyword);
+        
+        String query = toPrefixTsQuery(keyword);
+        if (query.isEmpty()) {
+            return PageResponseDto.of(List.of(), page, size, 0);
+        }
+        
+        Pageable pageable = PageRequest.of(page, size);
+        Page<Book> bookPage = bookRepository.searchByFullText(query, pageable);
+        
+        List<BookDto> bookDtos = bookPage.getContent().stream()
+            .map(this::convertToDto)
+            .collect(Collectors.toList());
+        
+        return PageResponseDto.<BookDto>builder()
+            .content(bookDtos)
+            .pageNumber(bookPage.getNumber())
+            .pageSize(bookPage.getSize())
+            .totalElements(bookPage.getTotalElements())
+            .totalPages(bookPage.getTotalPages())
+            .isLast(bookPage.isLast())
+            .build();
+    }
+    
     /**
      * Tìm kiếm sách theo bộ lọc
      */
@@ -317,26 +584,81 @@ public class BookNeonService {
             .collect(Collectors.toList());
     }
     
+    // === RECOMMENDATIONS ===
+    
+    /**
+     * Gợi ý sách cho trẻ theo độ tuổi hiện tại và lĩnh vực phát triển (tùy chọn)
+     */
+    public List<BookRecommendationDto> getRecommendationsForChild(Long childId, UUID developmentalDomainId, int limit) {
+        log.info("Getting book recommendations for child {} (domain: {}, limit: {})", childId, developmentalDomainId, limit);
+        return bookRecommendationService.recommendForChild(childId, developmentalDomainId, limit);
+    }
+    
+    // === BULK OPERATIONS ===
+    
+    /**
+     * Bật/tắt trạng thái hoạt động cho nhiều sách bằng một câu UPDATE
+     */
+    public BookBulkResultDto bulkUpdateStatus(BookBulkOperationDto request) {
+        if (request.getIsActive() == null) {
+            throw new IllegalArgumentException("isActive is required");
+        }
+        return bulkUpdateFlag("UPDATE_STATUS", request, BulkFlag.ACTIVE, request.getIsActive());
+    }
+    
+    /**
+     * Đặt/bỏ trạng thái nổi bật cho nhiều sách bằng một câu UPDATE
+     */
+    public BookBulkResultDto bulkUpdateFeatured(BookBulkOperationDto request) {
+        if (request.getIsFeatured() == null) {
+            throw new IllegalArgumentException("isFeatured is required");
+        }
+        return bulkUpdateFlag("UPDATE_FEATURED", request, BulkFlag.FEATURED, request.getIsFeatured());
+    }
+    
+    /**
+     * Xóa nhiều sách
+     * Danh sách sách được xác định bằng một truy vấn, sau đó đánh giá, liên kết lĩnh vực và sách được xóa
+     * bằng các câu DELETE theo lô id; tham chiếu nội dung file được giải phóng theo từng nội dung
+     */
+    public BookBulkResultDto bulkDeleteBooks(BookBulkOperationDto request) {
+        BulkSelection selection = toBulkSelection(request);
+        log.info("Bulk deleting books: {}", selection);
+        
+        List<Object[]> targets = bookRepository.findBulkTargets(selection);
+        List<Long> bookIds = targets.stream().map(target -> (Long) target[0]).collect(Collectors.toList());
+        Map<String, Integer> contentReferences = new LinkedHashMap<>();
+        targets.stream()
+            .map(target -> (String) target[1])
+            .filter(sha256 -> sha256 != null)
+            .forEach(sha256 -> contentReferences.merge(sha256, 1, Integer::sum));
+        
+        int deleted = 0;
+        for (int from = 0; from < bookIds.size(); from += BULK_BATCH_SIZE) {
+            List<Long> batch = bookIds.subList(from, Math.min(from + BULK_BATCH_SIZE, bookIds.size()));
+            bookRatingVoteRepository.deleteByBookIds(batch);
+            bookRatingRepository.deleteByBookIds(batch);
+            bookRepository.deleteDevelopmentalDomainLinks(batch);
+            deleted += bookRepository.deleteByIds(batch);
+        }
+        contentReferences.forEach(bookContentService::releaseContent);
+        
+        if (deleted > 0) {
+            bookStatisticsService.invalidate();
+            bookRecommendationService.refreshBooks(bookIds);
+        }
+        log.info("Bulk deleted {} books", deleted);
+        return BookBulkResultDto.builder().operation("DELETE").affectedCount(deleted).build();
+    }
+    
     // === STATISTICS ===
     
     /**
-     * Lấy thống kê sách
+     * Lấy thống kê sách (snapshot được cache, xem BookStatisticsNeonService)
      */
-    @Transactional(readOnly = true)
     public BookStatistics getBookStatistics() {
         log.info("Getting book statistics");
-        
-        long totalBooks = bookRepository.count();
-        long activeBooks = bookRepository.countActiveBooks();
-        long featuredBooks = bookRepository.countFeaturedBooks();
-        Double averageRating = bookRepository.getAverageRatingOfAllBooks();
-        
-        return BookStatistics.builder()
-            .totalBooks(totalBooks)
-            .activeBooks(activeBooks)
-            .featuredBooks(featuredBooks)
-            .averageRating(averageRating != null ? averageRating : 0.0)
-            .build();
+        return bookStatisticsService.getBookStatistics();
     }
     
     // === FILE OPERATIONS ===
@@ -354,26 +676,11 @@ public class BookNeonService {
     }
     
     /**
-     * Lấy thống kê file nội dung
+     * Lấy thống kê file nội dung (snapshot được cache, xem BookStatisticsNeonService)
      */
-    @Transactional(readOnly = true)
     public Object getContentFileStatistics() {
         log.info("Getting content file statistics");
-        
-        long totalFiles = bookRepository.countBooksWithContentFile();
-        Long totalSize = bookRepository.getTotalContentFileSize();
-        Double avgSize = bookRepository.getAverageContentFileSize();
-        List<Object[]> fileTypes = bookRepository.countBooksByContentFileType();
-        List<Object[]> uploaders = bookRepository.countBooksByUploader();
-        
-        java.util.Map<String, Object> statistics = new java.util.HashMap<>();
-        statistics.put("totalFiles", totalFiles);
-        statistics.put("totalSize", totalSize != null ? totalSize : 0);
-        statistics.put("averageSize", avgSize != null ? avgSize : 0);
-        statistics.put("fileTypes", fileTypes);
-        statistics.put("uploaders", uploaders);
-        
-        return statistics;
+        return bookStatisticsService.getContentFileStatistics();
     }
     
     /**
@@ -418,15 +725,11 @@ public class BookNeonService {
             .language(dto.getLanguage())
             .fileSize(dto.getFileSize())
             .pageCount(dto.getPageCount())
-            .averageRating(dto.getAverageRating())
-            .totalRatings(dto.getTotalRatings())
-            .totalViews(dto.getTotalViews())
             .isActive(dto.getIsActive())
             .isFeatured(dto.getIsFeatured())
             .keywords(dto.getKeywords())
             .tags(dto.getTags())
             .metadata(dto.getMetadata())
-            .contentFile(dto.getContentFile())
             .contentFileName(dto.getContentFileName())
             .contentFileType(dto.getContentFileType())
             .contentFileSize(dto.getContentFileSize())
@@ -464,13 +767,14 @@ public class BookNeonService {
             .pageCount(entity.getPageCount())
             .averageRating(entity.getAverageRating())
             .totalRatings(entity.getTotalRatings())
+            .ratingHistogram(toRatingHistogram(entity))
             .totalViews(entity.getTotalViews())
             .isActive(entity.getIsActive())
             .isFeatured(entity.getIsFeatured())
             .keywords(entity.getKeywords())
             .tags(entity.getTags())
             .metadata(entity.getMetadata())
-            .contentFile(entity.getContentFile())
+            .contentSha256(entity.getContentSha256())
             .contentFileName(entity.getContentFileName())
             .contentFileType(entity.getContentFileType())
             .contentFileSize(entity.getContentFileSize())
@@ -484,6 +788,36 @@ public class BookNeonService {
             .build();
     }
     
+    /**
+     * Chuyển từ khóa người dùng thành tsquery dạng "tu1:* & tu2:*"
+     * Bỏ dấu tiếng Việt (khớp với f_unaccent trong search_vector) và chỉ giữ chữ/số nên an toàn khi đưa vào to_tsquery
+     */
+    private static String toPrefixTsQuery(String keyword) {
+        if (keyword == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(keyword, Normalizer.Form.NFD)
+            .replaceAll("\\p{M}+", "")
+            .replace('đ', 'd')
+            .replace('Đ', 'D')
+            .toLowerCase(Locale.ROOT);
+        
+        return Arrays.stream(normalized.split("[^\\p{L}\\p{N}]+"))
+            .filter(token -> !token.isEmpty())
+            .map(token -> token + ":*")
+            .collect(Collectors.joining(" & "));
+    }
+    
+    private Map<Integer, Integer> toRatingHistogram(Book entity) {
+        Map<Integer, Integer> histogram = new LinkedHashMap<>();
+        histogram.put(1, entity.getRatingCount1() != null ? entity.getRatingCount1() : 0);
+        histogram.put(2, entity.getRatingCount2() != null ? entity.getRatingCount2() : 0);
+        histogram.put(3, entity.getRatingCount3() != null ? entity.getRatingCount3() : 0);
+        histogram.put(4, entity.getRatingCount4() != null ? entity.getRatingCount4() : 0);
+        histogram.put(5, entity.getRatingCount5() != null ? entity.getRatingCount5() : 0);
+        return histogram;
+    }
+    
     private void updateBookFields(Book book, BookDto dto) {
         if (dto.getTitle() != null) book.setTitle(dto.getTitle());
         if (dto.getAuthor() != null) book.setAuthor(dto.getAuthor());
@@ -498,9 +832,6 @@ public class BookNeonService {
         if (dto.getLanguage() != null) book.setLanguage(dto.getLanguage());
         if (dto.getFileSize() != null) book.setFileSize(dto.getFileSize());
         if (dto.getPageCount() != null) book.setPageCount(dto.getPageCount());
-        if (dto.getAverageRating() != null) book.setAverageRating(dto.getAverageRating());
-        if (dto.getTotalRatings() != null) book.setTotalRatings(dto.getTotalRatings());
-        if (dto.getTotalViews() != null) book.setTotalViews(dto.getTotalViews());
         if (dto.getIsActive() != null) book.setIsActive(dto.getIsActive());
         if (dto.getIsFeatured() != null) book.setIsFeatured(dto.getIsFeatured());
         if (dto.getKeywords() != null) book.setKeywords(dto.getKeywords());
@@ -508,7 +839,6 @@ public class BookNeonService {
         if (dto.getMetadata() != null) book.setMetadata(dto.getMetadata());
         
         // Update file-related fields
-        if (dto.getContentFile() != null) book.setContentFile(dto.getContentFile());
         if (dto.getContentFileName() != null) book.setContentFileName(dto.getContentFileName());
         if (dto.getContentFileType() != null) book.setContentFileType(dto.getContentFileType());
         if (dto.getContentFileSize() != null) book.setContentFileSize(dto.getContentFileSize());
@@ -519,6 +849,55 @@ public class BookNeonService {
         if (dto.getContentVerificationDate() != null) book.setContentVerificationDate(dto.getContentVerificationDate());
     }
     
+    private BookBulkResultDto bulkUpdateFlag(String operation, BookBulkOperationDto request, BulkFlag flag, boolean value) {
+        BulkSelection selection = toBulkSelection(request);
+        log.info("Bulk {} to {} for books: {}", operation, value, selection);
+        
+        int updated = bookRepository.bulkUpdateFlag(selection, flag, value, LocalDateTime.now());
+        if (updated > 0) {
+            bookStatisticsService.invalidate();
+            // Trạng thái hoạt động quyết định sách có trong chỉ mục gợi ý; tập sách theo bộ lọc không biết trước nên dựng lại toàn bộ
+            if (flag == BulkFlag.ACTIVE) {
+                bookRecommendationService.requestFullRefresh();
+            }
+        }
+        log.info("Bulk {} affected {} books", operation, updated);
+        return BookBulkResultDto.builder().operation(operation).affectedCount(updated).build();
+    }
+    
+    /**
+     * Chuyển yêu cầu hàng loạt sang điều kiện chọn sách; từ chối yêu cầu không có điều kiện nào để tránh thao tác trên toàn bộ bảng
+     */
+    private BulkSelection toBulkSelection(BookBulkOperationDto request) {
+        BookBulkOperationDto.Filter filter = request.getFilter() != null ? request.getFilter() : new BookBulkOperationDto.Filter();
+        if (request.getIds() != null && request.getIds().size() > MAX_BULK_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_IDS + " ids are allowed per bulk request");
+        }
+        
+        BulkSelection selection = BulkSelection.builder()
+            .ids(request.getIds())
+            .supportedFormatId(filter.getSupportedFormatId())
+            .developmentalDomainId(filter.getDevelopmentalDomainId())
+            .isActive(filter.getIsActive())
+            .isFeatured(filter.getIsFeatured())
+            .language(filter.getLanguage())
+            .ageGroup(filter.getAgeGroup())
+            .contentUploadedBy(filter.getContentUploadedBy())
+            .build();
+        if (selection.isEmpty()) {
+            throw new IllegalArgumentException("Bulk operation requires ids or at least one filter");
+        }
+        return selection;
+    }
+    
+    /**
+     * Nội dung mới chưa được xác minh: cờ xác minh chỉ do pipeline nền đặt, không lấy theo dữ liệu client gửi lên
+     */
+    private void markContentUnverified(Book book) {
+        book.setContentIsVerified(false);
+        book.setContentVerificationDate(null);
+    }
+    
     // === INNER CLASSES ===
     
     @Data
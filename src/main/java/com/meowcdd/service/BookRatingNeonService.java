@@ -6,6 +6,7 @@ import com.meowcdd.entity.neon.Book;
 import com.meowcdd.entity.neon.BookRating;
 import com.meowcdd.repository.neon.BookNeonRepository;
 import com.meowcdd.repository.neon.BookRatingNeonRepository;
+import com.meowcdd.repository.neon.BookRatingVoteNeonRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -32,6 +33,9 @@ public class BookRatingNeonService {
     
     private final BookRatingNeonRepository bookRatingRepository;
     private final BookNeonRepository bookRepository;
+    private final BookRatingVoteNeonRepository bookRatingVoteRepository;
+    private final BookStatisticsNeonService bookStatisticsService;
+    private final BookRecommendationNeonService bookRecommendationService;
     
     // === CRUD OPERATIONS ===
     
@@ -62,8 +66,10 @@ public class BookRatingNeonService {
         BookRating savedRating = bookRatingRepository.save(rating);
         log.info("Rating created successfully with id: {}", savedRating.getId());
         
-        // Update book statistics
-        updateBookRatingStatistics(ratingDto.getBookId());
+        // Cập nhật thống kê đánh giá của sách (tăng dần, không tính lại toàn bộ)
+        bookRepository.applyRatingDelta(book.getId(), savedRating.getRating(), 0, 1, LocalDateTime.now());
+        bookStatisticsService.invalidate();
+        bookRecommendationService.refreshBooks(List.of(book.getId()));
         
         return convertToDto(savedRating);
     }
@@ -82,6 +88,8 @@ public class BookRatingNeonService {
             throw new IllegalArgumentException("Rating must be between 1 and 5");
         }
         
+        int previousRating = existingRating.getRating();
+        
         // Update fields
         updateRatingFields(existingRating, ratingDto);
         existingRating.setIsEdited(true);
@@ -90,8 +98,12 @@ public class BookRatingNeonService {
         BookRating updatedRating = bookRatingRepository.save(existingRating);
         log.info("Rating updated successfully with id: {}", updatedRating.getId());
         
-        // Update book statistics
-        updateBookRatingStatistics(existingRating.getBook().getId());
+        // Cập nhật thống kê đánh giá của sách nếu điểm thay đổi
+        if (updatedRating.getRating() != previousRating) {
+            bookRepository.applyRatingDelta(existingRating.getBook().getId(), updatedRating.getRating(), previousRating, 0, LocalDateTime.now());
+            bookStatisticsService.invalidate();
+            bookRecommendationService.refreshBooks(List.of(existingRating.getBook().getId()));
+        }
         
         return convertToDto(updatedRating);
     }
@@ -145,12 +157,16 @@ public class BookRatingNeonService {
             .orElseThrow(() -> new EntityNotFoundException("Rating not found with id: " + id));
         
         Long bookId = rating.getBook().getId();
+        int removedRating = rating.getRating();
         
+        bookRatingVoteRepository.deleteByRatingId(id);
         bookRatingRepository.deleteById(id);
         log.info("Rating deleted successfully with id: {}", id);
         
-        // Update book statistics
-        updateBookRatingStatistics(bookId);
+        // Cập nhật thống kê đánh giá của sách
+        bookRepository.applyRatingDelta(bookId, 0, removedRating, -1, LocalDateTime.now());
+        bookStatisticsService.invalidate();
+        bookRecommendationService.refreshBooks(List.of(bookId));
     }
     
     // === SEARCH OPERATIONS ===
@@ -302,20 +318,25 @@ public class BookRatingNeonService {
     
     /**
      * Đánh dấu đánh giá hữu ích/không hữu ích
+     * Có parentId: ghi phiếu của phụ huynh và cập nhật bộ đếm trong một câu lệnh, phiếu lặp lại bị bỏ qua,
+     * đổi phiếu thì chuyển lượt sang bộ đếm còn lại. Không có parentId: tăng bộ đếm bằng một câu UPDATE.
      */
-    public void markRatingHelpful(Long ratingId, boolean isHelpful) {
-        log.info("Marking rating {} as {}", ratingId, isHelpful ? "helpful" : "not helpful");
-        
-        BookRating rating = bookRatingRepository.findById(ratingId)
-            .orElseThrow(() -> new EntityNotFoundException("Rating not found with id: " + ratingId));
-        
-        if (isHelpful) {
-            rating.setHelpfulCount(rating.getHelpfulCount() + 1);
-        } else {
-            rating.setNotHelpfulCount(rating.getNotHelpfulCount() + 1);
+    public void markRatingHelpful(Long ratingId, String parentId, boolean isHelpful) {
+        log.info("Marking rating {} as {} by parent {}", ratingId, isHelpful ? "helpful" : "not helpful", parentId);
+        
+        if (parentId != null && !parentId.trim().isEmpty()) {
+            if (bookRatingVoteRepository.castVote(ratingId, parentId, isHelpful) == 0) {
+                log.info("Duplicate vote ignored for rating {} by parent {}", ratingId, parentId);
+            }
+            return;
         }
         
-        bookRatingRepository.save(rating);
+        int updated = isHelpful
+            ? bookRatingRepository.incrementHelpfulCount(ratingId)
+            : bookRatingRepository.incrementNotHelpfulCount(ratingId);
+        if (updated == 0) {
+            throw new EntityNotFoundException("Rating not found with id: " + ratingId);
+        }
         log.info("Rating marked successfully");
     }
     
@@ -328,13 +349,14 @@ public class BookRatingNeonService {
     public RatingStatistics getRatingStatisticsForBook(Long bookId) {
         log.info("Getting rating statistics for book: {}", bookId);
         
-        Double averageRating = bookRatingRepository.getAverageRatingByBookId(bookId);
-        long totalRatings = bookRatingRepository.countRatingsByBookId(bookId);
+        // Đọc từ thống kê được duy trì trên bảng books thay vì AVG/COUNT trên toàn bộ đánh giá
+        Book book = bookRepository.findById(bookId)
+            .orElseThrow(() -> new EntityNotFoundException("Book not found with id: " + bookId));
         
         return RatingStatistics.builder()
             .bookId(bookId)
-            .averageRating(averageRating != null ? averageRating : 0.0)
-            .totalRatings(totalRatings)
+            .averageRating(book.getAverageRating() != null ? book.getAverageRating() : 0.0)
+            .totalRatings(book.getTotalRatings() != null ? book.getTotalRatings() : 0)
             .build();
     }
     
@@ -400,18 +422,6 @@ public class BookRatingNeonService {
         if (dto.getRatingType() != null) rating.setRatingType(BookRating.RatingType.valueOf(dto.getRatingType()));
     }
     
-    private void updateBookRatingStatistics(Long bookId) {
-        // This method would update the book's average rating and total ratings
-        // Implementation depends on whether you want to do this synchronously or asynchronously
-        log.info("Updating rating statistics for book: {}", bookId);
-        
-        Double averageRating = bookRatingRepository.getAverageRatingByBookId(bookId);
-        long totalRatings = bookRatingRepository.countRatingsByBookId(bookId);
-        
-        // Update book statistics (you might want to do this asynchronously)
-        // bookService.updateBookRatingStatistics(bookId, averageRating, totalRatings);
-    }
-    
     // === INNER CLASSES ===
     
     @lombok.Data
@@ -0,0 +1,480 @@
+package com.meowcdd.service;
+
+import com.meowcdd.dto.BookRecommendationDto;
+import com.meowcdd.repository.neon.BookNeonRepository;
+import com.meowcdd.repository.neon.ChildNeonRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service gợi ý sách cho trẻ theo tuổi (tháng) và lĩnh vực phát triển
+ * Giữ một chỉ mục trong bộ nhớ gồm các sách đang hoạt động, chia theo khoảng tuổi AGE_BUCKET_MONTHS tháng và
+ * theo lĩnh vực; mỗi danh sách đã được sắp theo điểm (đánh giá + lượt xem) nên tra cứu chỉ là duyệt đầu danh sách.
+ * Thay đổi sách được ghi nhận sau commit và áp dụng định kỳ: chỉ các sách bị thay đổi được tải lại, chấm điểm
+ * (với điểm trung bình và lượt xem lớn nhất cố định từ lần dựng gần nhất) và chèn lại vào đúng các bucket của chúng.
+ * Chỉ mục được dựng sẵn khi ứng dụng khởi động xong và dựng lại toàn bộ theo chu kỳ dài
+ * để cập nhật lượt xem (ghi theo write-behind) và các tham số chuẩn hóa điểm.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookRecommendationNeonService {
+
+    // Độ rộng mỗi khoảng tuổi trong chỉ mục (tháng); trẻ lớn hơn MAX_INDEXED_AGE_MONTHS dùng khoảng cuối
+    private static final int AGE_BUCKET_MONTHS = 6;
+    private static final int MAX_INDEXED_AGE_MONTHS = 216;
+    private static final int BUCKET_COUNT = MAX_INDEXED_AGE_MONTHS / AGE_BUCKET_MONTHS + 1;
+
+    // Điểm = RATING_WEIGHT * điểm đánh giá Bayes (chuẩn hóa 0-1) + VIEWS_WEIGHT * log lượt xem (chuẩn hóa 0-1)
+    // Điểm đánh giá Bayes kéo sách ít lượt đánh giá về điểm trung bình toàn danh mục với trọng số RATING_PRIOR_WEIGHT
+    private static final double RATING_WEIGHT = 0.7;
+    private static final double VIEWS_WEIGHT = 0.3;
+    private static final double RATING_PRIOR_WEIGHT = 5.0;
+    private static final double DEFAULT_MEAN_RATING = 3.0;
+
+    private static final int MAX_LIMIT = 50;
+
+    // Thứ tự trong mọi danh sách của chỉ mục: điểm giảm dần, cùng điểm thì theo id
+    private static final Comparator<ScoredBook> RANKING = Comparator.comparingDouble(ScoredBook::score).reversed()
+        .thenComparing(scored -> scored.book().getId());
+
+    private final BookNeonRepository bookRepository;
+    private final ChildNeonRepository childRepository;
+
+    @Value("${book.recommendation.full-refresh-interval-ms:600000}")
+    private long fullRefreshIntervalMillis;
+
+    // Các sách đang có trong snapshot kèm điểm đã tính, chỉ được sửa khi giữ khóa của service
+    private final Map<Long, ScoredBook> books = new HashMap<>();
+
+    private final Set<Long> pendingBookIds = ConcurrentHashMap.newKeySet();
+    // Lần dựng đầu tiên do warm-up hoặc lần chạy định kỳ đầu tiên (lastFullRefreshAt = 0) đảm nhận
+    private final AtomicBoolean fullRefreshRequested = new AtomicBoolean();
+    private volatile long lastFullRefreshAt;
+    private volatile Snapshot snapshot;
+
+    /**
+     * Gợi ý sách cho trẻ: sách phù hợp độ tuổi hiện tại (và lĩnh vực nếu có), xếp theo điểm giảm dần
+     */
+    public List<BookRecommendationDto> recommendForChild(Long childId, UUID developmentalDomainId, int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        LocalDate dateOfBirth = childRepository.findDateOfBirthById(childId)
+            .orElseThrow(() -> new EntityNotFoundException("Child not found with id: " + childId));
+        Period age = Period.between(dateOfBirth, LocalDate.now());
+        int ageMonths = Math.max(0, age.getYears() * 12 + age.getMonths());
+
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Chỉ xảy ra khi warm-up lúc khởi động thất bại (vd. database chưa sẵn sàng)
+            current = buildInitialSnapshot();
+        }
+        return current.lookup(ageMonths, developmentalDomainId, limit);
+    }
+
+    /**
+     * Dựng chỉ mục khi ứng dụng sẵn sàng để request đầu tiên không phải chờ tải toàn bộ danh mục
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            buildInitialSnapshot();
+        } catch (RuntimeException e) {
+            log.warn("Could not build book recommendation index on startup, will retry: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi nhận các sách cần tải lại vào chỉ mục (sau khi transaction hiện tại commit)
+     */
+    public void refreshBooks(Collection<Long> bookIds) {
+        List<Long> ids = List.copyOf(bookIds);
+        afterCommit(() -> pendingBookIds.addAll(ids));
+    }
+
+    /**
+     * Yêu cầu dựng lại toàn bộ chỉ mục (khi không biết chính xác các sách bị thay đổi, vd. cập nhật hàng loạt theo bộ lọc)
+     */
+    public void requestFullRefresh() {
+        afterCommit(() -> fullRefreshRequested.set(true));
+    }
+
+    /**
+     * Áp dụng các thay đổi đang chờ vào chỉ mục, chạy nền để request không phải chờ database
+     */
+    @Scheduled(fixedDelayString = "${book.recommendation.refresh-delay-ms:2000}")
+    public void applyPendingChanges() {
+        boolean fullRefreshDue = System.currentTimeMillis() - lastFullRefreshAt >= fullRefreshIntervalMillis;
+        if (fullRefreshRequested.getAndSet(false) || fullRefreshDue) {
+            try {
+                fullRefresh();
+            } catch (RuntimeException e) {
+                fullRefreshRequested.set(true);
+                throw e;
+            }
+            return;
+        }
+        if (pendingBookIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> bookIds = new ArrayList<>(pendingBookIds);
+        pendingBookIds.removeAll(bookIds);
+        try {
+            refreshIndexedBooks(bookIds);
+        } catch (RuntimeException e) {
+            pendingBookIds.addAll(bookIds);
+            throw e;
+        }
+    }
+
+    // === HELPER METHODS ===
+
+    private synchronized Snapshot buildInitialSnapshot() {
+        if (snapshot == null) {
+            fullRefresh();
+        }
+        return snapshot;
+    }
+
+    private synchronized void fullRefresh() {
+        long startedAt = System.currentTimeMillis();
+        Map<Long, IndexedBook> loaded = loadBooks(bookRepository.findRecommendationRows(), bookRepository.findRecommendationDomainLinks());
+        ScoringParameters parameters = ScoringParameters.of(loaded.values());
+        books.clear();
+        for (IndexedBook book : loaded.values()) {
+            books.put(book.getId(), parameters.score(book));
+        }
+        snapshot = Snapshot.build(parameters, books.values());
+        lastFullRefreshAt = startedAt;
+        log.info("Rebuilt book recommendation index with {} books in {} ms", books.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    private synchronized void refreshIndexedBooks(List<Long> bookIds) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            fullRefresh();
+            return;
+        }
+        Map<Long, IndexedBook> loaded = loadBooks(bookRepository.findRecommendationRowsByIds(bookIds),
+            bookRepository.findRecommendationDomainLinksByIds(bookIds));
+        // Sách không còn trả về (đã xóa hoặc ngừng hoạt động) bị loại khỏi chỉ mục
+        List<ScoredBook> removed = new ArrayList<>();
+        List<ScoredBook> added = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            ScoredBook previous = books.remove(bookId);
+            if (previous != null) {
+                removed.add(previous);
+            }
+            IndexedBook book = loaded.get(bookId);
+            if (book != null) {
+                ScoredBook scored = current.getParameters().score(book);
+                books.put(bookId, scored);
+                added.add(scored);
+            }
+        }
+        snapshot = current.withChanges(removed, added);
+        log.debug("Refreshed {} books in recommendation index", bookIds.size());
+    }
+
+    private Map<Long, IndexedBook> loadBooks(List<Object[]> rows, List<Object[]> domainLinks) {
+        Map<Long, IndexedBook> loaded = new HashMap<>();
+        for (Object[] row : rows) {
+            IndexedBook book = IndexedBook.builder()
+                .id((Long) row[0])
+                .title((String) row[1])
+                .author((String) row[2])
+                .ageGroup((String) row[3])
+                .minAge((Integer) row[4])
+                .maxAge((Integer) row[5])
+                .averageRating((Double) row[6])
+                .totalRatings((Integer) row[7])
+                .ratingSum((Long) row[8])
+                .totalViews((Long) row[9])
+                .developmentalDomainIds(new HashSet<>())
+                .build();
+            loaded.put(book.getId(), book);
+        }
+        for (Object[] link : domainLinks) {
+            IndexedBook book = loaded.get((Long) link[0]);
+            if (book != null) {
+                book.getDevelopmentalDomainIds().add((UUID) link[1]);
+            }
+        }
+        return loaded;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static int bucketOf(int ageMonths) {
+        return Math.min(Math.max(ageMonths, 0), MAX_INDEXED_AGE_MONTHS) / AGE_BUCKET_MONTHS;
+    }
+
+    // === INNER CLASSES ===
+
+    @Data
+    @Builder
+    private static class IndexedBook {
+        private Long id;
+        private String title;
+        private String author;
+        private String ageGroup;
+        private Integer minAge;
+        private Integer maxAge;
+        private Double averageRating;
+        private Integer totalRatings;
+        private Long ratingSum;
+        private Long totalViews;
+        private Set<UUID> developmentalDomainIds;
+
+        boolean fitsAge(int ageMonths) {
+            return (minAge == null || minAge <= ageMonths) && (maxAge == null || maxAge >= ageMonths);
+        }
+
+        int ratingCount() {
+            return totalRatings != null ? totalRatings : 0;
+        }
+
+        double ratingTotal() {
+            if (ratingSum != null) {
+                return ratingSum;
+            }
+            return averageRating != null ? averageRating * ratingCount() : 0.0;
+        }
+    }
+
+    /**
+     * Tham số chuẩn hóa điểm, tính trên toàn danh mục ở mỗi lần dựng lại toàn bộ;
+     * sách thay đổi giữa hai lần dựng được chấm theo tham số cũ để không phải chấm và sắp lại cả danh mục
+     */
+    private record ScoringParameters(double meanRating, double maxViewsLog) {
+
+        static ScoringParameters of(Collection<IndexedBook> books) {
+            long ratingCount = 0;
+            double ratingTotal = 0;
+            long maxViews = 0;
+            for (IndexedBook book : books) {
+                ratingCount += book.ratingCount();
+                ratingTotal += book.ratingTotal();
+                maxViews = Math.max(maxViews, book.getTotalViews() != null ? book.getTotalViews() : 0L);
+            }
+            double meanRating = ratingCount > 0 ? ratingTotal / ratingCount : DEFAULT_MEAN_RATING;
+            return new ScoringParameters(meanRating, Math.log1p(maxViews));
+        }
+
+        ScoredBook score(IndexedBook book) {
+            double bayesianRating = (RATING_PRIOR_WEIGHT * meanRating + book.ratingTotal()) / (RATING_PRIOR_WEIGHT + book.ratingCount());
+            long views = book.getTotalViews() != null ? book.getTotalViews() : 0L;
+            // Sách vượt lượt xem lớn nhất của lần dựng trước được tính tối đa 1 cho tới lần dựng sau
+            double viewScore = maxViewsLog > 0 ? Math.min(1.0, Math.log1p(views) / maxViewsLog) : 0.0;
+            return new ScoredBook(book, RATING_WEIGHT * (bayesianRating / 5.0) + VIEWS_WEIGHT * viewScore);
+        }
+    }
+
+    /**
+     * Trạng thái bất biến của chỉ mục; được thay thế nguyên khối nên luồng đọc không cần khóa.
+     * Cập nhật từng phần chỉ sao chép các danh sách của bucket bị ảnh hưởng, các danh sách khác dùng chung với snapshot cũ
+     */
+    private static class Snapshot {
+
+        private final ScoringParameters parameters;
+        private final List<List<ScoredBook>> byAge;
+        private final List<Map<UUID, List<ScoredBook>>> byAgeAndDomain;
+
+        private Snapshot(ScoringParameters parameters, List<List<ScoredBook>> byAge,
+                         List<Map<UUID, List<ScoredBook>>> byAgeAndDomain) {
+            this.parameters = parameters;
+            this.byAge = byAge;
+            this.byAgeAndDomain = byAgeAndDomain;
+        }
+
+        static Snapshot build(ScoringParameters parameters, Collection<ScoredBook> books) {
+            List<ScoredBook> ranked = new ArrayList<>(books);
+            ranked.sort(RANKING);
+
+            List<List<ScoredBook>> byAge = new ArrayList<>(BUCKET_COUNT);
+            List<Map<UUID, List<ScoredBook>>> byAgeAndDomain = new ArrayList<>(BUCKET_COUNT);
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                byAge.add(new ArrayList<>());
+                byAgeAndDomain.add(new HashMap<>());
+            }
+            // Duyệt theo thứ tự điểm nên mọi danh sách trong bucket đều đã được sắp sẵn
+            for (ScoredBook scored : ranked) {
+                IndexedBook book = scored.book();
+                for (int i = scored.fromBucket(); i <= scored.toBucket(); i++) {
+                    byAge.get(i).add(scored);
+                    for (UUID domainId : book.getDevelopmentalDomainIds()) {
+                        byAgeAndDomain.get(i).computeIfAbsent(domainId, id -> new ArrayList<>()).add(scored);
+                    }
+                }
+            }
+            return new Snapshot(parameters, byAge, byAgeAndDomain);
+        }
+
+        ScoringParameters getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Snapshot mới: bỏ các mục cũ của sách thay đổi và chèn mục mới vào đúng vị trí (tìm nhị phân theo RANKING)
+         */
+        Snapshot withChanges(Collection<ScoredBook> removed, Collection<ScoredBook> added) {
+            List<List<ScoredBook>> newByAge = new ArrayList<>(byAge);
+            List<Map<UUID, List<ScoredBook>>> newByAgeAndDomain = new ArrayList<>(byAgeAndDomain);
+            // Các danh sách/map đã sao chép trong lần cập nhật này (được phép sửa)
+            Set<Object> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            for (ScoredBook scored : removed) {
+                for (int i = scored.fromBucket(); i <= scored.toBucket(); i++) {
+                    remove(ageList(newByAge, i, copied), scored);
+                    Map<UUID, List<ScoredBook>> domains = domainMap(newByAgeAndDomain, i, copied);
+                    for (UUID domainId : scored.book().getDevelopmentalDomainIds()) {
+                        List<ScoredBook> domainBooks = domainList(domains, domainId, copied);
+                        remove(domainBooks, scored);
+                        if (domainBooks.isEmpty()) {
+                            domains.remove(domainId);
+                        }
+                    }
+                }
+            }
+            for (ScoredBook scored : added) {
+                for (int i = scored.fromBucket(); i <= scored.toBucket(); i++) {
+                    insert(ageList(newByAge, i, copied), scored);
+                    Map<UUID, List<ScoredBook>> domains = domainMap(newByAgeAndDomain, i, copied);
+                    for (UUID domainId : scored.book().getDevelopmentalDomainIds()) {
+                        insert(domainList(domains, domainId, copied), scored);
+                    }
+                }
+            }
+            return new Snapshot(parameters, newByAge, newByAgeAndDomain);
+        }
+
+        private static List<ScoredBook> ageList(List<List<ScoredBook>> byAge, int bucket, Set<Object> copied) {
+            List<ScoredBook> list = byAge.get(bucket);
+            if (!copied.contains(list)) {
+                list = new ArrayList<>(list);
+                byAge.set(bucket, list);
+                copied.add(list);
+            }
+            return list;
+        }
+
+        private static Map<UUID, List<ScoredBook>> domainMap(List<Map<UUID, List<ScoredBook>>> byAgeAndDomain, int bucket,
+                                                           Set<Object> copied) {
+            Map<UUID, List<ScoredBook>> map = byAgeAndDomain.get(bucket);
+            if (!copied.contains(map)) {
+                map = new HashMap<>(map);
+                byAgeAndDomain.set(bucket, map);
+                copied.add(map);
+            }
+            return map;
+        }
+
+        private static List<ScoredBook> domainList(Map<UUID, List<ScoredBook>> domains, UUID domainId, Set<Object> copied) {
+            List<ScoredBook> list = domains.get(domainId);
+            if (list == null || !copied.contains(list)) {
+                list = list != null ? new ArrayList<>(list) : new ArrayList<>();
+                domains.put(domainId, list);
+                copied.add(list);
+            }
+            return list;
+        }
+
+        private static void remove(List<ScoredBook> list, ScoredBook scored) {
+            int index = Collections.binarySearch(list, scored, RANKING);
+            if (index >= 0) {
+                list.remove(index);
+            }
+        }
+
+        private static void insert(List<ScoredBook> list, ScoredBook scored) {
+            int index = Collections.binarySearch(list, scored, RANKING);
+            list.add(index >= 0 ? index : -index - 1, scored);
+        }
+
+        List<BookRecommendationDto> lookup(int ageMonths, UUID developmentalDomainId, int limit) {
+            int bucket = bucketOf(ageMonths);
+            List<ScoredBook> candidates = developmentalDomainId != null
+                ? byAgeAndDomain.get(bucket).getOrDefault(developmentalDomainId, List.of())
+                : byAge.get(bucket);
+
+            List<BookRecommendationDto> recommendations = new ArrayList<>(limit);
+            for (ScoredBook scored : candidates) {
+                // Bucket chỉ khớp theo khoảng 6 tháng, lọc lại theo đúng tuổi của trẻ
+                if (!scored.book().fitsAge(ageMonths)) {
+                    continue;
+                }
+                recommendations.add(scored.toDto());
+                if (recommendations.size() == limit) {
+                    break;
+                }
+            }
+            return recommendations;
+        }
+    }
+
+    private record ScoredBook(IndexedBook book, double score) {
+
+        int fromBucket() {
+            return bucketOf(book.getMinAge() != null ? book.getMinAge() : 0);
+        }
+
+        int toBucket() {
+            return bucketOf(book.getMaxAge() != null ? book.getMaxAge() : MAX_INDEXED_AGE_MONTHS);
+        }
+
+        BookRecommendationDto toDto() {
+            return BookRecommendationDto.builder()
+                .bookId(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .ageGroup(book.getAgeGroup())
+                .minAge(book.getMinAge())
+                .maxAge(book.getMaxAge())
+                .averageRating(book.getAverageRating())
+                .totalRatings(book.getTotalRatings())
+                .totalViews(book.getTotalViews())
+                .developmentalDomainIds(Set.copyOf(book.getDevelopmentalDomainIds()))
+                .score(score)
+                .build();
+        }
+    }
+}
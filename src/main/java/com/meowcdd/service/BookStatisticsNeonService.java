@@ -0,0 +1,177 @@
+package com.meowcdd.service;
+
+import com.meowcdd.service.BookNeonService.BookStatistics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Service cung cấp snapshot thống kê sách cho các dashboard
+ * Mỗi loại thống kê được tính bằng một câu truy vấn tổng hợp duy nhất và giữ trong bộ nhớ;
+ * snapshot được tính lại khi hết hạn (TTL ngắn) hoặc khi có thay đổi sách/đánh giá đã commit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookStatisticsNeonService {
+
+    private static final String BOOK_STATISTICS_SQL =
+        "SELECT COUNT(*) AS total_books, " +
+        "COUNT(*) FILTER (WHERE is_active = true) AS active_books, " +
+        "COUNT(*) FILTER (WHERE is_featured = true) AS featured_books, " +
+        "AVG(average_rating) AS average_rating " +
+        "FROM books";
+
+    // GROUPING SETS trả về trong cùng một lượt quét: dòng tổng (), nhóm theo loại file và nhóm theo người upload
+    private static final String CONTENT_FILE_STATISTICS_SQL =
+        "SELECT GROUPING(content_file_type) AS by_type, GROUPING(content_uploaded_by) AS by_uploader, " +
+        "content_file_type, content_uploaded_by, COUNT(*) AS book_count, " +
+        "COUNT(*) FILTER (WHERE content_file_size > 0) AS total_files, " +
+        "SUM(content_file_size) AS total_size, AVG(content_file_size) AS average_size " +
+        "FROM books " +
+        "GROUP BY GROUPING SETS ((), (content_file_type), (content_uploaded_by))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${book.statistics.ttl-ms:30000}")
+    private long ttlMillis;
+
+    private final CachedSnapshot<BookStatistics> bookStatistics = new CachedSnapshot<>();
+    private final CachedSnapshot<Map<String, Object>> contentFileStatistics = new CachedSnapshot<>();
+
+    /**
+     * Lấy thống kê sách từ snapshot
+     */
+    public BookStatistics getBookStatistics() {
+        return bookStatistics.get(ttlMillis, this::loadBookStatistics);
+    }
+
+    /**
+     * Lấy thống kê file nội dung từ snapshot
+     */
+    public Map<String, Object> getContentFileStatistics() {
+        return contentFileStatistics.get(ttlMillis, this::loadContentFileStatistics);
+    }
+
+    /**
+     * Đánh dấu snapshot đã cũ sau khi dữ liệu sách thay đổi
+     * Nếu đang trong transaction, việc đánh dấu được dời tới sau commit để snapshot tính lại không đọc dữ liệu chưa commit
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow();
+                }
+            });
+        } else {
+            invalidateNow();
+        }
+    }
+
+    private void invalidateNow() {
+        bookStatistics.invalidate();
+        contentFileStatistics.invalidate();
+    }
+
+    // === HELPER METHODS ===
+
+    private BookStatistics loadBookStatistics() {
+        log.info("Computing book statistics snapshot");
+        return jdbcTemplate.queryForObject(BOOK_STATISTICS_SQL, (rs, rowNum) -> {
+            double averageRating = rs.getDouble("average_rating");
+            return BookStatistics.builder()
+                .totalBooks(rs.getLong("total_books"))
+                .activeBooks(rs.getLong("active_books"))
+                .featuredBooks(rs.getLong("featured_books"))
+                .averageRating(rs.wasNull() ? 0.0 : averageRating)
+                .build();
+        });
+    }
+
+    private Map<String, Object> loadContentFileStatistics() {
+        log.info("Computing content file statistics snapshot");
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        List<Object[]> fileTypes = new ArrayList<>();
+        List<Object[]> uploaders = new ArrayList<>();
+
+        jdbcTemplate.query(CONTENT_FILE_STATISTICS_SQL, rs -> {
+            boolean byType = rs.getInt("by_type") == 0;
+            boolean byUploader = rs.getInt("by_uploader") == 0;
+
+            if (byType) {
+                String fileType = rs.getString("content_file_type");
+                if (fileType != null) {
+                    fileTypes.add(new Object[]{fileType, rs.getLong("book_count")});
+                }
+            } else if (byUploader) {
+                String uploader = rs.getString("content_uploaded_by");
+                if (uploader != null) {
+                    uploaders.add(new Object[]{uploader, rs.getLong("book_count")});
+                }
+            } else {
+                long totalSize = rs.getLong("total_size");
+                double averageSize = rs.getDouble("average_size");
+                statistics.put("totalFiles", rs.getLong("total_files"));
+                statistics.put("totalSize", totalSize);
+                statistics.put("averageSize", averageSize);
+            }
+        });
+
+        statistics.put("fileTypes", Collections.unmodifiableList(fileTypes));
+        statistics.put("uploaders", Collections.unmodifiableList(uploaders));
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    // === INNER CLASSES ===
+
+    /**
+     * Giữ một snapshot cùng thời điểm tính; chỉ một luồng tính lại khi snapshot hết hạn,
+     * các luồng khác chờ và dùng luôn kết quả vừa tính
+     */
+    private static class CachedSnapshot<T> {
+
+        private volatile T value;
+        private volatile long loadedAt;
+        private final AtomicLong generation = new AtomicLong();
+
+        T get(long ttlMillis, Supplier<T> loader) {
+            T current = value;
+            if (current != null && System.currentTimeMillis() - loadedAt < ttlMillis) {
+                return current;
+            }
+            synchronized (this) {
+                if (value != null && System.currentTimeMillis() - loadedAt < ttlMillis) {
+                    return value;
+                }
+                long generationAtLoad = generation.get();
+                T loaded = loader.get();
+                // Nếu snapshot bị đánh dấu cũ trong lúc đang tính thì không giữ lại kết quả
+                if (generationAtLoad == generation.get()) {
+                    value = loaded;
+                    loadedAt = System.currentTimeMillis();
+                }
+                return loaded;
+            }
+        }
+
+        void invalidate() {
+            generation.incrementAndGet();
+            value = null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.meowcdd.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service đếm lượt xem sách theo cơ chế write-behind
+ * Lượt xem được cộng dồn trong bộ nhớ (LongAdder theo từng sách) và ghi xuống database
+ * định kỳ bằng một batch UPDATE cộng dồn, thay vì mỗi lượt xem là một lần cập nhật cả entity
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BookViewCounterService {
+    
+    // updated_at cũng được cập nhật vì totalViews nằm trong representation của sách/danh mục:
+    // weak ETag và Last-Modified dựa trên updated_at, không đổi thì client nhận 304 với totalViews cũ
+    private static final String INCREMENT_VIEWS_SQL =
+        "UPDATE books SET total_views = COALESCE(total_views, 0) + ?, updated_at = ? WHERE id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final Map<Long, LongAdder> pendingViews = new ConcurrentHashMap<>();
+    
+    // Transaction lập trình thay cho @Transactional: flushOnShutdown gọi trực tiếp (không qua proxy)
+    // và phần cộng trả lại phải bao cả lỗi lúc commit chứ không chỉ lỗi khi chạy UPDATE
+    private TransactionTemplate writeTransaction;
+    
+    @PostConstruct
+    public void init() {
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Ghi nhận một lượt xem (chỉ cập nhật bộ nhớ)
+     */
+    public void recordView(Long bookId) {
+        pendingViews.computeIfAbsent(bookId, id -> new LongAdder()).increment();
+    }
+    
+    /**
+     * Số lượt xem đã ghi nhận nhưng chưa được ghi xuống database
+     */
+    public long getPendingViews(Long bookId) {
+        LongAdder adder = pendingViews.get(bookId);
+        return adder != null ? adder.sum() : 0L;
+    }
+    
+    /**
+     * Ghi các lượt xem đang chờ xuống database trong một batch
+     * Mỗi bộ đếm được trừ đi đúng phần đã ghi nên lượt xem phát sinh trong lúc flush không bị mất;
+     * nếu ghi hoặc commit thất bại, phần đã trừ được cộng trả lại để lần flush sau ghi tiếp.
+     */
+    @Scheduled(fixedDelayString = "${book.views.flush-interval-ms:5000}")
+    public void flushPendingViews() {
+        List<Long> bookIds = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        List<Object[]> batchArgs = new ArrayList<>();
+        // Cùng nguồn thời gian với BaseEntity (LocalDateTime.now() phía ứng dụng)
+        Timestamp flushedAt = Timestamp.valueOf(LocalDateTime.now());
+        
+        pendingViews.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> {
+                long delta = entry.getValue().sum();
+                if (delta > 0) {
+                    entry.getValue().add(-delta);
+                    bookIds.add(entry.getKey());
+                    deltas.add(delta);
+                    batchArgs.add(new Object[]{delta, flushedAt, entry.getKey()});
+                }
+            });
+        
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+        
+        try {
+            writeTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INCREMENT_VIEWS_SQL, batchArgs));
+            log.debug("Flushed view counts for {} books", batchArgs.size());
+        } catch (RuntimeException e) {
+            log.error("Failed to flush view counts for {} books, will retry: {}", batchArgs.size(), e.getMessage());
+            for (int i = 0; i < bookIds.size(); i++) {
+                pendingViews.computeIfAbsent(bookIds.get(i), id -> new LongAdder()).add(deltas.get(i));
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Ghi nốt các lượt xem còn lại khi ứng dụng dừng
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending book views before shutdown");
+        try {
+            flushPendingViews();
+        } catch (RuntimeException e) {
+            log.error("Could not flush pending book views on shutdown: {}", e.getMessage());
+        }
+    }
+}
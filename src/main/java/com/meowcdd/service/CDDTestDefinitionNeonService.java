@@ -0,0 +1,453 @@
+package com.meowcdd.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meowcdd.entity.neon.CDDTestNeon;
+import com.meowcdd.repository.neon.CDDTestNeonRepository;
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache định nghĩa bài test CDD đã parse sẵn, theo khóa (id, version)
+ * Các cột JSON (tên, câu hỏi, tiêu chí chấm điểm...) được parse một lần thành cấu trúc bất biến;
+ * response JSON theo từng ngôn ngữ được serialize một lần và dùng lại cho mọi phiên đánh giá.
+ * Định nghĩa bị loại khỏi cache sau khi bài test được cập nhật hoặc xóa (sau commit).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CDDTestDefinitionNeonService {
+
+    private static final String DEFAULT_LANGUAGE = "vi";
+    private static final String FALLBACK_LANGUAGE = "en";
+
+    private final CDDTestNeonRepository cddTestNeonRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<DefinitionKey, CachedDefinition> definitions = new ConcurrentHashMap<>();
+    private final Map<Long, DefinitionKey> currentKeys = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Lấy định nghĩa hiện tại của bài test
+     */
+    public Optional<CDDTestDefinition> getDefinition(Long testId) {
+        return getCachedDefinition(testId).map(CachedDefinition::getDefinition);
+    }
+
+    /**
+     * Lấy định nghĩa theo đúng phiên bản; trả về rỗng nếu bài test không còn ở phiên bản này
+     */
+    public Optional<CDDTestDefinition> getDefinition(Long testId, String version) {
+        CachedDefinition cached = definitions.get(new DefinitionKey(testId, version));
+        if (cached != null) {
+            return Optional.of(cached.getDefinition());
+        }
+        return getDefinition(testId)
+            .filter(definition -> Objects.equals(definition.getVersion(), version));
+    }
+
+    /**
+     * Lấy response JSON của định nghĩa theo ngôn ngữ (đã serialize sẵn)
+     * Ngôn ngữ không có trong bài test sẽ dùng ngôn ngữ mặc định
+     */
+    public Optional<LocalizedDefinition> getLocalizedDefinition(Long testId, String language) {
+        return getCachedDefinition(testId).map(cached -> {
+            String resolvedLanguage = cached.getDefinition().resolveLanguage(language);
+            byte[] body = cached.getResponses().computeIfAbsent(resolvedLanguage,
+                lang -> serialize(cached.getDefinition(), lang));
+            return new LocalizedDefinition(resolvedLanguage, body);
+        });
+    }
+
+    /**
+     * Loại định nghĩa của bài test khỏi cache
+     * Nếu đang trong transaction, việc loại được dời tới sau commit để lần tải lại không đọc dữ liệu cũ
+     */
+    public void invalidate(Long testId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateNow(testId);
+                }
+            });
+        } else {
+            invalidateNow(testId);
+        }
+    }
+
+    private void invalidateNow(Long testId) {
+        generation.incrementAndGet();
+        currentKeys.remove(testId);
+        definitions.keySet().removeIf(key -> key.getTestId().equals(testId));
+    }
+
+    // === HELPER METHODS ===
+
+    private Optional<CachedDefinition> getCachedDefinition(Long testId) {
+        DefinitionKey key = currentKeys.get(testId);
+        if (key != null) {
+            CachedDefinition cached = definitions.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+        }
+        return load(testId);
+    }
+
+    private Optional<CachedDefinition> load(Long testId) {
+        long generationAtLoad = generation.get();
+        Optional<CDDTestNeon> test = cddTestNeonRepository.findById(testId);
+        if (test.isEmpty()) {
+            return Optional.empty();
+        }
+
+        CachedDefinition cached = new CachedDefinition(parse(test.get()), new ConcurrentHashMap<>());
+        // Nếu bài test bị cập nhật trong lúc đang tải thì không giữ lại kết quả
+        if (generationAtLoad == generation.get()) {
+            DefinitionKey key = new DefinitionKey(testId, cached.getDefinition().getVersion());
+            definitions.put(key, cached);
+            DefinitionKey previousKey = currentKeys.put(testId, key);
+            if (previousKey != null && !previousKey.equals(key)) {
+                definitions.remove(previousKey);
+            }
+            log.debug("Cached definition of CDD test {} version {}", testId, key.getVersion());
+        }
+        return Optional.of(cached);
+    }
+
+    private CDDTestDefinition parse(CDDTestNeon test) {
+        Long testId = test.getId();
+        Map<String, String> names = parseTexts(readJson(testId, "namesJson", test.getNamesJson()));
+        List<Question> questions = parseQuestions(readJson(testId, "questionsJson", test.getQuestionsJson()));
+
+        Set<String> languages = new TreeSet<>(names.keySet());
+        questions.forEach(question -> languages.addAll(question.getTexts().keySet()));
+
+        return CDDTestDefinition.builder()
+            .id(testId)
+            .assessmentCode(test.getAssessmentCode())
+            .version(test.getVersion())
+            .category(test.getCategory())
+            .status(test.getStatus())
+            .administrationType(test.getAdministrationType())
+            .requiredQualifications(test.getRequiredQualifications())
+            .minAgeMonths(test.getMinAgeMonths())
+            .maxAgeMonths(test.getMaxAgeMonths())
+            .estimatedDuration(test.getEstimatedDuration())
+            .names(names)
+            .descriptions(parseTexts(readJson(testId, "descriptionsJson", test.getDescriptionsJson())))
+            .instructions(parseTexts(readJson(testId, "instructionsJson", test.getInstructionsJson())))
+            .notes(parseTexts(readJson(testId, "notesJson", test.getNotesJson())))
+            .requiredMaterials(parseStrings(readJson(testId, "requiredMaterialsJson", test.getRequiredMaterialsJson())))
+            .questions(questions)
+            .scoringCriteria(parseScoringCriteria(readJson(testId, "scoringCriteriaJson", test.getScoringCriteriaJson())))
+            .languages(Collections.unmodifiableSet(languages))
+            .build();
+    }
+
+    private JsonNode readJson(Long testId, String field, String json) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid " + field + " in CDD test " + testId, e);
+        }
+    }
+
+    private List<Question> parseQuestions(JsonNode node) {
+        // Chấp nhận cả mảng câu hỏi lẫn object dạng {"questions": [...]}
+        if (node != null && node.isObject() && node.has("questions")) {
+            node = node.get("questions");
+        }
+        if (node == null || !node.isArray()) {
+            return List.of();
+        }
+
+        List<Question> questions = new ArrayList<>(node.size());
+        for (JsonNode item : node) {
+            questions.add(Question.builder()
+                .questionId(text(item, "questionId"))
+                .questionNumber(integer(item, "questionNumber"))
+                .texts(parseTexts(item.get("questionTexts")))
+                .category(text(item, "category"))
+                .weight(item.hasNonNull("weight") ? item.get("weight").asInt() : 1)
+                .required(!item.hasNonNull("required") || item.get("required").asBoolean())
+                .hints(parseTexts(item.get("hints")))
+                .explanations(parseTexts(item.get("explanations")))
+                .build());
+        }
+        questions.sort(Comparator.comparing(Question::getQuestionNumber, Comparator.nullsLast(Comparator.naturalOrder())));
+        return List.copyOf(questions);
+    }
+
+    private ScoringCriteria parseScoringCriteria(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            return null;
+        }
+
+        List<ScoreRange> scoreRanges = new ArrayList<>();
+        JsonNode ranges = node.get("scoreRanges");
+        if (ranges != null && ranges.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = ranges.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                scoreRanges.add(parseScoreRange(field.getKey(), field.getValue()));
+            }
+        } else if (ranges != null && ranges.isArray()) {
+            for (JsonNode range : ranges) {
+                scoreRanges.add(parseScoreRange(text(range, "level"), range));
+            }
+        }
+        scoreRanges.sort(Comparator.comparing(ScoreRange::getMinScore, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        return ScoringCriteria.builder()
+            .totalQuestions(integer(node, "totalQuestions"))
+            .yesScore(node.hasNonNull("yesScore") ? node.get("yesScore").asInt() : 1)
+            .noScore(node.hasNonNull("noScore") ? node.get("noScore").asInt() : 0)
+            .scoreRanges(List.copyOf(scoreRanges))
+            .interpretation(text(node, "interpretation"))
+            .build();
+    }
+
+    private ScoreRange parseScoreRange(String key, JsonNode node) {
+        return ScoreRange.builder()
+            .key(key)
+            .minScore(integer(node, "minScore"))
+            .maxScore(integer(node, "maxScore"))
+            .level(text(node, "level"))
+            .descriptions(parseTexts(node.get("descriptions")))
+            .recommendation(text(node, "recommendation"))
+            .build();
+    }
+
+    // Văn bản đa ngôn ngữ dạng {"vi": "...", "en": "..."}; chuỗi đơn được coi là ngôn ngữ mặc định
+    private Map<String, String> parseTexts(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return Map.of();
+        }
+        if (node.isTextual()) {
+            return Map.of(DEFAULT_LANGUAGE, node.asText());
+        }
+        Map<String, String> texts = new LinkedHashMap<>();
+        node.fields().forEachRemaining(field -> {
+            if (!field.getValue().isNull()) {
+                texts.put(field.getKey(), field.getValue().asText());
+            }
+        });
+        return Collections.unmodifiableMap(texts);
+    }
+
+    private List<String> parseStrings(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>();
+        if (node.isArray() || node.isObject()) {
+            node.forEach(item -> values.add(item.asText()));
+        } else {
+            values.add(node.asText());
+        }
+        return List.copyOf(values);
+    }
+
+    private static String text(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asText() : null;
+    }
+
+    private static Integer integer(JsonNode node, String field) {
+        return node.hasNonNull(field) ? node.get(field).asInt() : null;
+    }
+
+    private byte[] serialize(CDDTestDefinition definition, String language) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", definition.getId());
+        response.put("assessmentCode", definition.getAssessmentCode());
+        response.put("version", definition.getVersion());
+        response.put("language", language);
+        response.put("category", definition.getCategory());
+        response.put("status", definition.getStatus());
+        response.put("administrationType", definition.getAdministrationType());
+        response.put("requiredQualifications", definition.getRequiredQualifications());
+        response.put("minAgeMonths", definition.getMinAgeMonths());
+        response.put("maxAgeMonths", definition.getMaxAgeMonths());
+        response.put("estimatedDuration", definition.getEstimatedDuration());
+        response.put("name", localize(definition.getNames(), language));
+        response.put("description", localize(definition.getDescriptions(), language));
+        response.put("instructions", localize(definition.getInstructions(), language));
+        response.put("notes", localize(definition.getNotes(), language));
+        response.put("requiredMaterials", definition.getRequiredMaterials());
+
+        List<Map<String, Object>> questions = new ArrayList<>(definition.getQuestions().size());
+        for (Question question : definition.getQuestions()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("questionId", question.getQuestionId());
+            item.put("questionNumber", question.getQuestionNumber());
+            item.put("category", question.getCategory());
+            item.put("weight", question.getWeight());
+            item.put("required", question.isRequired());
+            item.put("text", localize(question.getTexts(), language));
+            item.put("hint", localize(question.getHints(), language));
+            item.put("explanation", localize(question.getExplanations(), language));
+            questions.add(item);
+        }
+        response.put("questions", questions);
+
+        ScoringCriteria criteria = definition.getScoringCriteria();
+        if (criteria != null) {
+            Map<String, Object> scoring = new LinkedHashMap<>();
+            scoring.put("totalQuestions", criteria.getTotalQuestions());
+            scoring.put("yesScore", criteria.getYesScore());
+            scoring.put("noScore", criteria.getNoScore());
+            List<Map<String, Object>> ranges = new ArrayList<>(criteria.getScoreRanges().size());
+            for (ScoreRange range : criteria.getScoreRanges()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("key", range.getKey());
+                item.put("minScore", range.getMinScore());
+                item.put("maxScore", range.getMaxScore());
+                item.put("level", range.getLevel());
+                item.put("description", localize(range.getDescriptions(), language));
+                item.put("recommendation", range.getRecommendation());
+                ranges.add(item);
+            }
+            scoring.put("scoreRanges", ranges);
+            scoring.put("interpretation", criteria.getInterpretation());
+            response.put("scoringCriteria", scoring);
+        } else {
+            response.put("scoringCriteria", null);
+        }
+
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize CDD test definition " + definition.getId(), e);
+        }
+    }
+
+    private static String localize(Map<String, String> texts, String language) {
+        if (texts.isEmpty()) {
+            return null;
+        }
+        String text = texts.get(language);
+        if (text == null) {
+            text = texts.get(DEFAULT_LANGUAGE);
+        }
+        if (text == null) {
+            text = texts.get(FALLBACK_LANGUAGE);
+        }
+        return text != null ? text : texts.values().iterator().next();
+    }
+
+    // === INNER CLASSES ===
+
+    @Value
+    private static class DefinitionKey {
+        Long testId;
+        String version;
+    }
+
+    @Value
+    private static class CachedDefinition {
+        CDDTestDefinition definition;
+        Map<String, byte[]> responses; // Response JSON đã serialize theo ngôn ngữ
+    }
+
+    @Value
+    public static class LocalizedDefinition {
+        String language;
+        byte[] body;
+    }
+
+    /**
+     * Định nghĩa bài test đã parse, bất biến và dùng chung giữa các luồng
+     */
+    @Value
+    @Builder
+    public static class CDDTestDefinition {
+        Long id;
+        String assessmentCode;
+        String version;
+        String category;
+        CDDTestNeon.Status status;
+        CDDTestNeon.AdministrationType administrationType;
+        CDDTestNeon.RequiredQualifications requiredQualifications;
+        Integer minAgeMonths;
+        Integer maxAgeMonths;
+        Integer estimatedDuration;
+        Map<String, String> names;
+        Map<String, String> descriptions;
+        Map<String, String> instructions;
+        Map<String, String> notes;
+        List<String> requiredMaterials;
+        List<Question> questions; // Sắp theo questionNumber
+        ScoringCriteria scoringCriteria;
+        Set<String> languages; // Các ngôn ngữ có trong tên và nội dung câu hỏi
+
+        public String resolveLanguage(String requested) {
+            if (requested != null && languages.contains(requested)) {
+                return requested;
+            }
+            if (languages.isEmpty() || languages.contains(DEFAULT_LANGUAGE)) {
+                return DEFAULT_LANGUAGE;
+            }
+            return languages.iterator().next();
+        }
+    }
+
+    @Value
+    @Builder
+    public static class Question {
+        String questionId;
+        Integer questionNumber;
+        Map<String, String> texts;
+        String category;
+        int weight;
+        boolean required;
+        Map<String, String> hints;
+        Map<String, String> explanations;
+    }
+
+    @Value
+    @Builder
+    public static class ScoringCriteria {
+        Integer totalQuestions;
+        int yesScore;
+        int noScore;
+        List<ScoreRange> scoreRanges; // Sắp theo minScore
+        String interpretation;
+    }
+
+    @Value
+    @Builder
+    public static class ScoreRange {
+        String key;
+        Integer minScore;
+        Integer maxScore;
+        String level;
+        Map<String, String> descriptions;
+        String recommendation;
+    }
+}
@@ -2,16 +2,18 @@ package com.meowcdd.service;
 
 import com.meowcdd.entity.neon.CDDTestNeon;
 import com.meowcdd.repository.neon.CDDTestNeonRepository;
+import com.meowcdd.repository.neon.CDDTestNeonRepository.CDDTestSummary;
+import com.meowcdd.repository.neon.ChildTestRecordNeonRepository;
+import com.meowcdd.service.CDDTestDefinitionNeonService.LocalizedDefinition;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -21,46 +23,21 @@ import java.util.Optional;
 public class CDDTestNeonService {
 
     private final CDDTestNeonRepository cddTestNeonRepository;
+    private final ChildTestRecordNeonRepository childTestRecordNeonRepository;
+    private final CDDTestDefinitionNeonService cddTestDefinitionService;
+    private final ChildTestRescoringNeonService childTestRescoringService;
 
     public List<CDDTestNeon> getAllCDDTests() {
         log.info("Getting all CDD tests");
         return cddTestNeonRepository.findAll();
     }
 
-    public Page<CDDTestNeon> getAllCDDTestsWithPagination(Pageable pageable) {
+    /**
+     * Danh sách phân trang chỉ gồm thông tin tóm tắt; nội dung đầy đủ của từng test lấy qua getCDDTestById
+     */
+    public Page<CDDTestSummary> getAllCDDTestsWithPagination(Pageable pageable) {
         log.info("Getting all CDD tests with pagination");
-        Page<CDDTestNeon> result = cddTestNeonRepository.findAll(pageable);
-        
-        // Force load full data for each entity to ensure TEXT fields are loaded
-        List<CDDTestNeon> loadedTests = new ArrayList<>();
-        for (CDDTestNeon test : result.getContent()) {
-            // Force reload the entity to ensure all fields are loaded
-            Optional<CDDTestNeon> fullTest = cddTestNeonRepository.findById(test.getId());
-            if (fullTest.isPresent()) {
-                loadedTests.add(fullTest.get());
-            }
-        }
-        
-        // Create a new Page with the fully loaded entities
-        Page<CDDTestNeon> fullyLoadedResult = new PageImpl<>(loadedTests, pageable, result.getTotalElements());
-        
-        // Log detailed information about each entity
-        log.info("=== SERVICE LAYER DEBUG ===");
-        log.info("Total elements: {}", fullyLoadedResult.getTotalElements());
-        log.info("Total pages: {}", fullyLoadedResult.getTotalPages());
-        log.info("Current page: {}", fullyLoadedResult.getNumber());
-        log.info("Page size: {}", fullyLoadedResult.getSize());
-        
-        for (CDDTestNeon test : fullyLoadedResult.getContent()) {
-            log.info("--- Service Test ID: {} ---", test.getId());
-            log.info("Assessment Code: {}", test.getAssessmentCode());
-            log.info("Questions JSON length: {}", test.getQuestionsJson() != null ? test.getQuestionsJson().length() : 0);
-            log.info("Questions JSON preview: {}", test.getQuestionsJson() != null ? test.getQuestionsJson().substring(0, Math.min(200, test.getQuestionsJson().length())) + "..." : "null");
-            log.info("--- End Service Test ID: {} ---", test.getId());
-        }
-        log.info("=== END SERVICE LAYER DEBUG ===");
-        
-        return fullyLoadedResult;
+        return cddTestNeonRepository.findAllSummaries(pageable);
     }
 
     public Optional<CDDTestNeon> getCDDTestById(Long id) {
@@ -68,6 +45,14 @@ public class CDDTestNeonService {
         return cddTestNeonRepository.findById(id);
     }
 
+    /**
+     * Định nghĩa bài test theo ngôn ngữ, lấy từ cache định nghĩa đã parse (xem CDDTestDefinitionNeonService)
+     */
+    public Optional<LocalizedDefinition> getLocalizedDefinition(Long id, String language) {
+        log.info("Getting CDD test definition for ID: {} (language: {})", id, language);
+        return cddTestDefinitionService.getLocalizedDefinition(id, language);
+    }
+
     public Optional<CDDTestNeon> getCDDTestByAssessmentCode(String assessmentCode) {
         log.info("Getting CDD test by assessment code: {}", assessmentCode);
         return cddTestNeonRepository.findByAssessmentCode(assessmentCode);
@@ -88,14 +73,14 @@ public class CDDTestNeonService {
         return cddTestNeonRepository.findTestsForAge(ageMonths);
     }
 
-    public Page<CDDTestNeon> getCDDTestsForAgeAndStatusWithPagination(Integer ageMonths, CDDTestNeon.Status status, Pageable pageable) {
+    public Page<CDDTestSummary> getCDDTestsForAgeAndStatusWithPagination(Integer ageMonths, CDDTestNeon.Status status, Pageable pageable) {
         log.info("Getting CDD tests for age: {} months, status: {} with pagination", ageMonths, status);
-        return cddTestNeonRepository.findTestsForAgeAndStatusWithPagination(ageMonths, status, pageable);
+        return cddTestNeonRepository.findSummariesForAgeAndStatus(ageMonths, status, pageable);
     }
 
-    public Page<CDDTestNeon> getCDDTestsForAgeCategoryAndStatusWithPagination(Integer ageMonths, String category, CDDTestNeon.Status status, Pageable pageable) {
+    public Page<CDDTestSummary> getCDDTestsForAgeCategoryAndStatusWithPagination(Integer ageMonths, String category, CDDTestNeon.Status status, Pageable pageable) {
         log.info("Getting CDD tests for age: {} months, category: {}, status: {} with pagination", ageMonths, category, status);
-        return cddTestNeonRepository.findTestsForAgeCategoryAndStatusWithPagination(ageMonths, category, status, pageable);
+        return cddTestNeonRepository.findSummariesForAgeCategoryAndStatus(ageMonths, category, status, pageable);
     }
 
     public List<CDDTestNeon> getCDDTestsByStatusAndCategory(CDDTestNeon.Status status, String category) {
@@ -118,24 +103,24 @@ public class CDDTestNeonService {
         return cddTestNeonRepository.findByMaxDuration(maxDuration);
     }
 
-    public Page<CDDTestNeon> getCDDTestsByStatusWithPagination(CDDTestNeon.Status status, Pageable pageable) {
+    public Page<CDDTestSummary> getCDDTestsByStatusWithPagination(CDDTestNeon.Status status, Pageable pageable) {
         log.info("Getting CDD tests by status: {} with pagination", status);
-        return cddTestNeonRepository.findByStatusWithPagination(status, pageable);
+        return cddTestNeonRepository.findSummariesByStatus(status, pageable);
     }
 
-    public Page<CDDTestNeon> getCDDTestsByCategoryWithPagination(String category, Pageable pageable) {
+    public Page<CDDTestSummary> getCDDTestsByCategoryWithPagination(String category, Pageable pageable) {
         log.info("Getting CDD tests by category: {} with pagination", category);
-        return cddTestNeonRepository.findByCategoryWithPagination(category, pageable);
+        return cddTestNeonRepository.findSummariesByCategory(category, pageable);
     }
 
-    public Page<CDDTestNeon> getCDDTestsByCategoryAndStatusWithPagination(String category, CDDTestNeon.Status status, Pageable pageable) {
+    public Page<CDDTestSummary> getCDDTestsByCategoryAndStatusWithPagination(String category, CDDTestNeon.Status status, Pageable pageable) {
         log.info("Getting CDD tests by category: {} and status: {} with pagination", category, status);
-        return cddTestNeonRepository.findByCategoryAndStatusWithPagination(category, status, pageable);
+        return cddTestNeonRepository.findSummariesByCategoryAndStatus(category, status, pageable);
     }
 
-    public Page<CDDTestNeon> searchCDDTests(String keyword, Pageable pageable) {
+    public Page<CDDTestSummary> searchCDDTests(String keyword, Pageable pageable) {
         log.info("Searching CDD tests with keyword: {}", keyword);
-        return cddTestNeonRepository.searchByKeyword(keyword, pageable);
+        return cddTestNeonRepository.searchSummariesByKeyword(keyword, pageable);
     }
 
     public CDDTestNeon createCDDTest(CDDTestNeon cddTest) {
@@ -150,6 +135,10 @@ public class CDDTestNeonService {
         log.info("Updating CDD test with ID: {}", id);
         return cddTestNeonRepository.findById(id)
                 .map(existingTest -> {
+                    // Câu hỏi (trọng số), tiêu chí chấm điểm hoặc phiên bản đổi thì kết quả các bản ghi cũ cần chấm lại
+                    boolean scoringChanged = !Objects.equals(existingTest.getScoringCriteriaJson(), cddTest.getScoringCriteriaJson())
+                            || !Objects.equals(existingTest.getQuestionsJson(), cddTest.getQuestionsJson())
+                            || !Objects.equals(existingTest.getVersion(), cddTest.getVersion());
                     existingTest.setAssessmentCode(cddTest.getAssessmentCode());
                     existingTest.setCategory(cddTest.getCategory());
                     existingTest.setVersion(cddTest.getVersion());
@@ -166,14 +155,24 @@ public class CDDTestNeonService {
                     existingTest.setScoringCriteriaJson(cddTest.getScoringCriteriaJson());
                     existingTest.setRequiredMaterialsJson(cddTest.getRequiredMaterialsJson());
                     existingTest.setNotesJson(cddTest.getNotesJson());
-                    return cddTestNeonRepository.save(existingTest);
+                    CDDTestNeon savedTest = cddTestNeonRepository.save(existingTest);
+                    cddTestDefinitionService.invalidate(id);
+                    if (scoringChanged && savedTest.getScoringCriteriaJson() != null) {
+                        childTestRescoringService.scheduleRescoring(id);
+                    }
+                    return savedTest;
                 });
     }
 
     public boolean deleteCDDTest(Long id) {
         log.info("Deleting CDD test with ID: {}", id);
         if (cddTestNeonRepository.existsById(id)) {
+            // child_test_records.cdd_test_id là khóa ngoại tới cdd_tests: không xóa bài test đã có kết quả
+            if (childTestRecordNeonRepository.existsByCddTestId(id)) {
+                throw new IllegalStateException("CDD test " + id + " has child test records and cannot be deleted");
+            }
             cddTestNeonRepository.deleteById(id);
+            cddTestDefinitionService.invalidate(id);
             return true;
         }
         return false;
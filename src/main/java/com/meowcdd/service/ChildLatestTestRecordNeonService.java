@@ -0,0 +1,70 @@
+package com.meowcdd.service;
+
+import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import com.meowcdd.repository.neon.ChildLatestTestRecordNeonRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Duy trì bảng chiếu child_latest_test_record (bản ghi mới nhất của mỗi trẻ cho từng bài test).
+ * Mọi hàm ghi phải chạy trong transaction đang ghi child_test_records và sau khi bản ghi đã được flush,
+ * để bảng chiếu luôn commit hoặc rollback cùng dữ liệu gốc.
+ * Chấm điểm lại chỉ đổi các cột điểm nên không ảnh hưởng bảng chiếu (bảng chỉ giữ record_id).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(propagation = Propagation.MANDATORY)
+public class ChildLatestTestRecordNeonService {
+
+    private final ChildLatestTestRecordNeonRepository latestRepository;
+
+    public void onRecordsInserted(Collection<Long> recordIds) {
+        if (recordIds.isEmpty()) {
+            return;
+        }
+        latestRepository.upsertIfLatest(recordIds);
+    }
+
+    /**
+     * Gọi sau khi cập nhật bản ghi; previous* là giá trị trước khi sửa
+     */
+    public void onRecordUpdated(ChildTestRecordNeon record, Long previousChildId, String previousTestId,
+                                LocalDateTime previousTestDate) {
+        boolean sameKey = Objects.equals(previousChildId, record.getChildId())
+                && Objects.equals(previousTestId, record.getTestId());
+        if (!sameKey) {
+            // Bản ghi rời khỏi cặp cũ: cặp cũ có thể cần bản ghi mới nhất khác hoặc không còn bản ghi nào
+            recompute(previousChildId, previousTestId);
+        } else if (previousTestDate != null && record.getTestDate().isBefore(previousTestDate)) {
+            // Lùi ngày có thể khiến một bản ghi khác trở thành mới nhất
+            recompute(record.getChildId(), record.getTestId());
+            return;
+        }
+        latestRepository.upsertIfLatest(List.of(record.getId()));
+    }
+
+    public void onRecordDeleted(Long childId, String testId) {
+        recompute(childId, testId);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRED)
+    public List<Object[]> findLatestRowsByChildId(Long childId) {
+        return latestRepository.findLatestRowsByChildId(childId);
+    }
+
+    private void recompute(Long childId, String testId) {
+        log.debug("Recomputing latest test record for child {} and test {}", childId, testId);
+        if (latestRepository.recompute(childId, testId) == 0) {
+            latestRepository.deleteIfNoRecords(childId, testId);
+        }
+    }
+}
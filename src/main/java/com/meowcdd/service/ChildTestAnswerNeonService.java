@@ -0,0 +1,133 @@
+package com.meowcdd.service;
+
+import com.meowcdd.entity.neon.ChildTestAnswer;
+import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import com.meowcdd.repository.neon.ChildTestAnswerNeonRepository;
+import com.meowcdd.repository.neon.ChildTestAnswerNeonRepository.QuestionAnswerStats;
+import com.meowcdd.service.ChildTestScoringNeonService.QuestionAnswer;
+import com.meowcdd.service.ChildTestScoringNeonService.ScoringResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lưu câu trả lời đã chuẩn hóa theo từng câu hỏi (bảng child_test_answers).
+ * Câu trả lời lấy từ kết quả chấm điểm của bài test (ChildTestScoringNeonService.applyScore) nên khóa câu hỏi
+ * luôn theo định nghĩa hiện tại; chỉ bản ghi bài test CDD có tiêu chí chấm điểm mới có câu trả lời chuẩn hóa.
+ * Các hàm ghi chạy trong transaction đang ghi child_test_records, sau khi bản ghi đã được flush.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChildTestAnswerNeonService {
+
+    // Xóa các câu trả lời không còn trong tập dòng mới (câu hỏi bị bỏ khỏi định nghĩa, bản ghi không còn chấm được)
+    private static final String DELETE_STALE_ANSWERS_SQL =
+        "DELETE FROM child_test_answers a WHERE a.record_id = ANY(?) AND (a.record_id, a.question_id) NOT IN " +
+        "(SELECT k.record_id, k.question_id FROM unnest(?, ?) AS k(record_id, question_id))";
+
+    // Dòng không đổi không bị ghi lại (không tạo dead tuple); chỉ dòng mới hoặc khác giá trị mới được ghi
+    private static final String INSERT_ANSWER_SQL =
+        "INSERT INTO child_test_answers (record_id, question_id, test_id, question_number, answer, score) " +
+        "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT (record_id, question_id) DO UPDATE SET " +
+        "test_id = EXCLUDED.test_id, question_number = EXCLUDED.question_number, answer = EXCLUDED.answer, " +
+        "score = EXCLUDED.score WHERE (child_test_answers.test_id, child_test_answers.question_number, " +
+        "child_test_answers.answer, child_test_answers.score) IS DISTINCT FROM " +
+        "(EXCLUDED.test_id, EXCLUDED.question_number, EXCLUDED.answer, EXCLUDED.score)";
+
+    private static final int[] INSERT_ARG_TYPES =
+        {Types.BIGINT, Types.VARCHAR, Types.BIGINT, Types.INTEGER, Types.BOOLEAN, Types.DOUBLE};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChildTestAnswerNeonRepository answerRepository;
+
+    /**
+     * Ghi lại câu trả lời của các bản ghi vừa tạo hoặc vừa sửa từ kết quả applyScore tương ứng
+     * (results.get(i) của records.get(i); null nếu bản ghi không được chấm điểm và không còn câu trả lời chuẩn hóa)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replaceAnswers(List<ChildTestRecordNeon> records, List<ScoringResult> results) {
+        List<Long> recordIds = new ArrayList<>(records.size());
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            ChildTestRecordNeon record = records.get(i);
+            ScoringResult result = results.get(i);
+            recordIds.add(record.getId());
+            if (result != null && result.getAnswers() != null) {
+                addRows(rows, record.getId(), record.getCddTestId(), result.getAnswers());
+            }
+        }
+        writeAnswers(recordIds, rows);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replaceAnswers(ChildTestRecordNeon record, ScoringResult result) {
+        replaceAnswers(List.of(record), Collections.singletonList(result));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteAnswers(Long recordId) {
+        writeAnswers(List.of(recordId), List.of());
+    }
+
+    /**
+     * Đồng bộ câu trả lời của các bản ghi với các dòng đã tạo bằng addRows (dùng chung với job chấm điểm lại):
+     * xóa câu không còn, thêm câu mới, chỉ cập nhật câu có giá trị khác
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void writeAnswers(List<Long> recordIds, List<Object[]> rows) {
+        if (recordIds.isEmpty()) {
+            return;
+        }
+        Object[] keptRecordIds = new Object[rows.size()];
+        Object[] keptQuestionIds = new Object[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            keptRecordIds[i] = rows.get(i)[0];
+            keptQuestionIds[i] = rows.get(i)[1];
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(DELETE_STALE_ANSWERS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", recordIds.toArray()));
+            statement.setArray(2, connection.createArrayOf("bigint", keptRecordIds));
+            statement.setArray(3, connection.createArrayOf("varchar", keptQuestionIds));
+            return statement;
+        });
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ANSWER_SQL, rows, INSERT_ARG_TYPES);
+        }
+    }
+
+    /**
+     * Thêm các dòng child_test_answers của một bản ghi; câu hỏi trùng khóa chỉ giữ câu trả lời sau cùng
+     */
+    public static void addRows(List<Object[]> rows, long recordId, Long testId, List<QuestionAnswer> answers) {
+        Map<String, Object[]> byQuestion = new LinkedHashMap<>();
+        for (QuestionAnswer answer : answers) {
+            byQuestion.put(answer.getQuestionId(), new Object[]{
+                recordId, answer.getQuestionId(), testId, answer.getQuestionNumber(), answer.isAnswer(), answer.getScore()
+            });
+        }
+        rows.addAll(byQuestion.values());
+    }
+
+    @Transactional(readOnly = true)
+    public List<ChildTestAnswer> getAnswers(Long recordId) {
+        return answerRepository.findByRecordIdOrderByQuestionNumber(recordId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<QuestionAnswerStats> getQuestionStats(Long testId) {
+        return answerRepository.findQuestionStatsByTestId(testId);
+    }
+}
@@ -0,0 +1,274 @@
+package com.meowcdd.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meowcdd.dto.ChildTestRecordBulkResultDto;
+import com.meowcdd.dto.ChildTestRecordBulkResultDto.RowResult;
+import com.meowcdd.dto.ChildTestRecordBulkResultDto.RowStatus;
+import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import com.meowcdd.repository.neon.ChildTestRecordNeonRepository;
+import com.meowcdd.service.ChildTestScoringNeonService.ScoringResult;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nộp hàng loạt bản ghi kết quả test (mảng JSON hoặc NDJSON).
+ * Các dòng được đọc dần từ request, kiểm tra và chấm điểm từng dòng, rồi ghi theo từng nhóm
+ * trong một transaction riêng để Hibernate gộp INSERT thành JDBC batch (ID lấy từ sequence theo pooled optimizer).
+ * Dòng lỗi không làm hỏng các dòng khác; kết quả trả về theo từng dòng.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChildTestRecordBulkNeonService {
+
+    private final ChildTestRecordNeonRepository childTestRecordNeonRepository;
+    private final ChildTestScoringNeonService childTestScoringService;
+    private final ChildLatestTestRecordNeonService childLatestTestRecordService;
+    private final ChildTestAnswerNeonService childTestAnswerService;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${child-test-record.bulk.max-records:5000}")
+    private int maxRecords;
+
+    @Value("${child-test-record.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    private TransactionTemplate writeTransaction;
+
+    @PostConstruct
+    public void init() {
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Tạo bản ghi từ mảng JSON: [{...}, {...}]
+     */
+    public ChildTestRecordBulkResultDto createFromJsonArray(InputStream body) {
+        BulkRun run = new BulkRun();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Request body must be a JSON array of child test records");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    run.abort("Unexpected end of JSON array after row " + (run.received - 1));
+                    break;
+                }
+                if (run.limitReached()) {
+                    break;
+                }
+                // Đọc thành cây trước để lỗi ánh xạ của một dòng không làm lệch parser
+                JsonNode node = objectMapper.readTree(parser);
+                run.accept(() -> objectMapper.treeToValue(node, ChildTestRecordNeon.class));
+            }
+        } catch (JsonProcessingException e) {
+            // Các dòng đã đọc trước chỗ lỗi vẫn được ghi và báo kết quả bình thường
+            run.abort("Malformed JSON after row " + (run.received - 1) + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            run.abort("Failed to read request body: " + e.getMessage());
+        }
+        return run.finish();
+    }
+
+    /**
+     * Tạo bản ghi từ NDJSON: mỗi dòng là một object JSON, dòng trống bị bỏ qua
+     */
+    public ChildTestRecordBulkResultDto createFromNdjson(InputStream body) {
+        BulkRun run = new BulkRun();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (run.limitReached()) {
+                    break;
+                }
+                String json = line;
+                run.accept(() -> objectMapper.readValue(json, ChildTestRecordNeon.class));
+            }
+        } catch (IOException e) {
+            run.abort("Failed to read request body: " + e.getMessage());
+        }
+        return run.finish();
+    }
+
+    static String validate(ChildTestRecordNeon record) {
+        if (record == null) {
+            return "Record must be a JSON object";
+        }
+        if (record.getId() != null) {
+            return "id must not be set for new records";
+        }
+        if (record.getChildId() == null) {
+            return "childId is required";
+        }
+        if (record.getTestId() == null || record.getTestId().isBlank()) {
+            return "testId is required";
+        }
+        if (record.getTestType() == null) {
+            return "testType is required";
+        }
+        if (record.getTestDate() == null) {
+            return "testDate is required";
+        }
+        if (record.getStatus() == null) {
+            return "status is required";
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        ChildTestRecordNeon read() throws JsonProcessingException;
+    }
+
+    /**
+     * Trạng thái của một lần nộp: gom các dòng hợp lệ thành nhóm rồi ghi
+     */
+    private class BulkRun {
+        private final List<RowResult> results = new ArrayList<>();
+        private final List<ChildTestRecordNeon> pending = new ArrayList<>();
+        private final List<RowResult> pendingResults = new ArrayList<>();
+        private final List<ScoringResult> pendingScores = new ArrayList<>();
+        private int received;
+        private int created;
+        private int failed;
+        private String error;
+
+        void accept(RowReader reader) {
+            int index = received++;
+            RowResult result = RowResult.builder().index(index).build();
+            results.add(result);
+            ChildTestRecordNeon record;
+            try {
+                record = reader.read();
+            } catch (JsonProcessingException e) {
+                reject(result, RowStatus.INVALID, "Invalid record: " + e.getOriginalMessage());
+                return;
+            }
+            String invalid = validate(record);
+            if (invalid != null) {
+                reject(result, RowStatus.INVALID, invalid);
+                return;
+            }
+            ScoringResult score;
+            try {
+                // Điểm và mức kết quả của bài test CDD được tính lại phía server như khi tạo từng bản ghi
+                score = childTestScoringService.applyScore(record);
+            } catch (RuntimeException e) {
+                reject(result, RowStatus.INVALID, e.getMessage());
+                return;
+            }
+            pending.add(record);
+            pendingResults.add(result);
+            pendingScores.add(score);
+            if (pending.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Gọi khi còn dòng chưa đọc: quá giới hạn thì dừng đọc request thay vì tiếp tục đọc và từ chối từng dòng
+         */
+        boolean limitReached() {
+            if (received < maxRecords) {
+                return false;
+            }
+            abort("Bulk request exceeds the limit of " + maxRecords + " records; remaining rows were not read");
+            return true;
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                writeTransaction.executeWithoutResult(status -> {
+                    childTestRecordNeonRepository.saveAllAndFlush(pending);
+                    childLatestTestRecordService.onRecordsInserted(
+                            pending.stream().map(ChildTestRecordNeon::getId).toList());
+                    childTestAnswerService.replaceAnswers(pending, pendingScores);
+                });
+                for (int i = 0; i < pending.size(); i++) {
+                    markCreated(pendingResults.get(i), pending.get(i));
+                }
+            } catch (DataAccessException e) {
+                log.warn("Bulk insert of {} child test records failed, retrying row by row: {}",
+                        pending.size(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                // Cả nhóm đã rollback: ghi lại từng dòng để chỉ dòng lỗi bị từ chối
+                for (int i = 0; i < pending.size(); i++) {
+                    insertSingle(pending.get(i), pendingResults.get(i), pendingScores.get(i));
+                }
+            }
+            pending.clear();
+            pendingResults.clear();
+            pendingScores.clear();
+        }
+
+        void abort(String message) {
+            flush();
+            error = message;
+            log.warn("Bulk child test record submission aborted after {} rows: {}", received, message);
+        }
+
+        private void insertSingle(ChildTestRecordNeon record, RowResult result, ScoringResult score) {
+            // ID đã cấp trong lần ghi bị rollback không còn hợp lệ
+            record.setId(null);
+            try {
+                writeTransaction.executeWithoutResult(status -> {
+                    childTestRecordNeonRepository.saveAndFlush(record);
+                    childLatestTestRecordService.onRecordsInserted(List.of(record.getId()));
+                    childTestAnswerService.replaceAnswers(record, score);
+                });
+                markCreated(result, record);
+            } catch (DataAccessException e) {
+                reject(result, RowStatus.FAILED, NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        }
+
+        private void markCreated(RowResult result, ChildTestRecordNeon record) {
+            result.setStatus(RowStatus.CREATED);
+            result.setId(record.getId());
+            created++;
+        }
+
+        ChildTestRecordBulkResultDto finish() {
+            flush();
+            log.info("Bulk child test record submission: {} received, {} created, {} failed", received, created, failed);
+            return ChildTestRecordBulkResultDto.builder()
+                    .received(received)
+                    .created(created)
+                    .failed(failed)
+                    .error(error)
+                    .results(results)
+                    .build();
+        }
+
+        private void reject(RowResult result, RowStatus status, String error) {
+            result.setStatus(status);
+            result.setError(error);
+            failed++;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.meowcdd.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import jakarta.annotation.PostConstruct;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Xuất bản ghi kết quả test dạng NDJSON hoặc CSV, ghi thẳng từng dòng ra response.
+ * Dữ liệu đọc bằng cursor một chiều của PostgreSQL (fetch size) trong transaction chỉ đọc,
+ * không tạo entity hay danh sách trung gian, nên bộ nhớ không phụ thuộc số dòng xuất.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChildTestRecordExportNeonService {
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private static final String BASE_COLUMNS =
+        "id, child_id, test_id, test_type, test_date, start_time, end_time, status, total_score, max_score, " +
+        "percentage_score, result_level, correct_answers, total_questions, skipped_questions, notes, environment, " +
+        "assessor, parent_present, created_at, updated_at";
+
+    // Các cột TEXT lớn chỉ xuất khi được yêu cầu
+    private static final String TEXT_COLUMNS = ", interpretation, question_answers";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${child-test-record.export.fetch-size:1000}")
+    private int fetchSize;
+
+    private TransactionTemplate readTransaction;
+
+    @PostConstruct
+    public void init() {
+        // PostgreSQL chỉ dùng cursor (fetch size) khi đọc trong transaction
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+    }
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * Điều kiện lọc; trường null được bỏ qua
+     */
+    @Data
+    @Builder
+    public static class ExportFilter {
+        private Long childId;
+        private String testId;
+        private ChildTestRecordNeon.Status status;
+        private LocalDateTime startDate;
+        private LocalDateTime endDate;
+        private Double minScore;
+        private Double maxScore;
+        private boolean includeAnswers; // Có xuất interpretation và questionAnswers hay không
+    }
+
+    /**
+     * Ghi toàn bộ bản ghi khớp điều kiện ra out theo thứ tự id
+     *
+     * @return số dòng đã ghi
+     */
+    public long export(ExportFilter filter, Format format, OutputStream out) {
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(filter, params);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        RowWriter rowWriter = format == Format.CSV
+            ? new CsvRowWriter(writer, filter.isIncludeAnswers())
+            : new NdjsonRowWriter(writer, filter.isIncludeAnswers());
+        long[] count = {0};
+        long start = System.currentTimeMillis();
+        try {
+            rowWriter.start();
+            readTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                return statement;
+            }, (ResultSet rs) -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException e) {
+                    // Client ngắt kết nối: dừng đọc cursor và đóng transaction
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            }));
+            rowWriter.finish();
+            writer.flush();
+        } catch (IOException e) {
+            log.warn("Child test record export aborted after {} rows: {}", count[0], e.getMessage());
+            throw new UncheckedIOException(e);
+        } catch (UncheckedIOException e) {
+            log.warn("Child test record export aborted after {} rows: {}", count[0], e.getCause().getMessage());
+            throw e;
+        }
+        log.info("Exported {} child test records as {} in {} ms", count[0], format, System.currentTimeMillis() - start);
+        return count[0];
+    }
+
+    private static String buildQuery(ExportFilter filter, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(BASE_COLUMNS);
+        if (filter.isIncludeAnswers()) {
+            sql.append(TEXT_COLUMNS);
+        }
+        sql.append(" FROM child_test_records WHERE 1 = 1");
+        if (filter.getChildId() != null) {
+            sql.append(" AND child_id = ?");
+            params.add(filter.getChildId());
+        }
+        if (filter.getTestId() != null) {
+            sql.append(" AND test_id = ?");
+            params.add(filter.getTestId());
+        }
+        if (filter.getStatus() != null) {
+            sql.append(" AND status = ?");
+            params.add(filter.getStatus().name());
+        }
+        if (filter.getStartDate() != null) {
+            sql.append(" AND test_date >= ?");
+            params.add(Timestamp.valueOf(filter.getStartDate()));
+        }
+        if (filter.getEndDate() != null) {
+            sql.append(" AND test_date <= ?");
+            params.add(Timestamp.valueOf(filter.getEndDate()));
+        }
+        if (filter.getMinScore() != null) {
+            sql.append(" AND total_score >= ?");
+            params.add(filter.getMinScore());
+        }
+        if (filter.getMaxScore() != null) {
+            sql.append(" AND total_score <= ?");
+            params.add(filter.getMaxScore());
+        }
+        return sql.append(" ORDER BY id").toString();
+    }
+
+    private static String formatDateTime(Timestamp value) {
+        return value != null ? DATE_TIME_FORMAT.format(value.toLocalDateTime()) : null;
+    }
+
+    private static Object getNullable(ResultSet rs, String column, Class<?> type) throws SQLException {
+        Object value = rs.getObject(column, type);
+        return rs.wasNull() ? null : value;
+    }
+
+    private interface RowWriter {
+        void start() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        default void finish() throws IOException {
+        }
+    }
+
+    /**
+     * Mỗi dòng một object JSON, cùng tên trường và định dạng với API JSON (childId/testId là chuỗi)
+     */
+    private class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final boolean includeAnswers;
+        private JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer, boolean includeAnswers) {
+            this.writer = writer;
+            this.includeAnswers = includeAnswers;
+        }
+
+        @Override
+        public void start() throws IOException {
+            generator = objectMapper.getFactory().createGenerator(writer);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            generator.writeStringField("childId", String.valueOf(rs.getLong("child_id")));
+            generator.writeStringField("testId", rs.getString("test_id"));
+            generator.writeStringField("testType", rs.getString("test_type"));
+            generator.writeStringField("testDate", formatDateTime(rs.getTimestamp("test_date")));
+            generator.writeStringField("startTime", formatDateTime(rs.getTimestamp("start_time")));
+            generator.writeStringField("endTime", formatDateTime(rs.getTimestamp("end_time")));
+            generator.writeStringField("status", rs.getString("status"));
+            writeNumber("totalScore", (Double) getNullable(rs, "total_score", Double.class));
+            writeNumber("maxScore", (Double) getNullable(rs, "max_score", Double.class));
+            writeNumber("percentageScore", (Double) getNullable(rs, "percentage_score", Double.class));
+            generator.writeStringField("resultLevel", rs.getString("result_level"));
+            if (includeAnswers) {
+                generator.writeStringField("interpretation", rs.getString("interpretation"));
+                generator.writeStringField("questionAnswers", rs.getString("question_answers"));
+            }
+            writeNumber("correctAnswers", (Integer) getNullable(rs, "correct_answers", Integer.class));
+            writeNumber("totalQuestions", (Integer) getNullable(rs, "total_questions", Integer.class));
+            writeNumber("skippedQuestions", (Integer) getNullable(rs, "skipped_questions", Integer.class));
+            generator.writeStringField("notes", rs.getString("notes"));
+            generator.writeStringField("environment", rs.getString("environment"));
+            generator.writeStringField("assessor", rs.getString("assessor"));
+            Boolean parentPresent = (Boolean) getNullable(rs, "parent_present", Boolean.class);
+            if (parentPresent != null) {
+                generator.writeBooleanField("parentPresent", parentPresent);
+            } else {
+                generator.writeNullField("parentPresent");
+            }
+            generator.writeStringField("createdAt", formatDateTime(rs.getTimestamp("created_at")));
+            generator.writeStringField("updatedAt", formatDateTime(rs.getTimestamp("updated_at")));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+
+        private void writeNumber(String field, Number value) throws IOException {
+            if (value == null) {
+                generator.writeNullField(field);
+            } else if (value instanceof Integer intValue) {
+                generator.writeNumberField(field, intValue);
+            } else {
+                generator.writeNumberField(field, value.doubleValue());
+            }
+        }
+    }
+
+    /**
+     * CSV theo RFC 4180: dòng tiêu đề rồi mỗi bản ghi một dòng, giá trị null để trống;
+     * cột văn bản tự do được chặn công thức (CSV/formula injection)
+     */
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final boolean includeAnswers;
+
+        CsvRowWriter(Writer writer, boolean includeAnswers) {
+            this.writer = writer;
+            this.includeAnswers = includeAnswers;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.write("id,childId,testId,testType,testDate,startTime,endTime,status,totalScore,maxScore," +
+                "percentageScore,resultLevel,correctAnswers,totalQuestions,skippedQuestions,notes,environment," +
+                "assessor,parentPresent,createdAt,updatedAt");
+            if (includeAnswers) {
+                writer.write(",interpretation,questionAnswers");
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong("id")));
+            cell(Long.toString(rs.getLong("child_id")));
+            textCell(rs.getString("test_id"));
+            cell(rs.getString("test_type"));
+            cell(formatDateTime(rs.getTimestamp("test_date")));
+            cell(formatDateTime(rs.getTimestamp("start_time")));
+            cell(formatDateTime(rs.getTimestamp("end_time")));
+            cell(rs.getString("status"));
+            cell(getNullable(rs, "total_score", Double.class));
+            cell(getNullable(rs, "max_score", Double.class));
+            cell(getNullable(rs, "percentage_score", Double.class));
+            cell(rs.getString("result_level"));
+            cell(getNullable(rs, "correct_answers", Integer.class));
+            cell(getNullable(rs, "total_questions", Integer.class));
+            cell(getNullable(rs, "skipped_questions", Integer.class));
+            textCell(rs.getString("notes"));
+            textCell(rs.getString("environment"));
+            textCell(rs.getString("assessor"));
+            cell(getNullable(rs, "parent_present", Boolean.class));
+            cell(formatDateTime(rs.getTimestamp("created_at")));
+            cell(formatDateTime(rs.getTimestamp("updated_at")));
+            if (includeAnswers) {
+                textCell(rs.getString("interpretation"));
+                textCell(rs.getString("question_answers"));
+            }
+            writer.write("\r\n");
+        }
+
+        /**
+         * Cột văn bản tự do do người dùng nhập: giá trị bắt đầu bằng =, +, -, @, tab hoặc CR bị Excel/Sheets
+         * hiểu là công thức, nên thêm dấu ' phía trước. Cột số không đi qua đây để số âm vẫn giữ nguyên
+         */
+        private void textCell(String value) throws IOException {
+            if (value != null && !value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            cell(value);
+        }
+
+        private void cell(Object value) throws IOException {
+            writer.write(',');
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+}
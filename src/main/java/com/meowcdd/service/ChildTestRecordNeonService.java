@@ -1,15 +1,24 @@
 package com.meowcdd.service;
 
+import com.meowcdd.dto.ChildTestRecordBulkResultDto;
 import com.meowcdd.dto.ChildTestRecordWithCategoryDto;
+import com.meowcdd.entity.neon.ChildTestAnswer;
 import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import com.meowcdd.entity.neon.ChildTestRescoringJob;
+import com.meowcdd.repository.neon.ChildTestAnswerNeonRepository.QuestionAnswerStats;
 import com.meowcdd.repository.neon.ChildTestRecordNeonRepository;
+import com.meowcdd.service.ChildTestRecordExportNeonService.ExportFilter;
+import com.meowcdd.service.ChildTestScoringNeonService.ScoringResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,6 +32,12 @@ import java.util.stream.Collectors;
 public class ChildTestRecordNeonService {
 
     private final ChildTestRecordNeonRepository childTestRecordNeonRepository;
+    private final ChildTestScoringNeonService childTestScoringService;
+    private final ChildTestRescoringNeonService childTestRescoringService;
+    private final ChildTestRecordBulkNeonService childTestRecordBulkService;
+    private final ChildLatestTestRecordNeonService childLatestTestRecordService;
+    private final ChildTestRecordExportNeonService childTestRecordExportService;
+    private final ChildTestAnswerNeonService childTestAnswerService;
 
     public List<ChildTestRecordNeon> getAllChildTestRecords() {
         log.info("Getting all child test records");
@@ -41,7 +56,7 @@ public class ChildTestRecordNeonService {
 
     public List<ChildTestRecordNeon> getChildTestRecordsByChildId(String childId) {
         log.info("Getting child test records by child ID: {}", childId);
-        return childTestRecordNeonRepository.findByChildId(childId);
+        return childTestRecordNeonRepository.findByChildId(toId(childId, "childId"));
     }
 
     public List<ChildTestRecordNeon> getChildTestRecordsByTestId(String testId) {
@@ -61,7 +76,7 @@ public class ChildTestRecordNeonService {
 
     public List<ChildTestRecordNeon> getChildTestRecordsByChildIdAndTestId(String childId, String testId) {
         log.info("Getting child test records by child ID: {} and test ID: {}", childId, testId);
-        return childTestRecordNeonRepository.findByChildIdAndTestId(childId, testId);
+        return childTestRecordNeonRepository.findByChildIdAndTestId(toId(childId, "childId"), testId);
     }
 
     public List<ChildTestRecordNeon> getChildTestRecordsByTestDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
@@ -71,7 +86,7 @@ public class ChildTestRecordNeonService {
 
     public List<ChildTestRecordNeon> getChildTestRecordsByChildIdAndTestDateBetween(String childId, LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Getting child test records by child ID: {} and test date between: {} and {}", childId, startDate, endDate);
-        return childTestRecordNeonRepository.findByChildIdAndTestDateBetween(childId, startDate, endDate);
+        return childTestRecordNeonRepository.findByChildIdAndTestDateBetween(toId(childId, "childId"), startDate, endDate);
     }
 
     public List<ChildTestRecordNeon> getChildTestRecordsByScoreBetween(Double minScore, Double maxScore) {
@@ -81,7 +96,7 @@ public class ChildTestRecordNeonService {
 
     public Page<ChildTestRecordNeon> getChildTestRecordsByChildIdWithPagination(String childId, Pageable pageable) {
         log.info("Getting child test records by child ID: {} with pagination", childId);
-        return childTestRecordNeonRepository.findByChildIdWithPagination(childId, pageable);
+        return childTestRecordNeonRepository.findByChildIdWithPagination(toId(childId, "childId"), pageable);
     }
 
     public Page<ChildTestRecordNeon> getChildTestRecordsByTestIdWithPagination(String testId, Pageable pageable) {
@@ -111,13 +126,60 @@ public class ChildTestRecordNeonService {
 
     public ChildTestRecordNeon createChildTestRecord(ChildTestRecordNeon childTestRecord) {
         log.info("Creating new child test record for child ID: {}", childTestRecord.getChildId());
-        return childTestRecordNeonRepository.save(childTestRecord);
+        // Điểm và mức kết quả của bài test CDD được tính lại phía server từ câu trả lời
+        ScoringResult score = childTestScoringService.applyScore(childTestRecord);
+        ChildTestRecordNeon savedRecord = childTestRecordNeonRepository.saveAndFlush(childTestRecord);
+        childLatestTestRecordService.onRecordsInserted(List.of(savedRecord.getId()));
+        childTestAnswerService.replaceAnswers(savedRecord, score);
+        return savedRecord;
+    }
+
+    // Mỗi nhóm bản ghi được ghi trong transaction riêng, không bọc cả request trong một transaction
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ChildTestRecordBulkResultDto bulkCreateChildTestRecords(InputStream body) {
+        log.info("Bulk creating child test records from JSON array");
+        return childTestRecordBulkService.createFromJsonArray(body);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ChildTestRecordBulkResultDto bulkCreateChildTestRecordsFromNdjson(InputStream body) {
+        log.info("Bulk creating child test records from NDJSON stream");
+        return childTestRecordBulkService.createFromNdjson(body);
+    }
+
+    // === EXPORT ===
+
+    /**
+     * Tạo điều kiện xuất từ tham số dạng chuỗi của API; tham số null được bỏ qua
+     */
+    public ExportFilter createExportFilter(String childId, String testId, String status, String startDate, String endDate,
+                                           Double minScore, Double maxScore, boolean includeAnswers) {
+        return ExportFilter.builder()
+                .childId(childId != null ? toId(childId, "childId") : null)
+                .testId(testId)
+                .status(status != null ? ChildTestRecordNeon.Status.valueOf(status.toUpperCase()) : null)
+                .startDate(startDate != null ? LocalDateTime.parse(startDate) : null)
+                .endDate(endDate != null ? LocalDateTime.parse(endDate) : null)
+                .minScore(minScore)
+                .maxScore(maxScore)
+                .includeAnswers(includeAnswers)
+                .build();
+    }
+
+    // Cursor đọc trong transaction chỉ đọc riêng của service xuất, chạy trên luồng ghi response
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long exportChildTestRecords(ExportFilter filter, ChildTestRecordExportNeonService.Format format, OutputStream out) {
+        log.info("Exporting child test records as {} with filter: {}", format, filter);
+        return childTestRecordExportService.export(filter, format, out);
     }
 
     public Optional<ChildTestRecordNeon> updateChildTestRecord(Long id, ChildTestRecordNeon childTestRecord) {
         log.info("Updating child test record with ID: {}", id);
         return childTestRecordNeonRepository.findById(id)
                 .map(existingRecord -> {
+                    Long previousChildId = existingRecord.getChildId();
+                    String previousTestId = existingRecord.getTestId();
+                    LocalDateTime previousTestDate = existingRecord.getTestDate();
                     existingRecord.setChildId(childTestRecord.getChildId());
                     existingRecord.setTestId(childTestRecord.getTestId());
                     existingRecord.setTestType(childTestRecord.getTestType());
@@ -138,22 +200,74 @@ public class ChildTestRecordNeonService {
                     existingRecord.setEnvironment(childTestRecord.getEnvironment());
                     existingRecord.setAssessor(childTestRecord.getAssessor());
                     existingRecord.setParentPresent(childTestRecord.getParentPresent());
-                    return childTestRecordNeonRepository.save(existingRecord);
+                    ScoringResult score = childTestScoringService.applyScore(existingRecord);
+                    ChildTestRecordNeon savedRecord = childTestRecordNeonRepository.saveAndFlush(existingRecord);
+                    childLatestTestRecordService.onRecordUpdated(savedRecord, previousChildId, previousTestId, previousTestDate);
+                    childTestAnswerService.replaceAnswers(savedRecord, score);
+                    return savedRecord;
                 });
     }
 
     public boolean deleteChildTestRecord(Long id) {
         log.info("Deleting child test record with ID: {}", id);
-        if (childTestRecordNeonRepository.existsById(id)) {
-            childTestRecordNeonRepository.deleteById(id);
-            return true;
-        }
-        return false;
+        return childTestRecordNeonRepository.findById(id)
+                .map(existingRecord -> {
+                    childTestAnswerService.deleteAnswers(id);
+                    childTestRecordNeonRepository.delete(existingRecord);
+                    childTestRecordNeonRepository.flush();
+                    childLatestTestRecordService.onRecordDeleted(existingRecord.getChildId(), existingRecord.getTestId());
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    // === PER-QUESTION ANSWERS ===
+
+    public List<ChildTestAnswer> getAnswersByRecordId(Long id) {
+        log.info("Getting normalized answers for child test record ID: {}", id);
+        return childTestAnswerService.getAnswers(id);
+    }
+
+    public List<QuestionAnswerStats> getQuestionStatsByTestId(String testId) {
+        log.info("Getting per-question answer statistics for test ID: {}", testId);
+        return childTestAnswerService.getQuestionStats(toId(testId, "testId"));
+    }
+
+    public List<ChildTestRescoringJob> backfillAnswers() {
+        log.info("Starting answer backfill for all CDD tests");
+        return childTestRescoringService.startJobsForAllTests();
+    }
+
+    // === RESCORING JOBS ===
+
+    public ChildTestRescoringJob startRescoringJob(Long testId) {
+        log.info("Starting rescoring job for CDD test ID: {}", testId);
+        return childTestRescoringService.startJob(testId);
+    }
+
+    public Optional<ChildTestRescoringJob> getRescoringJob(Long jobId) {
+        log.info("Getting rescoring job by ID: {}", jobId);
+        return childTestRescoringService.getJob(jobId);
+    }
+
+    public List<ChildTestRescoringJob> getRescoringJobsByTestId(Long testId) {
+        log.info("Getting rescoring jobs for CDD test ID: {}", testId);
+        return childTestRescoringService.getJobsByTestId(testId);
+    }
+
+    public ChildTestRescoringJob resumeRescoringJob(Long jobId) {
+        log.info("Resuming rescoring job with ID: {}", jobId);
+        return childTestRescoringService.resumeJob(jobId);
+    }
+
+    public ChildTestRescoringJob cancelRescoringJob(Long jobId) {
+        log.info("Cancelling rescoring job with ID: {}", jobId);
+        return childTestRescoringService.cancelJob(jobId);
     }
 
     public long getChildTestRecordCountByChildId(String childId) {
         log.info("Getting child test record count by child ID: {}", childId);
-        return childTestRecordNeonRepository.countByChildId(childId);
+        return childTestRecordNeonRepository.countByChildId(toId(childId, "childId"));
     }
 
     public long getChildTestRecordCountByTestId(String testId) {
@@ -173,7 +287,7 @@ public class ChildTestRecordNeonService {
 
     public Double getAverageScoreByChildId(String childId) {
         log.info("Getting average score by child ID: {}", childId);
-        return childTestRecordNeonRepository.getAverageScoreByChildId(childId);
+        return childTestRecordNeonRepository.getAverageScoreByChildId(toId(childId, "childId"));
     }
 
     public Double getAverageScoreByTestId(String testId) {
@@ -188,23 +302,24 @@ public class ChildTestRecordNeonService {
     
     public List<String> getDistinctCategoriesByChildId(String childId) {
         log.info("Getting distinct categories for child ID: {}", childId);
-        return childTestRecordNeonRepository.findDistinctCategoriesByChildId(childId);
+        return childTestRecordNeonRepository.findDistinctCategoriesByChildId(toId(childId, "childId"));
     }
     
     public Optional<ChildTestRecordNeon> getLatestTestRecordByChildId(String childId) {
         log.info("Getting latest test record for child ID: {}", childId);
-        return childTestRecordNeonRepository.findLatestByChildId(childId);
+        return childTestRecordNeonRepository.findLatestByChildId(toId(childId, "childId"));
     }
     
     public List<ChildTestRecordNeon> getLatestTestRecordsByChildId(String childId, Pageable pageable) {
         log.info("Getting latest test records for child ID: {} with limit", childId);
-        return childTestRecordNeonRepository.findLatestByChildIdWithLimit(childId, pageable);
+        return childTestRecordNeonRepository.findLatestByChildIdWithLimit(toId(childId, "childId"), pageable);
     }
     
     public List<ChildTestRecordWithCategoryDto> getLatestTestRecordsByChildIdAndDistinctCategoryWithTestInfo(String childId) {
         log.info("Getting latest test records by distinct category with test info for child ID: {}", childId);
         
-        List<Object[]> results = childTestRecordNeonRepository.findLatestByChildIdAndDistinctCategoryWithTestInfo(childId);
+        // Đọc từ bảng chiếu child_latest_test_record thay vì tính ROW_NUMBER trên toàn bộ lịch sử của trẻ
+        List<Object[]> results = childLatestTestRecordService.findLatestRowsByChildId(toId(childId, "childId"));
         
         return results.stream().map(this::convertToDtoWithCategory).collect(Collectors.toList());
     }
@@ -213,17 +328,17 @@ public class ChildTestRecordNeonService {
         // Mapping đơn giản cho query test
         ChildTestRecordNeon record = new ChildTestRecordNeon();
         record.setId((Long) row[0]);
-        record.setChildId((String) row[1]);
+        record.setChildId(((Number) row[1]).longValue());
         record.setTestId((String) row[2]);
         record.setTestType(ChildTestRecordNeon.TestType.valueOf((String) row[3]));
-        record.setTestDate(((Timestamp) row[4]).toLocalDateTime());
-        record.setTestDate(((Timestamp) row[5]).toLocalDateTime());
-        record.setTestDate(((Timestamp) row[6]).toLocalDateTime());
+        record.setTestDate(toLocalDateTime(row[4]));
+        record.setStartTime(toLocalDateTime(row[5]));
+        record.setEndTime(toLocalDateTime(row[6]));
         record.setStatus(ChildTestRecordNeon.Status.valueOf((String) row[7]));
         record.setTotalScore((Double) row[8]);
         record.setMaxScore((Double) row[9]);
         record.setPercentageScore((Double) row[10]);
-        record.setResultLevel(ChildTestRecordNeon.ResultLevel.valueOf((String) row[11]));
+        record.setResultLevel(row[11] != null ? ChildTestRecordNeon.ResultLevel.valueOf((String) row[11]) : null);
         record.setInterpretation((String) row[12]);
         record.setQuestionAnswers((String) row[13]);
         record.setCorrectAnswers((Integer) row[14]);
@@ -233,8 +348,8 @@ public class ChildTestRecordNeonService {
         record.setEnvironment((String) row[18]);
         record.setAssessor((String) row[19]);
         record.setParentPresent((Boolean) row[20]);
-        record.setTestDate(((Timestamp) row[21]).toLocalDateTime());
-        record.setTestDate(((Timestamp) row[22]).toLocalDateTime());
+        record.setCreatedAt(toLocalDateTime(row[21]));
+        record.setUpdatedAt(toLocalDateTime(row[22]));
 
 
         // Thông tin category từ join
@@ -242,7 +357,7 @@ public class ChildTestRecordNeonService {
         
         return ChildTestRecordWithCategoryDto.builder()
                 .id(record.getId())
-                .childId(record.getChildId())
+                .childId(String.valueOf(record.getChildId()))
                 .testId(record.getTestId())
                 .testType(record.getTestType().name())
                 .testDate(record.getTestDate())
@@ -252,7 +367,7 @@ public class ChildTestRecordNeonService {
                 .totalScore(record.getTotalScore())
                 .maxScore(record.getMaxScore())
                 .percentageScore(record.getPercentageScore())
-                .resultLevel(record.getResultLevel().name())
+                .resultLevel(record.getResultLevel() != null ? record.getResultLevel().name() : null)
                 .interpretation(record.getInterpretation())
                 .questionAnswers(record.getQuestionAnswers())
                 .correctAnswers(record.getCorrectAnswers())
@@ -274,13 +389,31 @@ public class ChildTestRecordNeonService {
                 .build();
     }
     
+    /**
+     * Các API cũ nhận childId dạng chuỗi; cột child_id (và cdd_test_id của câu trả lời) là bigint nên chuyển đổi tại đây
+     */
+    static Long toId(String value, String name) {
+        try {
+            return Long.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a numeric ID: " + value);
+        }
+    }
+    
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+    
     public Optional<ChildTestRecordNeon> getLatestTestRecordByChildIdAndCategory(String childId, String category) {
         log.info("Getting latest test record for child ID: {} and category: {}", childId, category);
-        return childTestRecordNeonRepository.findLatestByChildIdAndCategory(childId, category);
+        return childTestRecordNeonRepository.findLatestByChildIdAndCategory(toId(childId, "childId"), category);
     }
     
     public List<ChildTestRecordNeon> getLatestTestRecordsByChildIdAndCategory(String childId, String category, Pageable pageable) {
         log.info("Getting latest test records for child ID: {} and category: {} with limit", childId, category);
-        return childTestRecordNeonRepository.findLatestByChildIdAndCategoryWithLimit(childId, category, pageable);
+        return childTestRecordNeonRepository.findLatestByChildIdAndCategoryWithLimit(toId(childId, "childId"), category, pageable);
     }
 }
@@ -0,0 +1,532 @@
+package com.meowcdd.service;
+
+import com.meowcdd.entity.neon.ChildTestRescoringJob;
+import com.meowcdd.repository.neon.ChildTestRescoringJobNeonRepository;
+import com.meowcdd.service.ChildTestScoringNeonService.CompiledScorer;
+import com.meowcdd.service.ChildTestScoringNeonService.ScoringResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service chấm điểm lại hàng loạt các bản ghi bài test khi tiêu chí chấm điểm của bài test CDD thay đổi
+ * Bản ghi được đọc theo id tăng dần bằng cursor phía server (fetch size giới hạn, không nạp hết vào bộ nhớ),
+ * chia lô và chấm song song trên pool luồng, ghi lại bằng JDBC batch; chỉ bản ghi có kết quả thay đổi mới bị cập nhật.
+ * Tiến độ (id bản ghi cuối đã ghi xong) được lưu sau mỗi lô theo đúng thứ tự nên job có thể tiếp tục sau khi dừng/lỗi.
+ * Cùng lô ghi đó cũng đồng bộ câu trả lời chuẩn hóa (child_test_answers) theo định nghĩa hiện tại của bài test,
+ * chỉ ghi các dòng thực sự thay đổi.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChildTestRescoringNeonService {
+
+    // Số job chạy đồng thời; các job khác chờ trong hàng đợi
+    private static final int MAX_CONCURRENT_JOBS = 2;
+
+    private static final String COUNT_RECORDS_SQL =
+        "SELECT COUNT(*) FROM child_test_records " +
+        "WHERE cdd_test_id = ? AND question_answers IS NOT NULL";
+
+    private static final String DISTINCT_TEST_IDS_SQL =
+        "SELECT DISTINCT cdd_test_id FROM child_test_records " +
+        "WHERE cdd_test_id IS NOT NULL AND question_answers IS NOT NULL ORDER BY cdd_test_id";
+
+    private static final String STREAM_RECORDS_SQL =
+        "SELECT id, question_answers FROM child_test_records " +
+        "WHERE cdd_test_id = ? AND question_answers IS NOT NULL AND id > ? ORDER BY id";
+
+    // Khóa các bản ghi của lô và đọc lại câu trả lời: bản ghi đã bị sửa (hoặc xóa) sau khi cursor đọc
+    // thì bỏ qua, để kết quả tính từ câu trả lời cũ không ghi đè điểm và child_test_answers mới hơn
+    private static final String LOCK_RECORDS_SQL =
+        "SELECT id, question_answers FROM child_test_records WHERE id = ANY(?) FOR UPDATE";
+
+    // Chỉ ghi khi kết quả khác giá trị đang lưu để không tạo bản ghi chết (dead tuple) cho các dòng không đổi;
+    // updated_at là thời điểm phía ứng dụng (như BaseEntity), được gán khi ghi lô
+    private static final String UPDATE_SCORE_SQL =
+        "UPDATE child_test_records r SET total_score = v.total_score, max_score = v.max_score, " +
+        "percentage_score = v.percentage_score, result_level = v.result_level, interpretation = v.interpretation, " +
+        "total_questions = v.total_questions, correct_answers = v.correct_answers, " +
+        "skipped_questions = v.skipped_questions, updated_at = v.updated_at " +
+        "FROM (SELECT CAST(? AS float8) AS total_score, CAST(? AS float8) AS max_score, CAST(? AS float8) AS percentage_score, " +
+        "CAST(? AS varchar) AS result_level, CAST(? AS text) AS interpretation, CAST(? AS integer) AS total_questions, " +
+        "CAST(? AS integer) AS correct_answers, CAST(? AS integer) AS skipped_questions, CAST(? AS timestamp) AS updated_at) v " +
+        "WHERE r.id = ? AND (r.total_score, r.max_score, r.percentage_score, r.result_level, r.interpretation, " +
+        "r.total_questions, r.correct_answers, r.skipped_questions) IS DISTINCT FROM " +
+        "(v.total_score, v.max_score, v.percentage_score, v.result_level, v.interpretation, " +
+        "v.total_questions, v.correct_answers, v.skipped_questions)";
+
+    private static final int[] SCORE_ARG_TYPES = {Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.VARCHAR, Types.VARCHAR,
+        Types.INTEGER, Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.BIGINT};
+
+    // Vị trí tham số updated_at trong một dòng của UPDATE_SCORE_SQL
+    private static final int UPDATED_AT_ARG = 8;
+
+    private final ChildTestRescoringJobNeonRepository jobRepository;
+    private final ChildTestScoringNeonService scoringService;
+    private final ChildTestAnswerNeonService answerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${child-test-record.rescoring.threads:4}")
+    private int threads;
+
+    @Value("${child-test-record.rescoring.batch-size:500}")
+    private int batchSize;
+
+    @Value("${child-test-record.rescoring.fetch-size:1000}")
+    private int fetchSize;
+
+    // Cờ hủy của các job đang chạy hoặc đang chờ trên máy chủ này
+    private final Map<Long, AtomicBoolean> activeJobs = new ConcurrentHashMap<>();
+
+    private ExecutorService jobExecutor;
+    private ExecutorService workerExecutor;
+    private TransactionTemplate readTransaction;
+    private TransactionTemplate writeTransaction;
+
+    @PostConstruct
+    public void start() {
+        jobExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_JOBS, namedThreadFactory("child-test-rescoring-job-"));
+        workerExecutor = Executors.newFixedThreadPool(threads, namedThreadFactory("child-test-rescoring-worker-"));
+        // PostgreSQL chỉ dùng cursor (fetch size) khi đọc trong transaction
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+        writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void stop() {
+        log.info("Stopping child test rescoring, {} jobs active", activeJobs.size());
+        activeJobs.values().forEach(cancelled -> cancelled.set(true));
+        jobExecutor.shutdownNow();
+        workerExecutor.shutdownNow();
+    }
+
+    /**
+     * Tiếp tục các job đang chạy dở khi server dừng
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (ChildTestRescoringJob job : jobRepository.findByStatus(ChildTestRescoringJob.Status.RUNNING)) {
+            log.info("Resuming rescoring job {} for CDD test {} after record {}", job.getId(), job.getTestId(), job.getLastRecordId());
+            submit(job.getId());
+        }
+    }
+
+    /**
+     * Bắt đầu job chấm điểm lại sau khi transaction hiện tại commit (định nghĩa mới đã hiển thị cho luồng nền)
+     */
+    public void scheduleRescoring(Long testId) {
+        Runnable startJob = () -> jobExecutor.execute(() -> {
+            try {
+                startJob(testId);
+            } catch (RuntimeException e) {
+                log.warn("Could not start rescoring job for CDD test {}: {}", testId, e.getMessage());
+            }
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    startJob.run();
+                }
+            });
+        } else {
+            startJob.run();
+        }
+    }
+
+    /**
+     * Tạo job chấm điểm lại toàn bộ bản ghi của bài test theo tiêu chí hiện tại
+     * Job đang chạy của cùng bài test (dùng tiêu chí cũ) bị hủy
+     */
+    public ChildTestRescoringJob startJob(Long testId) {
+        CompiledScorer scorer = scoringService.getScorer(testId)
+            .orElseThrow(() -> new IllegalArgumentException("CDD test " + testId + " does not exist or has no scoring criteria"));
+
+        for (ChildTestRescoringJob running : jobRepository.findByTestIdAndStatus(testId, ChildTestRescoringJob.Status.RUNNING)) {
+            cancelJob(running.getId());
+        }
+
+        Long totalRecords = jdbcTemplate.queryForObject(COUNT_RECORDS_SQL, Long.class, testId);
+        ChildTestRescoringJob job = jobRepository.save(ChildTestRescoringJob.builder()
+            .testId(testId)
+            .testVersion(scorer.getDefinition().getVersion())
+            .status(ChildTestRescoringJob.Status.RUNNING)
+            .totalRecords(totalRecords)
+            .processedRecords(0L)
+            .updatedRecords(0L)
+            .failedRecords(0L)
+            .lastRecordId(0L)
+            .startedAt(LocalDateTime.now())
+            .build());
+        log.info("Started rescoring job {} for CDD test {} ({} records)", job.getId(), testId, totalRecords);
+        submit(job.getId());
+        return job;
+    }
+
+    /**
+     * Chạy job cho mọi bài test CDD có bản ghi và có tiêu chí chấm điểm
+     * Dùng để điền child_test_answers cho dữ liệu cũ; bài test chưa có tiêu chí chấm điểm được bỏ qua
+     */
+    public List<ChildTestRescoringJob> startJobsForAllTests() {
+        List<ChildTestRescoringJob> jobs = new ArrayList<>();
+        for (Long testId : jdbcTemplate.queryForList(DISTINCT_TEST_IDS_SQL, Long.class)) {
+            if (scoringService.getScorer(testId).isEmpty()) {
+                log.info("Skipping CDD test {} without scoring criteria", testId);
+                continue;
+            }
+            jobs.add(startJob(testId));
+        }
+        return jobs;
+    }
+
+    /**
+     * Tiếp tục job bị lỗi hoặc bị hủy từ bản ghi kế tiếp sau lastRecordId
+     */
+    public ChildTestRescoringJob resumeJob(Long jobId) {
+        ChildTestRescoringJob job = getJobOrThrow(jobId);
+        if (job.getStatus() == ChildTestRescoringJob.Status.COMPLETED) {
+            throw new IllegalArgumentException("Rescoring job " + jobId + " is already completed");
+        }
+        if (activeJobs.containsKey(jobId)) {
+            return job;
+        }
+
+        job.setStatus(ChildTestRescoringJob.Status.RUNNING);
+        job.setErrorMessage(null);
+        job.setFinishedAt(null);
+        job = jobRepository.save(job);
+        log.info("Resuming rescoring job {} after record {}", jobId, job.getLastRecordId());
+        submit(jobId);
+        return job;
+    }
+
+    /**
+     * Hủy job; lô đang chấm được ghi xong và tiến độ được lưu trước khi job dừng
+     */
+    public ChildTestRescoringJob cancelJob(Long jobId) {
+        ChildTestRescoringJob job = getJobOrThrow(jobId);
+        if (job.getStatus() != ChildTestRescoringJob.Status.RUNNING) {
+            throw new IllegalArgumentException("Rescoring job " + jobId + " is not running");
+        }
+
+        AtomicBoolean cancelled = activeJobs.get(jobId);
+        if (cancelled != null) {
+            cancelled.set(true);
+        } else {
+            jobRepository.finish(jobId, ChildTestRescoringJob.Status.CANCELLED, null, LocalDateTime.now());
+        }
+        job.setStatus(ChildTestRescoringJob.Status.CANCELLED);
+        return job;
+    }
+
+    public Optional<ChildTestRescoringJob> getJob(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    public List<ChildTestRescoringJob> getJobsByTestId(Long testId) {
+        return jobRepository.findByTestIdOrderByIdDesc(testId);
+    }
+
+    // === HELPER METHODS ===
+
+    private ChildTestRescoringJob getJobOrThrow(Long jobId) {
+        return jobRepository.findById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException("Rescoring job not found with id: " + jobId));
+    }
+
+    private void submit(Long jobId) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        if (activeJobs.putIfAbsent(jobId, cancelled) != null) {
+            return;
+        }
+        // Job vừa lưu trong transaction của người gọi chỉ hiển thị với luồng nền sau khi commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        jobExecutor.execute(() -> runJob(jobId, cancelled));
+                    } else {
+                        activeJobs.remove(jobId, cancelled);
+                    }
+                }
+            });
+        } else {
+            jobExecutor.execute(() -> runJob(jobId, cancelled));
+        }
+    }
+
+    private void runJob(Long jobId, AtomicBoolean cancelled) {
+        JobRun run = null;
+        try {
+            ChildTestRescoringJob job = getJobOrThrow(jobId);
+            if (cancelled.get()) {
+                jobRepository.finish(jobId, ChildTestRescoringJob.Status.CANCELLED, null, LocalDateTime.now());
+                return;
+            }
+            CompiledScorer scorer = scoringService.getScorer(job.getTestId())
+                .orElseThrow(() -> new IllegalStateException("CDD test " + job.getTestId() + " has no scoring criteria"));
+
+            run = new JobRun(jobId, scorer, cancelled);
+            JobRun currentRun = run;
+            long startAfterId = job.getLastRecordId() != null ? job.getLastRecordId() : 0L;
+            readTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(STREAM_RECORDS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, job.getTestId());
+                statement.setLong(2, startAfterId);
+                return statement;
+            }, currentRun::processRow));
+            run.submitBatch();
+            run.drain();
+
+            ChildTestRescoringJob.Status finalStatus = cancelled.get()
+                ? ChildTestRescoringJob.Status.CANCELLED : ChildTestRescoringJob.Status.COMPLETED;
+            jobRepository.finish(jobId, finalStatus, null, LocalDateTime.now());
+            log.info("Rescoring job {} finished with status {}", jobId, finalStatus);
+        } catch (JobCancelledException e) {
+            drainQuietly(run);
+            jobRepository.finish(jobId, ChildTestRescoringJob.Status.CANCELLED, null, LocalDateTime.now());
+            log.info("Rescoring job {} cancelled", jobId);
+        } catch (RuntimeException e) {
+            if (run != null) {
+                run.abandon();
+            }
+            log.error("Rescoring job {} failed", jobId, e);
+            jobRepository.finish(jobId, ChildTestRescoringJob.Status.FAILED, e.getMessage(), LocalDateTime.now());
+        } finally {
+            activeJobs.remove(jobId, cancelled);
+        }
+    }
+
+    private void drainQuietly(JobRun run) {
+        if (run == null) {
+            return;
+        }
+        try {
+            run.drain();
+        } catch (RuntimeException e) {
+            run.abandon();
+            log.warn("Rescoring batch failed while cancelling: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Chấm một lô bản ghi và ghi các kết quả trong một transaction bằng JDBC batch;
+     * chỉ ghi các bản ghi mà câu trả lời vẫn đúng như lúc được chấm
+     */
+    private BatchResult scoreAndWrite(CompiledScorer scorer, long[] recordIds, String[] questionAnswers) {
+        List<Long> scoredIds = new ArrayList<>(recordIds.length);
+        List<String> scoredAnswers = new ArrayList<>(recordIds.length);
+        List<Object[]> scoreRows = new ArrayList<>(recordIds.length);
+        List<List<Object[]>> answerRows = new ArrayList<>(recordIds.length);
+        Long testId = scorer.getDefinition().getId();
+        int failed = 0;
+        for (int i = 0; i < recordIds.length; i++) {
+            try {
+                ScoringResult result = scorer.scoreWithAnswers(questionAnswers[i]);
+                List<Object[]> recordAnswerRows = new ArrayList<>();
+                ChildTestAnswerNeonService.addRows(recordAnswerRows, recordIds[i], testId, result.getAnswers());
+                scoredIds.add(recordIds[i]);
+                scoredAnswers.add(questionAnswers[i]);
+                scoreRows.add(new Object[]{
+                    result.getTotalScore(), result.getMaxScore(), result.getPercentageScore(),
+                    result.getResultLevel() != null ? result.getResultLevel().name() : null,
+                    result.getInterpretation(), result.getTotalQuestions(), result.getCorrectAnswers(),
+                    result.getSkippedQuestions(), null, recordIds[i]
+                });
+                answerRows.add(recordAnswerRows);
+            } catch (IllegalArgumentException e) {
+                failed++;
+                log.debug("Could not rescore child test record {}: {}", recordIds[i], e.getMessage());
+            }
+        }
+
+        int updated = scoredIds.isEmpty() ? 0
+            : writeTransaction.execute(status -> writeCurrent(scoredIds, scoredAnswers, scoreRows, answerRows));
+        return new BatchResult(recordIds.length, updated, failed, recordIds[recordIds.length - 1]);
+    }
+
+    private int writeCurrent(List<Long> scoredIds, List<String> scoredAnswers, List<Object[]> scoreRows,
+                             List<List<Object[]>> answerRows) {
+        Map<Long, String> currentAnswers = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(LOCK_RECORDS_SQL);
+            statement.setArray(1, connection.createArrayOf("bigint", scoredIds.toArray()));
+            return statement;
+        }, rs -> {
+            currentAnswers.put(rs.getLong(1), rs.getString(2));
+        });
+
+        List<Long> currentIds = new ArrayList<>(scoredIds.size());
+        List<Object[]> currentScoreRows = new ArrayList<>(scoredIds.size());
+        List<Object[]> currentAnswerRows = new ArrayList<>();
+        for (int i = 0; i < scoredIds.size(); i++) {
+            if (!Objects.equals(currentAnswers.get(scoredIds.get(i)), scoredAnswers.get(i))) {
+                log.debug("Skipping child test record {} changed since it was read for rescoring", scoredIds.get(i));
+                continue;
+            }
+            currentIds.add(scoredIds.get(i));
+            currentScoreRows.add(scoreRows.get(i));
+            currentAnswerRows.addAll(answerRows.get(i));
+        }
+        if (currentIds.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        for (Object[] row : currentScoreRows) {
+            row[UPDATED_AT_ARG] = updatedAt;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(UPDATE_SCORE_SQL, currentScoreRows, SCORE_ARG_TYPES);
+        answerService.writeAnswers(currentIds, currentAnswerRows);
+        int updated = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                updated += count;
+            }
+        }
+        return updated;
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // === INNER CLASSES ===
+
+    /**
+     * Trạng thái của một lần chạy job: gom bản ghi từ cursor thành lô, gửi lô cho pool luồng
+     * và lưu tiến độ theo thứ tự lô (lô sau chỉ được ghi nhận khi mọi lô trước đã xong)
+     */
+    private final class JobRun {
+
+        private final Long jobId;
+        private final CompiledScorer scorer;
+        private final AtomicBoolean cancelled;
+        private final Deque<Future<BatchResult>> pending = new ArrayDeque<>();
+        private final long[] recordIds = new long[batchSize];
+        private final String[] questionAnswers = new String[batchSize];
+        private int size;
+
+        JobRun(Long jobId, CompiledScorer scorer, AtomicBoolean cancelled) {
+            this.jobId = jobId;
+            this.scorer = scorer;
+            this.cancelled = cancelled;
+        }
+
+        void processRow(ResultSet rs) throws SQLException {
+            if (cancelled.get()) {
+                throw new JobCancelledException();
+            }
+            recordIds[size] = rs.getLong(1);
+            questionAnswers[size] = rs.getString(2);
+            size++;
+            if (size == batchSize) {
+                submitBatch();
+            }
+        }
+
+        void submitBatch() {
+            if (size == 0) {
+                return;
+            }
+            long[] batchIds = Arrays.copyOf(recordIds, size);
+            String[] batchAnswers = Arrays.copyOf(questionAnswers, size);
+            Arrays.fill(questionAnswers, null);
+            size = 0;
+
+            pending.addLast(workerExecutor.submit(() -> scoreAndWrite(scorer, batchIds, batchAnswers)));
+            // Giới hạn số lô đang xử lý để cursor không đọc vượt quá tốc độ ghi
+            while (pending.size() > threads) {
+                completeOldest();
+            }
+        }
+
+        void drain() {
+            while (!pending.isEmpty()) {
+                completeOldest();
+            }
+        }
+
+        void abandon() {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+        }
+
+        private void completeOldest() {
+            BatchResult result;
+            try {
+                result = pending.removeFirst().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Rescoring job " + jobId + " was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Rescoring batch failed: " + e.getCause().getMessage(), e.getCause());
+            }
+            jobRepository.addProgress(jobId, result.getProcessed(), result.getUpdated(), result.getFailed(),
+                result.getLastRecordId(), LocalDateTime.now());
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static class BatchResult {
+        private int processed;
+        private int updated;
+        private int failed;
+        private long lastRecordId;
+    }
+
+    private static class JobCancelledException extends RuntimeException {
+        JobCancelledException() {
+            super(null, null, false, false);
+        }
+    }
+}
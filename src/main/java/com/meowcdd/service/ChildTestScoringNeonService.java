@@ -0,0 +1,506 @@
+package com.meowcdd.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meowcdd.entity.neon.ChildTestRecordNeon;
+import com.meowcdd.entity.neon.ChildTestRecordNeon.ResultLevel;
+import com.meowcdd.service.CDDTestDefinitionNeonService.CDDTestDefinition;
+import com.meowcdd.service.CDDTestDefinitionNeonService.Question;
+import com.meowcdd.service.CDDTestDefinitionNeonService.ScoreRange;
+import com.meowcdd.service.CDDTestDefinitionNeonService.ScoringCriteria;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service chấm điểm bài test của trẻ phía server
+ * Tiêu chí chấm điểm (scoringCriteriaJson) của mỗi bài test được biên dịch một lần thành bộ chấm điểm
+ * dạng mảng (điểm từng câu, ngưỡng khoảng điểm); câu trả lời được đọc bằng streaming parser,
+ * không dựng cây JSON hay object cho từng câu. Câu trả lời chuẩn hóa theo từng câu chỉ được tạo khi cần ghi
+ * (scoreWithAnswers). Bộ chấm điểm được biên dịch lại khi định nghĩa bài test thay đổi.
+ */
+@Service
+@Slf4j
+public class ChildTestScoringNeonService {
+
+    private static final String DEFAULT_LANGUAGE = "vi";
+
+    private final CDDTestDefinitionNeonService cddTestDefinitionService;
+    private final JsonFactory jsonFactory;
+
+    private final Map<Long, CompiledScorer> scorers = new ConcurrentHashMap<>();
+
+    public ChildTestScoringNeonService(CDDTestDefinitionNeonService cddTestDefinitionService, ObjectMapper objectMapper) {
+        this.cddTestDefinitionService = cddTestDefinitionService;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Chấm điểm bản ghi theo định nghĩa hiện tại của bài test và ghi kết quả vào bản ghi
+     * Bản ghi không phải bài test CDD, không có câu trả lời hoặc bài test chưa có tiêu chí chấm điểm được giữ nguyên
+     *
+     * @return kết quả chấm kèm câu trả lời chuẩn hóa (để ghi child_test_answers mà không đọc lại JSON);
+     *         null nếu bản ghi không được chấm điểm
+     * @throws IllegalArgumentException nếu bản ghi CDD có testId không phải ID số của bài test CDD
+     */
+    public ScoringResult applyScore(ChildTestRecordNeon record) {
+        record.resolveCddTestId();
+        if (record.getTestType() != ChildTestRecordNeon.TestType.CDD_TEST || record.getQuestionAnswers() == null
+                || record.getCddTestId() == null) {
+            return null;
+        }
+        Optional<CompiledScorer> scorer = getScorer(record.getCddTestId());
+        if (scorer.isEmpty()) {
+            return null;
+        }
+
+        ScoringResult result = scorer.get().scoreWithAnswers(record.getQuestionAnswers());
+        record.setTotalScore(result.getTotalScore());
+        record.setMaxScore(result.getMaxScore());
+        record.setPercentageScore(result.getPercentageScore());
+        record.setResultLevel(result.getResultLevel());
+        record.setInterpretation(result.getInterpretation());
+        record.setTotalQuestions(result.getTotalQuestions());
+        record.setCorrectAnswers(result.getCorrectAnswers());
+        record.setSkippedQuestions(result.getSkippedQuestions());
+        return result;
+    }
+
+    /**
+     * Lấy bộ chấm điểm đã biên dịch của bài test; rỗng nếu bài test không tồn tại hoặc không có tiêu chí chấm điểm
+     */
+    public Optional<CompiledScorer> getScorer(Long testId) {
+        Optional<CDDTestDefinition> definition = cddTestDefinitionService.getDefinition(testId);
+        if (definition.isEmpty() || definition.get().getScoringCriteria() == null) {
+            scorers.remove(testId);
+            return Optional.empty();
+        }
+
+        // Định nghĩa trong cache là bất biến: cùng object nghĩa là tiêu chí chưa đổi
+        CompiledScorer scorer = scorers.get(testId);
+        if (scorer == null || scorer.getDefinition() != definition.get()) {
+            scorer = compile(definition.get());
+            scorers.put(testId, scorer);
+            log.debug("Compiled scorer for CDD test {} version {}", testId, definition.get().getVersion());
+        }
+        return Optional.of(scorer);
+    }
+
+    // === HELPER METHODS ===
+
+    private CompiledScorer compile(CDDTestDefinition definition) {
+        ScoringCriteria criteria = definition.getScoringCriteria();
+        List<Question> questions = definition.getQuestions();
+        int questionCount = questions.size();
+
+        Map<String, Integer> indexById = new HashMap<>();
+        int maxNumber = 0;
+        for (Question question : questions) {
+            if (question.getQuestionNumber() != null) {
+                maxNumber = Math.max(maxNumber, question.getQuestionNumber());
+            }
+        }
+        int[] indexByNumber = new int[maxNumber + 1];
+        Arrays.fill(indexByNumber, -1);
+
+        String[] questionKeys = new String[questionCount];
+        double[] yesPoints = new double[questionCount];
+        double[] noPoints = new double[questionCount];
+        double maxScore = 0;
+        for (int i = 0; i < questionCount; i++) {
+            Question question = questions.get(i);
+            questionKeys[i] = questionKey(question);
+            if (question.getQuestionId() != null) {
+                indexById.put(question.getQuestionId(), i);
+            }
+            if (question.getQuestionNumber() != null && question.getQuestionNumber() >= 0) {
+                indexByNumber[question.getQuestionNumber()] = i;
+            }
+            yesPoints[i] = (double) criteria.getYesScore() * question.getWeight();
+            noPoints[i] = (double) criteria.getNoScore() * question.getWeight();
+            maxScore += Math.max(yesPoints[i], noPoints[i]);
+        }
+
+        List<ScoreRange> ranges = criteria.getScoreRanges();
+        double[] rangeMin = new double[ranges.size()];
+        double[] rangeMax = new double[ranges.size()];
+        ResultLevel[] rangeLevels = new ResultLevel[ranges.size()];
+        String[] rangeInterpretations = new String[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            ScoreRange range = ranges.get(i);
+            rangeMin[i] = range.getMinScore() != null ? range.getMinScore() : Double.NEGATIVE_INFINITY;
+            rangeMax[i] = range.getMaxScore() != null ? range.getMaxScore() : Double.POSITIVE_INFINITY;
+            rangeLevels[i] = toResultLevel(range.getLevel() != null ? range.getLevel() : range.getKey());
+            rangeInterpretations[i] = interpretationOf(range, criteria);
+        }
+
+        return new CompiledScorer(definition, jsonFactory, indexById, indexByNumber, questionKeys, yesPoints, noPoints, maxScore,
+            rangeMin, rangeMax, rangeLevels, rangeInterpretations, criteria.getInterpretation());
+    }
+
+    private static String interpretationOf(ScoreRange range, ScoringCriteria criteria) {
+        String description = range.getDescriptions().get(DEFAULT_LANGUAGE);
+        if (description == null && !range.getDescriptions().isEmpty()) {
+            description = range.getDescriptions().values().iterator().next();
+        }
+        if (description == null) {
+            description = criteria.getInterpretation();
+        }
+        if (range.getRecommendation() != null) {
+            return description != null ? description + " " + range.getRecommendation() : range.getRecommendation();
+        }
+        return description;
+    }
+
+    /**
+     * Mức trong tiêu chí chấm điểm có thể là tên ResultLevel hoặc mức nguy cơ (LOW_RISK, MEDIUM_RISK, HIGH_RISK)
+     */
+    static ResultLevel toResultLevel(String level) {
+        if (level == null) {
+            return null;
+        }
+        String normalized = level.trim().toUpperCase().replace('-', '_').replace(' ', '_');
+        for (ResultLevel resultLevel : ResultLevel.values()) {
+            if (resultLevel.name().equals(normalized)) {
+                return resultLevel;
+            }
+        }
+        switch (normalized) {
+            case "LOW_RISK", "NO_RISK", "NORMAL":
+                return ResultLevel.GOOD;
+            case "MEDIUM_RISK", "MODERATE_RISK", "MONITOR":
+                return ResultLevel.NEEDS_ATTENTION;
+            case "HIGH_RISK", "REFER":
+                return ResultLevel.NEEDS_INTERVENTION;
+            default:
+                return null;
+        }
+    }
+
+    // Dùng khi tiêu chí không có khoảng điểm nào khớp với tổng điểm
+    static ResultLevel levelForPercentage(double percentage) {
+        if (percentage >= 90) {
+            return ResultLevel.EXCELLENT;
+        } else if (percentage >= 75) {
+            return ResultLevel.GOOD;
+        } else if (percentage >= 50) {
+            return ResultLevel.AVERAGE;
+        } else if (percentage >= 25) {
+            return ResultLevel.BELOW_AVERAGE;
+        }
+        return ResultLevel.POOR;
+    }
+
+    // === INNER CLASSES ===
+
+    /**
+     * Bộ chấm điểm đã biên dịch cho một phiên bản định nghĩa bài test; bất biến, dùng chung giữa các luồng
+     */
+    public static final class CompiledScorer {
+
+        private final CDDTestDefinition definition;
+        private final JsonFactory jsonFactory;
+        private final Map<String, Integer> indexById;
+        private final int[] indexByNumber;
+        private final String[] questionKeys;
+        private final double[] yesPoints;
+        private final double[] noPoints;
+        private final double maxScore;
+        private final double[] rangeMin;
+        private final double[] rangeMax;
+        private final ResultLevel[] rangeLevels;
+        private final String[] rangeInterpretations;
+        private final String defaultInterpretation;
+
+        private CompiledScorer(CDDTestDefinition definition, JsonFactory jsonFactory, Map<String, Integer> indexById,
+                               int[] indexByNumber, String[] questionKeys, double[] yesPoints, double[] noPoints, double maxScore,
+                               double[] rangeMin, double[] rangeMax, ResultLevel[] rangeLevels,
+                               String[] rangeInterpretations, String defaultInterpretation) {
+            this.definition = definition;
+            this.jsonFactory = jsonFactory;
+            this.indexById = indexById;
+            this.indexByNumber = indexByNumber;
+            this.questionKeys = questionKeys;
+            this.yesPoints = yesPoints;
+            this.noPoints = noPoints;
+            this.maxScore = maxScore;
+            this.rangeMin = rangeMin;
+            this.rangeMax = rangeMax;
+            this.rangeLevels = rangeLevels;
+            this.rangeInterpretations = rangeInterpretations;
+            this.defaultInterpretation = defaultInterpretation;
+        }
+
+        public CDDTestDefinition getDefinition() {
+            return definition;
+        }
+
+        /**
+         * Chấm điểm chuỗi JSON câu trả lời
+         * Hỗ trợ {"questionId": answer, ...} hoặc [{"questionId"|"questionNumber": ..., "answer": ...}, ...];
+         * câu trả lời có/không dạng boolean, 1/0 hoặc "yes"/"no"/"có"/"không". Câu hỏi lạ hoặc trả lời lạ được bỏ qua.
+         * Chỉ tính điểm, không tạo object cho từng câu (answers của kết quả là null)
+         */
+        public ScoringResult score(String questionAnswersJson) {
+            return score(questionAnswersJson, null);
+        }
+
+        /**
+         * Chấm điểm như score và trả kèm câu trả lời chuẩn hóa của các câu đã trả lời, dùng khi cần ghi child_test_answers
+         */
+        public ScoringResult scoreWithAnswers(String questionAnswersJson) {
+            return score(questionAnswersJson, new ArrayList<>(yesPoints.length));
+        }
+
+        private ScoringResult score(String questionAnswersJson, List<QuestionAnswer> questionAnswers) {
+            int questionCount = yesPoints.length;
+            // 0 = chưa trả lời, 1 = có, 2 = không; câu trả lời sau ghi đè câu trước cho cùng một câu hỏi
+            byte[] answers = new byte[questionCount];
+
+            try (JsonParser parser = jsonFactory.createParser(questionAnswersJson)) {
+                JsonToken root = parser.nextToken();
+                if (root == JsonToken.START_OBJECT) {
+                    readAnswerObject(parser, answers);
+                } else if (root == JsonToken.START_ARRAY) {
+                    readAnswerArray(parser, answers);
+                } else {
+                    throw new IllegalArgumentException("questionAnswers must be a JSON object or array");
+                }
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Invalid questionAnswers JSON: " + e.getMessage(), e);
+            }
+
+            double totalScore = 0;
+            int answered = 0;
+            int correct = 0;
+            for (int i = 0; i < questionCount; i++) {
+                if (answers[i] == 0) {
+                    continue;
+                }
+                double points = answers[i] == 1 ? yesPoints[i] : noPoints[i];
+                totalScore += points;
+                answered++;
+                if (questionAnswers != null) {
+                    questionAnswers.add(new QuestionAnswer(questionKeys[i], definition.getQuestions().get(i).getQuestionNumber(),
+                        answers[i] == 1, points));
+                }
+                if (points >= Math.max(yesPoints[i], noPoints[i])) {
+                    correct++;
+                }
+            }
+            double percentage = maxScore > 0 ? totalScore * 100.0 / maxScore : 0.0;
+
+            ResultLevel level = null;
+            String interpretation = defaultInterpretation;
+            for (int i = 0; i < rangeMin.length; i++) {
+                if (totalScore >= rangeMin[i] && totalScore <= rangeMax[i]) {
+                    level = rangeLevels[i];
+                    interpretation = rangeInterpretations[i] != null ? rangeInterpretations[i] : defaultInterpretation;
+                    break;
+                }
+            }
+            if (level == null) {
+                level = levelForPercentage(percentage);
+            }
+
+            return ScoringResult.builder()
+                .totalScore(totalScore)
+                .maxScore(maxScore)
+                .percentageScore(Math.round(percentage * 100.0) / 100.0)
+                .resultLevel(level)
+                .interpretation(interpretation)
+                .totalQuestions(questionCount)
+                .correctAnswers(correct)
+                .skippedQuestions(questionCount - answered)
+                .answers(questionAnswers)
+                .build();
+        }
+
+        private void readAnswerObject(JsonParser parser, byte[] answers) throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int index = indexOf(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (index >= 0) {
+                    record(answers, index, parser, value);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        private void readAnswerArray(JsonParser parser, byte[] answers) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int index = -1;
+                byte answer = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "questionId":
+                            if (index < 0 && value != JsonToken.VALUE_NULL) {
+                                index = indexOf(parser.getText());
+                            }
+                            break;
+                        case "questionNumber":
+                            if (index < 0 && value == JsonToken.VALUE_NUMBER_INT) {
+                                index = indexOf(parser.getIntValue());
+                            }
+                            break;
+                        case "answer":
+                        case "value":
+                            answer = parseAnswer(parser, value);
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+                if (index >= 0 && answer != 0) {
+                    answers[index] = answer;
+                }
+            }
+        }
+
+        private void record(byte[] answers, int index, JsonParser parser, JsonToken value) throws IOException {
+            if (value == JsonToken.START_OBJECT) {
+                // Dạng {"q1": {"answer": true, ...}}
+                byte answer = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken fieldValue = parser.nextToken();
+                    if ("answer".equals(field) || "value".equals(field)) {
+                        answer = parseAnswer(parser, fieldValue);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (answer != 0) {
+                    answers[index] = answer;
+                }
+                return;
+            }
+            byte answer = parseAnswer(parser, value);
+            if (answer != 0) {
+                answers[index] = answer;
+            }
+        }
+
+        private int indexOf(String questionId) {
+            Integer index = indexById.get(questionId);
+            if (index != null) {
+                return index;
+            }
+            // Câu hỏi có thể được tham chiếu bằng số thứ tự dạng chuỗi ("1", "2"...)
+            int number = 0;
+            int length = questionId.length();
+            if (length == 0 || length > 9) {
+                return -1;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = questionId.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return indexOf(number);
+        }
+
+        private int indexOf(int questionNumber) {
+            return questionNumber >= 0 && questionNumber < indexByNumber.length ? indexByNumber[questionNumber] : -1;
+        }
+
+        private static byte parseAnswer(JsonParser parser, JsonToken value) throws IOException {
+            switch (value) {
+                case VALUE_TRUE:
+                    return 1;
+                case VALUE_FALSE:
+                    return 2;
+                case VALUE_NUMBER_INT:
+                    int number = parser.getIntValue();
+                    return number == 1 ? (byte) 1 : number == 0 ? (byte) 2 : 0;
+                case VALUE_STRING:
+                    return parseAnswerText(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                case START_OBJECT:
+                case START_ARRAY:
+                    parser.skipChildren();
+                    return 0;
+                default:
+                    return 0;
+            }
+        }
+
+        // So khớp trực tiếp trên buffer ký tự của parser để không tạo String cho mỗi câu trả lời
+        private static byte parseAnswerText(char[] text, int offset, int length) {
+            if (matches(text, offset, length, "yes") || matches(text, offset, length, "true")
+                || matches(text, offset, length, "y") || matches(text, offset, length, "1")
+                || matches(text, offset, length, "có") || matches(text, offset, length, "co")) {
+                return 1;
+            }
+            if (matches(text, offset, length, "no") || matches(text, offset, length, "false")
+                || matches(text, offset, length, "n") || matches(text, offset, length, "0")
+                || matches(text, offset, length, "không") || matches(text, offset, length, "khong")) {
+                return 2;
+            }
+            return 0;
+        }
+
+        private static boolean matches(char[] text, int offset, int length, String expected) {
+            if (length != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (Character.toLowerCase(text[offset + i]) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Value
+    @Builder
+    public static class ScoringResult {
+        double totalScore;
+        double maxScore;
+        double percentageScore;
+        ResultLevel resultLevel;
+        String interpretation;
+        int totalQuestions;
+        int correctAnswers;
+        int skippedQuestions;
+        List<QuestionAnswer> answers; // Các câu đã trả lời theo thứ tự câu hỏi trong định nghĩa; null nếu chấm bằng score
+    }
+
+    /**
+     * Câu trả lời đã chuẩn hóa của một câu hỏi: khóa câu hỏi theo định nghĩa, có/không và số điểm được tính
+     */
+    @Value
+    public static class QuestionAnswer {
+        String questionId;
+        Integer questionNumber;
+        boolean answer;
+        double score;
+    }
+
+    // Câu hỏi không có questionId được nhận diện bằng số thứ tự
+    static String questionKey(Question question) {
+        return question.getQuestionId() != null ? question.getQuestionId() : String.valueOf(question.getQuestionNumber());
+    }
+}
@@ -0,0 +1,131 @@
+package com.meowcdd.controller;
+
+import com.meowcdd.entity.neon.BookContent;
+import com.meowcdd.repository.neon.BookContentNeonRepository.ContentInfo;
+import com.meowcdd.repository.neon.BookNeonRepository.BookVersionInfo;
+import com.meowcdd.service.BookNeonService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Kiểm tra mã trạng thái và Content-Range khi tải file nội dung sách theo Range
+ */
+class BookNeonControllerRangeTest {
+
+    private static final String SHA256 = "abc123";
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+    private static final String URL = "/neon/books/1/content-file";
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BookNeonService bookService = mock(BookNeonService.class);
+
+        BookVersionInfo book = mock(BookVersionInfo.class);
+        when(book.getId()).thenReturn(1L);
+        when(book.getContentSha256()).thenReturn(SHA256);
+        when(book.getContentFileName()).thenReturn("book.txt");
+        when(book.getContentMimeType()).thenReturn("text/plain");
+        when(book.getContentUploadedAt()).thenReturn(LocalDateTime.of(2024, 1, 1, 0, 0));
+        when(bookService.getBookVersionInfo(1L)).thenReturn(book);
+
+        ContentInfo content = mock(ContentInfo.class);
+        when(content.getSha256()).thenReturn(SHA256);
+        when(content.getSize()).thenReturn((long) CONTENT.length);
+        when(content.getEffectiveCodec()).thenReturn(BookContent.Codec.IDENTITY);
+        when(bookService.getContentInfo(SHA256)).thenReturn(Optional.of(content));
+
+        doAnswer(invocation -> {
+            long start = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            WritableByteChannel target = invocation.getArgument(3);
+            target.write(ByteBuffer.wrap(CONTENT, (int) start, (int) length));
+            return null;
+        }).when(bookService).copyContentRange(any(), anyLong(), anyLong(), any());
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new BookNeonController(bookService)).build();
+    }
+
+    @Test
+    void fullDownloadReturnsOk() throws Exception {
+        MvcResult started = mockMvc.perform(get(URL)).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void singleRangeReturnsPartialContent() throws Exception {
+        MvcResult started = mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/20"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void multipleRangesReturnPartialContentAsByteranges() throws Exception {
+        MvcResult started = mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=0-1,-3"))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        MvcResult result = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andReturn();
+
+        assertThat(result.getResponse().getContentType()).startsWith("multipart/byteranges");
+        String body = result.getResponse().getContentAsString(StandardCharsets.US_ASCII);
+        assertThat(body)
+                .contains(HttpHeaders.CONTENT_RANGE + ": bytes 0-1/20\r\n\r\n01")
+                .contains(HttpHeaders.CONTENT_RANGE + ": bytes 17-19/20\r\n\r\nhij");
+    }
+
+    @Test
+    void ifRangeMismatchReturnsFullFile() throws Exception {
+        MvcResult started = mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=2-5")
+                        .header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void unsatisfiableRangeReturns416() throws Exception {
+        mockMvc.perform(get(URL).header(HttpHeaders.RANGE, "bytes=50-60"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */20"));
+    }
+}
@@ -0,0 +1,169 @@
+package com.meowcdd.service;
+
+import com.meowcdd.dto.BookDto;
+import com.meowcdd.entity.neon.Book;
+import com.meowcdd.entity.neon.DevelopmentalDomain;
+import com.meowcdd.entity.neon.SupportedFormat;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đếm số câu SQL mà mỗi API danh sách sách phát ra khi chuyển sang DTO
+ * (supportedFormat qua entity graph, developmentalDomains qua @BatchSize).
+ * Số câu lệnh phải cố định, không tăng theo số sách trong trang (N+1).
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(BookNeonService.class)
+class BookNeonServiceQueryCountTest {
+
+    private static final int BOOK_COUNT = 12;
+    private static final int PAGE_SIZE = 5;
+
+    @SpringBootConfiguration
+    @EnableJpaRepositories(basePackages = "com.meowcdd.repository.neon")
+    @EntityScan(basePackages = "com.meowcdd.entity.neon")
+    static class TestConfig {
+    }
+
+    @MockBean
+    private BookContentNeonService bookContentService;
+    @MockBean
+    private BookViewCounterService bookViewCounterService;
+    @MockBean
+    private BookStatisticsNeonService bookStatisticsService;
+    @MockBean
+    private BookContentVerificationService bookContentVerificationService;
+    @MockBean
+    private BookRecommendationNeonService bookRecommendationService;
+
+    @Autowired
+    private BookNeonService bookService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long formatId;
+    private UUID domainId;
+
+    @BeforeEach
+    void setUp() {
+        SupportedFormat pdf = saveFormat("PDF Document", ".pdf");
+        SupportedFormat epub = saveFormat("EPUB Book", ".epub");
+        DevelopmentalDomain language = saveDomain("language_development");
+        DevelopmentalDomain cognitive = saveDomain("cognitive_development");
+        formatId = pdf.getId();
+        domainId = language.getId();
+
+        for (int i = 0; i < BOOK_COUNT; i++) {
+            Book book = Book.builder()
+                .title("Book " + i)
+                .author("Author " + i)
+                .supportedFormat(i % 2 == 0 ? pdf : epub)
+                .developmentalDomains(new HashSet<>(i % 3 == 0 ? Set.of(language, cognitive) : Set.of(language)))
+                .isActive(true)
+                .isFeatured(true)
+                .contentSha256("sha-" + i)
+                .contentFileSize(1024L)
+                .contentFileType("PDF")
+                .contentUploadedBy("uploader")
+                .build();
+            entityManager.persist(book);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllBooksUsesPageCountAndDomainBatchQueries() {
+        assertStatements(3, PAGE_SIZE, () -> bookService.getAllBooks(0, PAGE_SIZE, "id", "asc").getContent());
+    }
+
+    @Test
+    void getBooksByCursorUsesKeysetAndDomainBatchQueries() {
+        assertStatements(2, PAGE_SIZE, () -> bookService.getBooksByCursor(null, PAGE_SIZE, "title", "asc", false).getContent());
+    }
+
+    @Test
+    void searchBooksByKeywordUsesPageCountAndDomainBatchQueries() {
+        assertStatements(3, PAGE_SIZE, () -> bookService.searchBooksByKeyword("book", 0, PAGE_SIZE).getContent());
+    }
+
+    @Test
+    void findBooksByFiltersUsesPageCountAndDomainBatchQueries() {
+        assertStatements(3, PAGE_SIZE, () -> bookService.findBooksByFilters(null, "author", null, null, true, null, 0, PAGE_SIZE).getContent());
+    }
+
+    @Test
+    void unpagedListsUseSingleQuery() {
+        Map<String, Supplier<List<BookDto>>> endpoints = Map.of(
+            "getBooksByFormat", () -> bookService.getBooksByFormat(formatId),
+            "getBooksByDevelopmentalDomain", () -> bookService.getBooksByDevelopmentalDomain(domainId),
+            "getFeaturedBooks", () -> bookService.getFeaturedBooks(),
+            "getBooksWithContentFiles", () -> bookService.getBooksWithContentFiles(),
+            "getBooksByContentFileType", () -> bookService.getBooksByContentFileType("PDF"),
+            "getBooksByUploader", () -> bookService.getBooksByUploader("uploader")
+        );
+        endpoints.forEach((name, endpoint) -> {
+            entityManager.clear();
+            statistics.clear();
+            List<BookDto> books = endpoint.get();
+            assertThat(books).as(name).isNotEmpty();
+            assertThat(statistics.getPrepareStatementCount()).as(name).isEqualTo(1);
+        });
+    }
+
+    private void assertStatements(long expected, int expectedSize, Supplier<List<BookDto>> endpoint) {
+        List<BookDto> books = endpoint.get();
+        assertThat(books).hasSize(expectedSize);
+        assertThat(books).allSatisfy(book -> {
+            assertThat(book.getSupportedFormatName()).isNotNull();
+            assertThat(book.getDevelopmentalDomainIds()).isNotEmpty();
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+    }
+
+    private SupportedFormat saveFormat(String name, String extension) {
+        SupportedFormat format = SupportedFormat.builder()
+            .formatName(name)
+            .fileExtension(extension)
+            .category(SupportedFormat.FormatCategory.DOCUMENT)
+            .isActive(true)
+            .build();
+        entityManager.persist(format);
+        return format;
+    }
+
+    private DevelopmentalDomain saveDomain(String name) {
+        DevelopmentalDomain domain = DevelopmentalDomain.builder()
+            .name(name)
+            .displayedName(Map.of("vi", name, "en", name))
+            .build();
+        entityManager.persist(domain);
+        return domain;
+    }
+}
@@ -0,0 +1,222 @@
+package com.meowcdd.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meowcdd.entity.neon.ChildTestRecordNeon.ResultLevel;
+import com.meowcdd.service.CDDTestDefinitionNeonService.CDDTestDefinition;
+import com.meowcdd.service.CDDTestDefinitionNeonService.Question;
+import com.meowcdd.service.CDDTestDefinitionNeonService.ScoreRange;
+import com.meowcdd.service.CDDTestDefinitionNeonService.ScoringCriteria;
+import com.meowcdd.service.ChildTestScoringNeonService.CompiledScorer;
+import com.meowcdd.service.ChildTestScoringNeonService.QuestionAnswer;
+import com.meowcdd.service.ChildTestScoringNeonService.ScoringResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kiểm tra bộ chấm điểm đã biên dịch: các dạng JSON câu trả lời, cách viết có/không,
+ * khoảng điểm theo tiêu chí và mức dự phòng theo phần trăm
+ */
+class ChildTestScoringNeonServiceTest {
+
+    private static final long TEST_ID = 1L;
+
+    private CompiledScorer scorer;
+
+    @BeforeEach
+    void setUp() {
+        // 4 câu, có = 1 điểm, không = 0 điểm, câu q4 hệ số 2: điểm tối đa 5
+        CDDTestDefinition definition = CDDTestDefinition.builder()
+            .id(TEST_ID)
+            .version("1.0")
+            .questions(List.of(question("q1", 1, 1), question("q2", 2, 1), question("q3", 3, 1), question("q4", 4, 2)))
+            .scoringCriteria(ScoringCriteria.builder()
+                .yesScore(1)
+                .noScore(0)
+                .scoreRanges(List.of(
+                    range("high", 0, 1, "HIGH_RISK", "Nguy cơ cao"),
+                    range("medium", 2, 3, "medium-risk", "Cần theo dõi")))
+                .interpretation("Không có khoảng điểm phù hợp")
+                .build())
+            .build();
+
+        CDDTestDefinitionNeonService definitionService = mock(CDDTestDefinitionNeonService.class);
+        when(definitionService.getDefinition(TEST_ID)).thenReturn(Optional.of(definition));
+        scorer = new ChildTestScoringNeonService(definitionService, new ObjectMapper()).getScorer(TEST_ID).orElseThrow();
+    }
+
+    // === DẠNG JSON CÂU TRẢ LỜI ===
+
+    @Test
+    void scoresObjectOfAnswers() {
+        ScoringResult result = scorer.scoreWithAnswers("{\"q1\": true, \"q2\": \"no\", \"q3\": 1}");
+
+        assertThat(result.getTotalScore()).isEqualTo(2.0);
+        assertThat(result.getMaxScore()).isEqualTo(5.0);
+        assertThat(result.getPercentageScore()).isEqualTo(40.0);
+        assertThat(result.getTotalQuestions()).isEqualTo(4);
+        assertThat(result.getCorrectAnswers()).isEqualTo(2);
+        assertThat(result.getSkippedQuestions()).isEqualTo(1);
+        assertThat(result.getResultLevel()).isEqualTo(ResultLevel.NEEDS_ATTENTION);
+        assertThat(result.getInterpretation()).isEqualTo("Cần theo dõi");
+        assertThat(result.getAnswers()).containsExactly(
+            new QuestionAnswer("q1", 1, true, 1.0),
+            new QuestionAnswer("q2", 2, false, 0.0),
+            new QuestionAnswer("q3", 3, true, 1.0));
+    }
+
+    @Test
+    void scoresArrayOfAnswersByIdOrNumber() {
+        ScoringResult result = scorer.scoreWithAnswers("[{\"questionNumber\": 1, \"answer\": \"yes\"}, "
+            + "{\"questionId\": \"q4\", \"value\": \"có\"}, {\"questionId\": \"unknown\", \"answer\": true}, 42]");
+
+        assertThat(result.getTotalScore()).isEqualTo(3.0);
+        assertThat(result.getSkippedQuestions()).isEqualTo(2);
+        assertThat(result.getAnswers()).extracting(QuestionAnswer::getQuestionId).containsExactly("q1", "q4");
+        assertThat(result.getAnswers().get(1).getScore()).isEqualTo(2.0);
+    }
+
+    @Test
+    void scoresNestedAnswerObjectsAndNumericKeys() {
+        ScoringResult result = scorer.scoreWithAnswers("{\"q1\": {\"answer\": \"y\", \"note\": [1, 2]}, \"2\": {\"value\": false}, "
+            + "\"q9\": {\"answer\": true}}");
+
+        assertThat(result.getTotalScore()).isEqualTo(1.0);
+        assertThat(result.getAnswers()).containsExactly(
+            new QuestionAnswer("q1", 1, true, 1.0),
+            new QuestionAnswer("q2", 2, false, 0.0));
+    }
+
+    @Test
+    void plainScoreMatchesScoreWithAnswersWithoutCollectingAnswers() {
+        String json = "{\"q1\": true, \"q2\": \"no\", \"q3\": 1}";
+        ScoringResult plain = scorer.score(json);
+        ScoringResult withAnswers = scorer.scoreWithAnswers(json);
+
+        assertThat(plain.getAnswers()).isNull();
+        assertThat(plain).usingRecursiveComparison().ignoringFields("answers").isEqualTo(withAnswers);
+    }
+
+    @Test
+    void laterAnswerOverridesEarlierAnswer() {
+        ScoringResult result = scorer.scoreWithAnswers("[{\"questionId\": \"q1\", \"answer\": true}, {\"questionNumber\": 1, \"answer\": false}]");
+
+        assertThat(result.getTotalScore()).isEqualTo(0.0);
+        assertThat(result.getAnswers()).containsExactly(new QuestionAnswer("q1", 1, false, 0.0));
+    }
+
+    // === CÁCH VIẾT CÓ/KHÔNG ===
+
+    @ParameterizedTest
+    @ValueSource(strings = {"true", "1", "\"yes\"", "\"YES\"", "\"y\"", "\"true\"", "\"1\"", "\"có\"", "\"Có\"", "\"co\""})
+    void recognisesYesSpellings(String answer) {
+        ScoringResult result = scorer.scoreWithAnswers("{\"q1\": " + answer + "}");
+
+        assertThat(result.getAnswers()).containsExactly(new QuestionAnswer("q1", 1, true, 1.0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"false", "0", "\"no\"", "\"No\"", "\"n\"", "\"false\"", "\"0\"", "\"không\"", "\"KHÔNG\"", "\"khong\""})
+    void recognisesNoSpellings(String answer) {
+        ScoringResult result = scorer.scoreWithAnswers("{\"q1\": " + answer + "}");
+
+        assertThat(result.getAnswers()).containsExactly(new QuestionAnswer("q1", 1, false, 0.0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"2", "null", "\"maybe\"", "\"\"", "[true]", "1.0"})
+    void ignoresUnrecognisedAnswers(String answer) {
+        ScoringResult result = scorer.scoreWithAnswers("{\"q1\": " + answer + "}");
+
+        assertThat(result.getAnswers()).isEmpty();
+        assertThat(result.getSkippedQuestions()).isEqualTo(4);
+    }
+
+    // === KHOẢNG ĐIỂM VÀ MỨC DỰ PHÒNG ===
+
+    @Test
+    void usesMatchingScoreRange() {
+        ScoringResult result = scorer.score("{\"q1\": false}");
+
+        assertThat(result.getResultLevel()).isEqualTo(ResultLevel.NEEDS_INTERVENTION);
+        assertThat(result.getInterpretation()).isEqualTo("Nguy cơ cao");
+    }
+
+    @Test
+    void fallsBackToPercentageLevelWhenNoRangeMatches() {
+        ScoringResult result = scorer.score("{\"q1\": true, \"q2\": true, \"q3\": true, \"q4\": true}");
+
+        assertThat(result.getTotalScore()).isEqualTo(5.0);
+        assertThat(result.getPercentageScore()).isEqualTo(100.0);
+        assertThat(result.getResultLevel()).isEqualTo(ResultLevel.EXCELLENT);
+        assertThat(result.getInterpretation()).isEqualTo("Không có khoảng điểm phù hợp");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "100, EXCELLENT", "90, EXCELLENT", "89.99, GOOD", "75, GOOD", "74.99, AVERAGE", "50, AVERAGE",
+        "49.99, BELOW_AVERAGE", "25, BELOW_AVERAGE", "24.99, POOR", "0, POOR"
+    })
+    void levelForPercentageUsesFixedThresholds(double percentage, ResultLevel expected) {
+        assertThat(ChildTestScoringNeonService.levelForPercentage(percentage)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "excellent, EXCELLENT", "NEEDS_INTERVENTION, NEEDS_INTERVENTION", "needs attention, NEEDS_ATTENTION",
+        "LOW_RISK, GOOD", "no-risk, GOOD", "Normal, GOOD",
+        "medium risk, NEEDS_ATTENTION", "MODERATE_RISK, NEEDS_ATTENTION", "monitor, NEEDS_ATTENTION",
+        "high-risk, NEEDS_INTERVENTION", "REFER, NEEDS_INTERVENTION"
+    })
+    void toResultLevelMapsLevelNamesAndRiskLevels(String level, ResultLevel expected) {
+        assertThat(ChildTestScoringNeonService.toResultLevel(level)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"", "unknown", "VERY_HIGH_RISK"})
+    void toResultLevelReturnsNullForUnknownLevels(String level) {
+        assertThat(ChildTestScoringNeonService.toResultLevel(level)).isNull();
+    }
+
+    // === JSON KHÔNG HỢP LỆ ===
+
+    @ParameterizedTest
+    @ValueSource(strings = {"{\"q1\": tru", "[{\"questionId\": \"q1\",", "{\"q1\" true}", "not json", "\"yes\"", "42", ""})
+    void rejectsMalformedJson(String json) {
+        assertThatThrownBy(() -> scorer.score(json)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // === HELPER METHODS ===
+
+    private static Question question(String questionId, int questionNumber, int weight) {
+        return Question.builder()
+            .questionId(questionId)
+            .questionNumber(questionNumber)
+            .texts(Map.of("vi", "Câu hỏi " + questionNumber))
+            .weight(weight)
+            .build();
+    }
+
+    private static ScoreRange range(String key, int minScore, int maxScore, String level, String description) {
+        return ScoreRange.builder()
+            .key(key)
+            .minScore(minScore)
+            .maxScore(maxScore)
+            .level(level)
+            .descriptions(Map.of("vi", description))
+            .build();
+    }
+}
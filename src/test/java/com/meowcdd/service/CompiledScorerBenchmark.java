@@ -0,0 +1,114 @@
+package com.meowcdd.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meowcdd.service.CDDTestDefinitionNeonService.CDDTestDefinition;
+import com.meowcdd.service.CDDTestDefinitionNeonService.Question;
+import com.meowcdd.service.CDDTestDefinitionNeonService.ScoreRange;
+import com.meowcdd.service.CDDTestDefinitionNeonService.ScoringCriteria;
+import com.meowcdd.service.ChildTestScoringNeonService.CompiledScorer;
+import com.meowcdd.service.ChildTestScoringNeonService.ScoringResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH cho CompiledScorer.score (không chạy cùng mvn test)
+ * Chạy: mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *       java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.meowcdd.service.CompiledScorerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledScorerBenchmark {
+
+    @Param({"20", "100"})
+    private int questionCount;
+
+    private CompiledScorer scorer;
+    private String objectAnswers;
+    private String arrayAnswers;
+
+    @Setup
+    public void setUp() {
+        List<Question> questions = new ArrayList<>();
+        StringBuilder object = new StringBuilder("{");
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 1; i <= questionCount; i++) {
+            questions.add(Question.builder()
+                .questionId("q" + i)
+                .questionNumber(i)
+                .texts(Map.of("vi", "Câu hỏi " + i))
+                .weight(1)
+                .build());
+            String answer = i % 3 == 0 ? "\"không\"" : "true";
+            object.append(i > 1 ? "," : "").append("\"q").append(i).append("\":").append(answer);
+            array.append(i > 1 ? "," : "").append("{\"questionNumber\":").append(i).append(",\"answer\":").append(answer).append('}');
+        }
+        objectAnswers = object.append('}').toString();
+        arrayAnswers = array.append(']').toString();
+
+        CDDTestDefinition definition = CDDTestDefinition.builder()
+            .id(1L)
+            .version("1.0")
+            .questions(questions)
+            .scoringCriteria(ScoringCriteria.builder()
+                .yesScore(1)
+                .noScore(0)
+                .scoreRanges(List.of(
+                    range(0, questionCount / 3, "HIGH_RISK"),
+                    range(questionCount / 3 + 1, questionCount * 2 / 3, "MEDIUM_RISK"),
+                    range(questionCount * 2 / 3 + 1, questionCount, "LOW_RISK")))
+                .build())
+            .build();
+        CDDTestDefinitionNeonService definitionService = new CDDTestDefinitionNeonService(null, null) {
+            @Override
+            public Optional<CDDTestDefinition> getDefinition(Long testId) {
+                return Optional.of(definition);
+            }
+        };
+        scorer = new ChildTestScoringNeonService(definitionService, new ObjectMapper()).getScorer(1L).orElseThrow();
+    }
+
+    @Benchmark
+    public ScoringResult scoreObjectAnswers() {
+        return scorer.score(objectAnswers);
+    }
+
+    @Benchmark
+    public ScoringResult scoreArrayAnswers() {
+        return scorer.score(arrayAnswers);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CompiledScorerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private static ScoreRange range(int minScore, int maxScore, String level) {
+        return ScoreRange.builder()
+            .minScore(minScore)
+            .maxScore(maxScore)
+            .level(level)
+            .descriptions(Map.of())
+            .build();
+    }
+}
@@ -0,0 +1,13 @@
+-- Nén nội dung file sách trong book_contents
+-- size vẫn là kích thước gốc; stored_size là kích thước dữ liệu thực lưu, codec cho biết cách mã hóa (IDENTITY, GZIP)
+-- Dữ liệu hiện có được giữ nguyên bản; chỉ nội dung lưu mới được nén theo MIME type
+
+ALTER TABLE book_contents ADD COLUMN IF NOT EXISTS stored_size BIGINT;
+ALTER TABLE book_contents ADD COLUMN IF NOT EXISTS codec VARCHAR(20);
+
+UPDATE book_contents
+SET stored_size = COALESCE(stored_size, size),
+    codec = COALESCE(codec, 'IDENTITY')
+WHERE stored_size IS NULL OR codec IS NULL;
+
+ALTER TABLE book_contents ALTER COLUMN codec SET DEFAULT 'IDENTITY';
@@ -0,0 +1,9 @@
+-- Thêm cột sha256 cho bảng book_contents (được tính trong lúc stream upload)
+ALTER TABLE book_contents
+ADD COLUMN IF NOT EXISTS sha256 VARCHAR(64);
+
+-- Tính SHA-256 cho dữ liệu đã có (yêu cầu extension pgcrypto)
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
+UPDATE book_contents
+SET sha256 = encode(digest(data, 'sha256'), 'hex')
+WHERE sha256 IS NULL;
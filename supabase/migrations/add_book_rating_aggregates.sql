@@ -0,0 +1,37 @@
+-- Thống kê đánh giá tăng dần trên bảng books: tổng điểm, phân bố 1-5
+-- Mỗi lần tạo/sửa/xóa đánh giá chỉ cập nhật các cột này bằng một câu UPDATE, không tính lại AVG/COUNT
+
+ALTER TABLE books
+ADD COLUMN IF NOT EXISTS rating_sum BIGINT,
+ADD COLUMN IF NOT EXISTS rating_count_1 INTEGER,
+ADD COLUMN IF NOT EXISTS rating_count_2 INTEGER,
+ADD COLUMN IF NOT EXISTS rating_count_3 INTEGER,
+ADD COLUMN IF NOT EXISTS rating_count_4 INTEGER,
+ADD COLUMN IF NOT EXISTS rating_count_5 INTEGER;
+
+-- Tính lại thống kê từ dữ liệu đánh giá hiện có (chạy một lần)
+UPDATE books b
+SET rating_sum = COALESCE(r.rating_sum, 0),
+    total_ratings = COALESCE(r.total_ratings, 0),
+    rating_count_1 = COALESCE(r.count_1, 0),
+    rating_count_2 = COALESCE(r.count_2, 0),
+    rating_count_3 = COALESCE(r.count_3, 0),
+    rating_count_4 = COALESCE(r.count_4, 0),
+    rating_count_5 = COALESCE(r.count_5, 0),
+    average_rating = CASE WHEN COALESCE(r.total_ratings, 0) > 0
+                          THEN r.rating_sum::DOUBLE PRECISION / r.total_ratings
+                          ELSE NULL END
+FROM books b2
+LEFT JOIN (
+    SELECT book_id,
+           SUM(rating) AS rating_sum,
+           COUNT(*) AS total_ratings,
+           COUNT(*) FILTER (WHERE rating = 1) AS count_1,
+           COUNT(*) FILTER (WHERE rating = 2) AS count_2,
+           COUNT(*) FILTER (WHERE rating = 3) AS count_3,
+           COUNT(*) FILTER (WHERE rating = 4) AS count_4,
+           COUNT(*) FILTER (WHERE rating = 5) AS count_5
+    FROM book_ratings
+    GROUP BY book_id
+) r ON r.book_id = b2.id
+WHERE b.id = b2.id;
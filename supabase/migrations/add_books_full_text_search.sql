@@ -0,0 +1,19 @@
+-- Tìm kiếm toàn văn cho bảng books: cột search_vector (tsvector) + GIN index
+-- Không phân biệt dấu tiếng Việt nhờ unaccent; trọng số: tiêu đề (A) > tác giả, từ khóa, tags (B) > mô tả, tóm tắt (C)
+
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() không IMMUTABLE nên cần hàm bọc để dùng trong generated column / index
+CREATE OR REPLACE FUNCTION f_unaccent(text)
+RETURNS text
+LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+AS $$ SELECT public.unaccent('public.unaccent', $1) $$;
+
+ALTER TABLE books
+ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', f_unaccent(coalesce(title, ''))), 'A') ||
+    setweight(to_tsvector('simple', f_unaccent(coalesce(author, '') || ' ' || coalesce(keywords, '') || ' ' || coalesce(tags, ''))), 'B') ||
+    setweight(to_tsvector('simple', f_unaccent(coalesce(description, '') || ' ' || coalesce(summary, ''))), 'C')
+) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING gin(search_vector);
@@ -0,0 +1,11 @@
+-- Index phục vụ phân trang keyset (cursor) cho danh mục sách: (khóa sắp xếp, id)
+-- Các khóa có thể null được so sánh qua COALESCE(cột, nullValue) với nullValue là literal trong SQL,
+-- nên index theo đúng biểu thức đó (cùng giá trị và kiểu literal với KeysetSortField) để planner dùng được
+CREATE INDEX IF NOT EXISTS idx_books_title_id ON books(title, id);
+CREATE INDEX IF NOT EXISTS idx_books_author_id ON books((COALESCE(author, '')), id);
+CREATE INDEX IF NOT EXISTS idx_books_publication_year_id ON books((COALESCE(publication_year, 0)), id);
+CREATE INDEX IF NOT EXISTS idx_books_average_rating_id ON books((COALESCE(average_rating, 0.0)), id);
+CREATE INDEX IF NOT EXISTS idx_books_total_ratings_id ON books((COALESCE(total_ratings, 0)), id);
+CREATE INDEX IF NOT EXISTS idx_books_total_views_id ON books((COALESCE(total_views, 0)), id);
+CREATE INDEX IF NOT EXISTS idx_books_created_at_id ON books((COALESCE(created_at, TIMESTAMP '1970-01-01 00:00:00')), id);
+CREATE INDEX IF NOT EXISTS idx_books_updated_at_id ON books((COALESCE(updated_at, TIMESTAMP '1970-01-01 00:00:00')), id);
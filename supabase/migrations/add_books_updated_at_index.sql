@@ -0,0 +1,2 @@
+-- Index cho MAX(updated_at) dùng làm phiên bản danh mục sách (weak ETag cho các API danh sách)
+CREATE INDEX IF NOT EXISTS idx_books_updated_at ON books(updated_at);
@@ -0,0 +1,22 @@
+-- Switch child_test_records.id to sequence-based allocation in blocks of 50
+-- ChildTestRecordNeon uses @SequenceGenerator(allocationSize = 50) with Hibernate's pooled optimizer,
+-- so the sequence increment must match or Hibernate refuses to start
+
+-- The column may be an identity column (created by Hibernate) or a serial column
+DO $$
+BEGIN
+    IF EXISTS (
+        SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'child_test_records' AND column_name = 'id' AND is_identity = 'YES'
+    ) THEN
+        ALTER TABLE child_test_records ALTER COLUMN id SET INCREMENT BY 50;
+    ELSE
+        CREATE SEQUENCE IF NOT EXISTS child_test_records_id_seq OWNED BY child_test_records.id;
+        ALTER SEQUENCE child_test_records_id_seq INCREMENT BY 50;
+        ALTER TABLE child_test_records ALTER COLUMN id SET DEFAULT nextval('child_test_records_id_seq');
+    END IF;
+END $$;
+
+-- Move the sequence past existing ids so the first pooled block cannot collide
+SELECT setval(pg_get_serial_sequence('child_test_records', 'id'),
+              (SELECT COALESCE(MAX(id), 0) FROM child_test_records) + 50);
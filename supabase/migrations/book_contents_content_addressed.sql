@@ -0,0 +1,47 @@
+-- Chuyển book_contents sang lưu trữ theo nội dung (content-addressed) với khóa SHA-256
+-- File giống nhau chỉ lưu một lần; books.content_sha256 tham chiếu tới nội dung, ref_count đếm số sách dùng chung
+-- Chạy sau create_book_contents_table.sql và add_book_contents_sha256.sql
+
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
+
+-- Thêm cột tham chiếu nội dung cho bảng books
+ALTER TABLE books
+ADD COLUMN IF NOT EXISTS content_sha256 VARCHAR(64);
+
+DO $$
+BEGIN
+    -- Chỉ chạy khi book_contents còn ở dạng cũ (khóa theo book_id)
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'book_contents' AND column_name = 'book_id') THEN
+
+        -- Bổ sung SHA-256 còn thiếu
+        UPDATE book_contents
+        SET sha256 = encode(digest(data, 'sha256'), 'hex')
+        WHERE sha256 IS NULL;
+
+        -- Gán tham chiếu nội dung cho từng sách
+        UPDATE books b
+        SET content_sha256 = c.sha256
+        FROM book_contents c
+        WHERE c.book_id = b.id;
+
+        -- Gộp các nội dung trùng nhau, ref_count = số sách tham chiếu
+        CREATE TABLE book_contents_dedup AS
+        SELECT DISTINCT ON (c.sha256)
+               c.sha256, c.data, c.size,
+               COUNT(*) OVER (PARTITION BY c.sha256)::INTEGER AS ref_count,
+               c.created_at, c.updated_at
+        FROM book_contents c
+        ORDER BY c.sha256, c.created_at;
+
+        DROP TABLE book_contents;
+        ALTER TABLE book_contents_dedup RENAME TO book_contents;
+
+        ALTER TABLE book_contents ADD PRIMARY KEY (sha256);
+        ALTER TABLE book_contents ALTER COLUMN data SET NOT NULL;
+        ALTER TABLE book_contents ALTER COLUMN size SET NOT NULL;
+        ALTER TABLE book_contents ALTER COLUMN ref_count SET NOT NULL;
+    END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS idx_books_content_sha256 ON books(content_sha256);
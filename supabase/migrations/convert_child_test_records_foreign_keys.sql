@@ -0,0 +1,81 @@
+-- Convert child_test_records.child_id from a free-form string to a bigint foreign key to children(id),
+-- and add cdd_test_id: a bigint foreign key to cdd_tests(id) that is set only for CDD_TEST records.
+-- test_id stays VARCHAR because ASSESSMENT_TEST / DEVELOPMENTAL_SCREENING / DIAGNOSTIC_TEST records reference tests by string id
+-- Note: ALTER COLUMN TYPE rewrites the table and holds an exclusive lock; run during a maintenance window
+
+BEGIN;
+
+-- 1. Move rows that cannot be converted to a quarantine table for manual review:
+--    non-numeric or missing child, and CDD_TEST rows whose test_id is non-numeric or not an existing CDD test.
+--    PostgreSQL does not guarantee the evaluation order of OR, so every cast is guarded by CASE
+--    (a non-numeric id becomes NULL, matches nothing and is quarantined instead of aborting the migration)
+CREATE TABLE IF NOT EXISTS child_test_records_untyped AS
+SELECT * FROM child_test_records WITH NO DATA;
+
+INSERT INTO child_test_records_untyped
+SELECT r.* FROM child_test_records r
+WHERE NOT EXISTS (
+          SELECT 1 FROM children c
+          WHERE c.id = CASE WHEN r.child_id ~ '^[0-9]{1,18}$' THEN CAST(r.child_id AS BIGINT) END)
+   OR (r.test_type = 'CDD_TEST' AND NOT EXISTS (
+          SELECT 1 FROM cdd_tests t
+          WHERE t.id = CASE WHEN r.test_id ~ '^[0-9]{1,18}$' THEN CAST(r.test_id AS BIGINT) END));
+
+-- Rows in child_latest_test_record pointing at these records are removed by ON DELETE CASCADE
+DELETE FROM child_test_records r
+USING child_test_records_untyped u
+WHERE r.id = u.id;
+
+-- 2. Change column types and backfill cdd_test_id
+ALTER TABLE child_test_records
+    ALTER COLUMN child_id TYPE BIGINT USING CAST(child_id AS BIGINT),
+    ADD COLUMN IF NOT EXISTS cdd_test_id BIGINT;
+
+-- test_id of CDD records is normalised to the canonical number (no whitespace / leading zeros) to match cdd_test_id
+UPDATE child_test_records
+SET cdd_test_id = CAST(test_id AS BIGINT),
+    test_id = CAST(CAST(test_id AS BIGINT) AS VARCHAR)
+WHERE test_type = 'CDD_TEST';
+
+-- Rebuild the projection: latest records may have been quarantined and CDD test ids normalised
+DELETE FROM child_latest_test_record;
+
+ALTER TABLE child_latest_test_record
+    ALTER COLUMN child_id TYPE BIGINT USING CAST(child_id AS BIGINT);
+
+-- The category join now goes through child_test_records.cdd_test_id
+ALTER TABLE child_latest_test_record DROP COLUMN IF EXISTS cdd_test_id;
+
+INSERT INTO child_latest_test_record (child_id, test_id, record_id, test_date)
+SELECT DISTINCT ON (r.child_id, r.test_id) r.child_id, r.test_id, r.id, r.test_date
+FROM child_test_records r
+ORDER BY r.child_id, r.test_id, r.test_date DESC, r.id DESC
+ON CONFLICT (child_id, test_id) DO UPDATE SET record_id = EXCLUDED.record_id, test_date = EXCLUDED.test_date;
+
+-- 3. Foreign keys
+-- Records belong to the child and are removed with it; CDD tests with records cannot be deleted
+ALTER TABLE child_test_records DROP CONSTRAINT IF EXISTS fk_child_test_records_child;
+ALTER TABLE child_test_records
+ADD CONSTRAINT fk_child_test_records_child
+FOREIGN KEY (child_id) REFERENCES children(id) ON DELETE CASCADE;
+
+ALTER TABLE child_test_records DROP CONSTRAINT IF EXISTS fk_child_test_records_cdd_test;
+ALTER TABLE child_test_records
+ADD CONSTRAINT fk_child_test_records_cdd_test
+FOREIGN KEY (cdd_test_id) REFERENCES cdd_tests(id) ON DELETE RESTRICT;
+
+-- cdd_test_id is set exactly for CDD_TEST records and always mirrors test_id
+ALTER TABLE child_test_records DROP CONSTRAINT IF EXISTS chk_child_test_records_cdd_test_id;
+ALTER TABLE child_test_records
+ADD CONSTRAINT chk_child_test_records_cdd_test_id
+CHECK ((test_type = 'CDD_TEST') = (cdd_test_id IS NOT NULL)
+       AND (cdd_test_id IS NULL OR test_id = CAST(cdd_test_id AS VARCHAR)));
+
+-- 4. Composite indexes (also serve the foreign keys)
+CREATE INDEX IF NOT EXISTS idx_child_test_records_child_id_test_date ON child_test_records(child_id, test_date);
+CREATE INDEX IF NOT EXISTS idx_child_test_records_test_id_test_date ON child_test_records(test_id, test_date);
+CREATE INDEX IF NOT EXISTS idx_child_test_records_cdd_test_id_test_date ON child_test_records(cdd_test_id, test_date);
+
+COMMENT ON COLUMN child_test_records.cdd_test_id IS 'ID bài test CDD (chỉ có với test_type = CDD_TEST), suy ra từ test_id';
+
+COMMIT;
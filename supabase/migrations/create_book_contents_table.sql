@@ -0,0 +1,34 @@
+-- Tách nội dung file sách (content_file BYTEA) khỏi bảng books sang bảng book_contents
+-- Sau migration, các truy vấn danh mục sách không còn tải dữ liệu binary
+
+-- Tạo bảng book_contents
+CREATE TABLE IF NOT EXISTS book_contents (
+    book_id BIGINT PRIMARY KEY REFERENCES books(id) ON DELETE CASCADE,
+    data BYTEA NOT NULL,
+    size BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Chuyển dữ liệu hiện có từ books.content_file sang book_contents
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'books' AND column_name = 'content_file') THEN
+        INSERT INTO book_contents (book_id, data, size, created_at, updated_at)
+        SELECT id, content_file, octet_length(content_file),
+               COALESCE(content_uploaded_at, CURRENT_TIMESTAMP), CURRENT_TIMESTAMP
+        FROM books
+        WHERE content_file IS NOT NULL
+        ON CONFLICT (book_id) DO NOTHING;
+
+        -- Đồng bộ kích thước file theo dữ liệu thực tế
+        UPDATE books b
+        SET content_file_size = c.size
+        FROM book_contents c
+        WHERE c.book_id = b.id AND b.content_file_size IS DISTINCT FROM c.size;
+
+        -- Xóa cột cũ để giải phóng dung lượng trong bảng books
+        ALTER TABLE books DROP COLUMN content_file;
+    END IF;
+END $$;
@@ -0,0 +1,12 @@
+-- Tạo bảng book_rating_votes để ghi nhận phiếu hữu ích/không hữu ích theo từng phụ huynh
+-- Khóa chính (rating_id, parent_id) giúp loại bỏ phiếu lặp lại ngay trong câu INSERT ... ON CONFLICT
+CREATE TABLE IF NOT EXISTS book_rating_votes (
+    rating_id BIGINT NOT NULL REFERENCES book_ratings(id) ON DELETE CASCADE,
+    parent_id VARCHAR(255) NOT NULL,
+    is_helpful BOOLEAN NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (rating_id, parent_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_book_rating_votes_parent_id ON book_rating_votes(parent_id);
@@ -0,0 +1,25 @@
+-- Projection of the latest child_test_records row per (child_id, test_id)
+-- Maintained by ChildLatestTestRecordNeonService in the same transaction as every insert/update/delete,
+-- so GET /neon/child-test-records/child/{childId}/latest-by-category is a primary-key lookup
+CREATE TABLE IF NOT EXISTS child_latest_test_record (
+    child_id VARCHAR(255) NOT NULL,
+    test_id VARCHAR(255) NOT NULL,
+    record_id BIGINT NOT NULL REFERENCES child_test_records(id) ON DELETE CASCADE,
+    test_date TIMESTAMP NOT NULL,
+    cdd_test_id BIGINT,
+    PRIMARY KEY (child_id, test_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_child_latest_test_record_record_id ON child_latest_test_record(record_id);
+
+-- Backfill from existing records (same ordering as the service: newest test_date, then highest id)
+INSERT INTO child_latest_test_record (child_id, test_id, record_id, test_date, cdd_test_id)
+SELECT DISTINCT ON (r.child_id, r.test_id)
+       r.child_id, r.test_id, r.id, r.test_date,
+       CASE WHEN r.test_id ~ '^[0-9]{1,18}$' THEN CAST(r.test_id AS BIGINT) END
+FROM child_test_records r
+ORDER BY r.child_id, r.test_id, r.test_date DESC, r.id DESC
+ON CONFLICT (child_id, test_id) DO UPDATE SET record_id = EXCLUDED.record_id,
+    test_date = EXCLUDED.test_date, cdd_test_id = EXCLUDED.cdd_test_id;
+
+COMMENT ON TABLE child_latest_test_record IS 'Bản ghi bài test mới nhất của mỗi trẻ cho từng bài test';
@@ -0,0 +1,21 @@
+-- Normalized per-question answers of CDD test records, extracted from child_test_records.question_answers
+-- Written by the application on every insert/update and by rescoring jobs;
+-- historical rows are backfilled with POST /neon/child-test-records/answers/backfill
+-- (answers are resolved against each test's question definitions, which plain SQL cannot do)
+CREATE TABLE IF NOT EXISTS child_test_answers (
+    record_id BIGINT NOT NULL REFERENCES child_test_records(id) ON DELETE CASCADE,
+    question_id VARCHAR(100) NOT NULL,
+    test_id BIGINT NOT NULL REFERENCES cdd_tests(id),
+    question_number INTEGER,
+    answer BOOLEAN NOT NULL,
+    score DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (record_id, question_id)
+);
+
+-- Per-question aggregates for one test
+CREATE INDEX IF NOT EXISTS idx_child_test_answers_test_id_question_id ON child_test_answers(test_id, question_id);
+
+COMMENT ON TABLE child_test_answers IS 'Câu trả lời đã chuẩn hóa theo từng câu hỏi của bản ghi bài test CDD';
+COMMENT ON COLUMN child_test_answers.question_id IS 'ID câu hỏi theo định nghĩa bài test, hoặc số thứ tự nếu câu hỏi không có ID';
+COMMENT ON COLUMN child_test_answers.answer IS 'true = có, false = không';
+COMMENT ON COLUMN child_test_answers.score IS 'Điểm của câu trả lời theo tiêu chí chấm điểm hiện tại';
@@ -0,0 +1,21 @@
+-- Tạo bảng child_test_rescoring_jobs theo dõi các job chấm điểm lại bản ghi bài test khi tiêu chí chấm điểm thay đổi
+-- last_record_id cho phép tiếp tục job từ bản ghi kế tiếp sau khi server khởi động lại hoặc job bị lỗi
+CREATE TABLE IF NOT EXISTS child_test_rescoring_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    test_id BIGINT NOT NULL,
+    test_version VARCHAR(255),
+    status VARCHAR(255) NOT NULL,
+    total_records BIGINT,
+    processed_records BIGINT,
+    updated_records BIGINT,
+    failed_records BIGINT,
+    last_record_id BIGINT,
+    error_message TEXT,
+    started_at TIMESTAMP,
+    finished_at TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_child_test_rescoring_jobs_test_id ON child_test_rescoring_jobs(test_id);
+CREATE INDEX IF NOT EXISTS idx_child_test_rescoring_jobs_status ON child_test_rescoring_jobs(status);